@@ -2,8 +2,10 @@ package com.dtoind.lastvisit;
 
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.SpringApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class LastvisitApplication {
 
     public static void main(String[] args) {
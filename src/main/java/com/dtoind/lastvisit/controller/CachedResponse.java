@@ -0,0 +1,92 @@
+package com.dtoind.lastvisit.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import com.dtoind.lastvisit.service.ResponseCache;
+
+/**
+ * Builds the responses of the endpoints served from the {@link ResponseCache}.
+ * The gzipped body is a different representation from the identity body, so it carries its own
+ * strong ETag: the ETag of the data with a {@code -gzip} suffix.
+ */
+class CachedResponse {
+
+    private CachedResponse() {
+    }
+
+    /**
+     * Checks whether the client already holds the body of the given data version in either encoding.
+     * If it does, the response is prepared as a 304 Not Modified carrying the ETag the client sent;
+     * otherwise the response is left untouched, so that the 200 carries only the ETag of the
+     * encoding it is sent in.
+     *
+     * @param etag the ETag of the data
+     * @param request the request, checked for a matching {@code If-None-Match} header
+     * @return {@code true} if the client's copy is current and no body should be sent
+     */
+    static boolean checkNotModified(String etag, WebRequest request) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String gzipETag = gzipETag(etag);
+        for (String held : ifNoneMatch.split(",")) {
+            held = held.trim();
+            // If-None-Match compares weakly
+            if (held.startsWith("W/")) {
+                held = held.substring(2);
+            }
+            if (held.equals("*") || held.equals(etag)) {
+                return request.checkNotModified(etag);
+            }
+            if (held.equals(gzipETag)) {
+                return request.checkNotModified(gzipETag);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds a response with the cached JSON body, gzipped if a gzipped copy is cached and the
+     * client accepts it. The gzipped body carries the ETag of the data with a {@code -gzip} suffix.
+     *
+     * @param body the cached body
+     * @param etag the ETag of the data the body was built from
+     * @param request the request, checked for the encodings the client accepts
+     * @return the response
+     */
+    static ResponseEntity<byte[]> of(ResponseCache.Body body, String etag, WebRequest request) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (body.gzip() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            return response.eTag(gzipETag(etag)).header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip());
+        }
+        return response.eTag(etag).body(body.json());
+    }
+
+    // "abc" becomes "abc-gzip"
+    private static String gzipETag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                // "gzip;q=0" means the client refuses it
+                return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+}
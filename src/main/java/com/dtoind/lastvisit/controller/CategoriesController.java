@@ -1,28 +1,38 @@
 package com.dtoind.lastvisit.controller;
 
 import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import com.dtoind.lastvisit.exception.CategoryNotFoundException;
 import com.dtoind.lastvisit.exception.DeletionFailedException;
 import com.dtoind.lastvisit.exception.LinkAlreadyExistsException;
 import com.dtoind.lastvisit.model.Category;
-import com.dtoind.lastvisit.model.Link;
+import com.dtoind.lastvisit.model.LinkView;
+import com.dtoind.lastvisit.service.CategoryDeletionService;
 import com.dtoind.lastvisit.service.CategoryService;
+import com.dtoind.lastvisit.service.ExportFormat;
+import com.dtoind.lastvisit.service.LinkCreationService;
 import com.dtoind.lastvisit.service.LinkService;
+import com.dtoind.lastvisit.service.ResponseCache;
+import com.dtoind.lastvisit.util.CursorPage;
+import com.dtoind.lastvisit.util.JSONify;
 
 import static com.dtoind.lastvisit.util.JSONify.toJson;
+import static com.dtoind.lastvisit.util.JSONify.toJsonBytes;
 
 /**
  * Controller class for managing categories and associated links.
@@ -37,20 +47,33 @@ public class CategoriesController {
 
     private final LinkService linkService;
     private final CategoryService catService;
+    private final CategoryDeletionService catDeletion;
+    private final LinkCreationService linkCreation;
+    private final ResponseCache responseCache;
 
     /**
-     * Constructs a new CategoriesController with the specified LinkService and CategoryService.
+     * Constructs a new CategoriesController with the specified LinkService, CategoryService,
+     * CategoryDeletionService, LinkCreationService and ResponseCache.
      *
      * @param linkService the LinkService used for managing links
      * @param catService the CategoryService used for managing categories
+     * @param catDeletion the CategoryDeletionService used for deleting categories and their links
+     * @param linkCreation the LinkCreationService creating links together with their category
+     * @param responseCache the ResponseCache the encoded category list is kept in
      */
-    CategoriesController(LinkService linkService, CategoryService catService) {
+    CategoriesController(LinkService linkService, CategoryService catService, CategoryDeletionService catDeletion,
+                         LinkCreationService linkCreation, ResponseCache responseCache) {
         this.linkService = linkService;
         this.catService = catService;
+        this.catDeletion = catDeletion;
+        this.linkCreation = linkCreation;
+        this.responseCache = responseCache;
     }
 
     /**
      * Endpoint to create a link and associate it with a category.
+     * A category that does not exist yet is created with the link, in the same transaction;
+     * concurrent requests creating the same category all succeed and share it.
      *
      * @param requestBody A map containing the request body parameters:
      *                    - "url": The URL of the link to be created.
@@ -74,21 +97,20 @@ public class CategoriesController {
         }
 
         try {
-            Category cat = catService.returnCategory(catName);
-            logger.info("Category retrieved successfully: {}", cat.getName());
-
-            Link link = linkService.createLink(linkName, url, cat);
-            linkService.save(link);
+            LinkView link = linkCreation.createLink(linkName, url, catName);
             logger.info("Link saved successfully: {} {}", linkName, url);
 
             String[] catLink = new String[]
-                    {catName, linkName, url, link.getFormattedDateTime(), link.getId() + ""};
+                    {catName, linkName, url, link.formattedDateTime(), link.id() + ""};
 
             return ResponseEntity.ok(toJson(catLink));
         } catch (LinkAlreadyExistsException ex) {
             logger.error("Failed to create and save link {} with category {}.  Exception: {}",
                     url, catName, ex);
             return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            logger.warn("Invalid link {} with category {}: {}", url, catName, ex.getMessage());
+            return ResponseEntity.badRequest().body(ex.getMessage());
         } catch (Exception ex) {
             logger.error("Failed to create and save link {} with category {}.  Exception: {}",
                     url, catName, ex);
@@ -122,11 +144,15 @@ public class CategoriesController {
 
     /**
      * Endpoint to delete a category and its associated links.
+     * The links are deleted with set-based batches; a category with many links is deleted by a
+     * background job, whose progress can be polled at {@code /delete-cat/jobs/{id}}.
      *
      * @param requestBody A map containing the request body parameters:
      *                    - "category": The name of the category to be deleted.
      * @return A ResponseEntity containing a success message if the category and its associated links are
      *         deleted successfully.
+     *         If the deletion continues in the background, it returns an ACCEPTED response with the
+     *         job ID under "jobId" and the job's status URL under "status".
      *         If the category is not found, it returns a NOT_FOUND response with the exception message.
      *         If any other exception occurs during the deletion process, it returns an INTERNAL_SERVER_ERROR
      *         response with the exception details.
@@ -139,38 +165,118 @@ public class CategoriesController {
         try {
             logger.info("Deleting category with name: {}", catName);
             Category catToDelete = catService.findOneCategory(catName);
-            linkService.deleteAllLinks(catToDelete);
-            catService.delete(catToDelete);
-            logger.info("Category with name '{}' and associated links deleted successfully", catName);
-            Map<String, Boolean> response = Collections.singletonMap("success", true);
-            return ResponseEntity.ok(response);
+            CategoryDeletionService.Job job = catDeletion.delete(catToDelete);
+
+            switch (job.getState()) {
+                case DONE -> {
+                    logger.info("Category with name '{}' and associated links deleted successfully", catName);
+                    Map<String, Boolean> response = Collections.singletonMap("success", true);
+                    return ResponseEntity.ok(response);
+                }
+                case FAILED -> throw new DeletionFailedException(job.getError());
+                default -> {
+                    Map<String, String> response = Map.of("jobId", job.getId(),
+                            "status", "/delete-cat/jobs/" + job.getId());
+                    return ResponseEntity.accepted().body(response);
+                }
+            }
         } catch (CategoryNotFoundException e) {
             logger.warn("Category with name '{}' not found", catName, e);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
         } catch (DeletionFailedException e) {
             logger.error("Failed to delete category with name '{}' and associated links.", catName, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
         }
     }
 
+    /**
+     * Endpoint to retrieve the progress of a category deletion running in the background.
+     *
+     * @param id the ID of the deletion job
+     * @return A ResponseEntity containing the job's state ("RUNNING", "DONE" or "FAILED"),
+     *         the number of links to delete and deleted so far, and the error if it failed.
+     *         If no job has the given ID, it returns a NOT_FOUND response.
+     */
+    @GetMapping("/delete-cat/jobs/{id}")
+    public ResponseEntity<?> getDeletionJob(@PathVariable String id) {
+        return catDeletion.findJob(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body("Deletion job not found: " + id));
+    }
+
     /**
      * Endpoint to retrieve all available categories.
+     * The encoded list is served from the {@link ResponseCache} as long as no category changed since it was built.
+     * If {@code after} or {@code limit} is given, one page of categories is returned instead,
+     * as a JSON object with the categories under "items" and the cursor of the next page under "next".
+     * The response carries the version of the categories as its ETag, which writes to links
+     * leave unchanged; a request whose {@code If-None-Match} matches it is answered without
+     * reading any category.
      *
-     * @return A ResponseEntity containing a list of all categories if the operation is successful.
+     * @param after the cursor returned as "next" with the previous page, absent for the first page
+     * @param limit the maximum number of categories in the page
+     * @param request the request, checked for a matching {@code If-None-Match} header
+     * @return A ResponseEntity containing a list of all categories, or a page of categories,
+     *         if the operation is successful.
+     *         If the categories have not changed, it returns a NOT_MODIFIED response with no body.
+     *         If the cursor or limit is invalid, it returns a BAD_REQUEST response.
      *         If an exception occurs, it returns an INTERNAL_SERVER_ERROR response with the exception message.
      */
     @GetMapping("cats")
-    public ResponseEntity<?> getCategories() {
-        logger.info("Entering getCategories()");
+    public ResponseEntity<?> getCategories(@RequestParam(required = false) String after,
+                                           @RequestParam(required = false) Integer limit,
+                                           WebRequest request) {
+        logger.info("Entering getCategories(), after: {}, limit: {}", after, limit);
+
+        long version = catService.categoriesVersion();
+        String etag = catService.categoriesETag(version);
+        if (CachedResponse.checkNotModified(etag, request)) {
+            logger.debug("Categories not modified since {}", etag);
+            return null;
+        }
 
         try {
-            List<Category> cats = catService.findAllCategories();
-            logger.info("Returning {} categories", cats.size());
-            return ResponseEntity.ok(cats);
+            if (after != null || limit != null) {
+                CursorPage<Category> page = catService.findCategoriesAfter(after, CursorPage.checkLimit(limit));
+                logger.info("Returning {} categories, next: {}", page.items().size(), page.next());
+                return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(page);
+            }
+
+            ResponseCache.Body cats = responseCache.get("cats", version,
+                    () -> toJsonBytes(catService.findAllCategories(), JSONify.DateStyle.FORMATTED));
+            logger.info("Returning {} bytes of categories", cats.json().length);
+            return CachedResponse.of(cats, etag, request);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid page request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error retrieving categories", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Endpoint that exports all categories as a file download, for backup and offline analysis.
+     *
+     * @param format "ndjson" or "csv"
+     * @param gzip whether to compress the export with gzip
+     * @return a ResponseEntity with the appropriate HTTP status and response body
+     *         <ul>
+     *             <li>HTTP 200 OK with the export as the response body</li>
+     *             <li>HTTP 400 Bad Request if the format is not supported</li>
+     *         </ul>
+     */
+    @GetMapping("cats/export")
+    public ResponseEntity<?> exportCategories(@RequestParam(defaultValue = "ndjson") String format,
+                                              @RequestParam(defaultValue = "false") boolean gzip) {
+        logger.info("Entering exportCategories(), format: {}, gzip: {}", format, gzip);
+
+        try {
+            return ExportResponse.of("categories", ExportFormat.of(format), gzip, catService::exportCategories);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid export request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+}
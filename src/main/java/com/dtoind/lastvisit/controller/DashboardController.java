@@ -0,0 +1,67 @@
+package com.dtoind.lastvisit.controller;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.dtoind.lastvisit.service.DashboardService;
+import com.dtoind.lastvisit.service.DataVersion;
+
+/**
+ * Controller class serving the dashboard the page loads itself from.
+ */
+@RestController
+public class DashboardController {
+
+    private static final Logger logger = LogManager.getLogger(DashboardController.class);
+
+    private final DashboardService dashboardService;
+    private final DataVersion dataVersion;
+
+    DashboardController(DashboardService dashboardService, DataVersion dataVersion) {
+        this.dashboardService = dashboardService;
+        this.dataVersion = dataVersion;
+    }
+
+    /**
+     * Endpoint that retrieves every category with its links nested inside it, in one request.
+     * The dashboard is streamed from a single joined query straight into the response body.
+     * The response carries the current {@link DataVersion} as its ETag; a request whose
+     * {@code If-None-Match} matches it is answered without reading anything.
+     *
+     * @param request the request, checked for a matching {@code If-None-Match} header
+     * @return a ResponseEntity with the appropriate HTTP status and response body
+     *         <ul>
+     *             <li>HTTP 200 OK with the dashboard as a JSON object</li>
+     *             <li>HTTP 304 Not Modified with no body if nothing has changed</li>
+     *         </ul>
+     */
+    @GetMapping("dashboard")
+    public ResponseEntity<StreamingResponseBody> getDashboard(WebRequest request) {
+        logger.info("Entering getDashboard()");
+
+        String etag = dataVersion.etag();
+        if (request.checkNotModified(etag)) {
+            logger.debug("Dashboard not modified since {}", etag);
+            return null;
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                dashboardService.writeDashboard(out);
+            } catch (Exception e) {
+                logger.error("Error streaming dashboard", e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+}
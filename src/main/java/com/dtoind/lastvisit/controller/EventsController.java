@@ -0,0 +1,40 @@
+package com.dtoind.lastvisit.controller;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.dtoind.lastvisit.service.ChangeFeed;
+
+/**
+ * Controller class streaming changes to links and categories as server-sent events.
+ */
+@RestController
+public class EventsController {
+
+    private static final Logger logger = LogManager.getLogger(EventsController.class);
+
+    private final ChangeFeed changeFeed;
+
+    EventsController(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * Endpoint that subscribes to the change feed.
+     * Each event is named after its type ("link-created", "link-visited", "link-deleted",
+     * "category-created", "category-deleted" or "reload") and carries the change as JSON.
+     * The request thread is released as soon as the subscription is registered.
+     *
+     * @return the emitter the events are streamed through
+     */
+    @GetMapping(path = "events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe() {
+        logger.debug("Entering subscribe()");
+        return changeFeed.subscribe();
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.dtoind.lastvisit.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.dtoind.lastvisit.service.ExportFormat;
+
+/**
+ * Builds the streamed file download responses of the export endpoints.
+ */
+class ExportResponse {
+
+    private static final Logger logger = LogManager.getLogger(ExportResponse.class);
+
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    /**
+     * Writes an export to an output stream.
+     */
+    @FunctionalInterface
+    interface Exporter {
+        void export(ExportFormat format, OutputStream out) throws IOException;
+    }
+
+    private ExportResponse() {
+    }
+
+    /**
+     * Builds a response that streams an export as a file download, compressed on the fly if requested.
+     *
+     * @param name the file name of the export, without extension
+     * @param format the export format
+     * @param gzip whether to compress the export with gzip
+     * @param exporter writes the export
+     * @return the response
+     */
+    static ResponseEntity<StreamingResponseBody> of(String name, ExportFormat format, boolean gzip,
+                                                    Exporter exporter) {
+        String fileName = name + "." + format.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> {
+            try {
+                if (gzip) {
+                    GZIPOutputStream compressed = new GZIPOutputStream(out, 8192);
+                    exporter.export(format, compressed);
+                    compressed.finish();
+                } else {
+                    exporter.export(format, out);
+                }
+            } catch (Exception e) {
+                logger.error("Error streaming export {}", fileName, e);
+                throw e;
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(gzip ? GZIP : MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build()
+                        .toString())
+                .body(body);
+    }
+
+}
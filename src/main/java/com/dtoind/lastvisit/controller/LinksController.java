@@ -1,37 +1,77 @@
 package com.dtoind.lastvisit.controller;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.function.IntFunction;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.dtoind.lastvisit.exception.LinkNotFoundException;
-import com.dtoind.lastvisit.model.Link;
+import com.dtoind.lastvisit.exception.VisitBufferFullException;
+import com.dtoind.lastvisit.model.LinkView;
+import com.dtoind.lastvisit.model.VisitBucket;
+import com.dtoind.lastvisit.service.DataVersion;
+import com.dtoind.lastvisit.service.ExportFormat;
+import com.dtoind.lastvisit.service.ImportFormat;
+import com.dtoind.lastvisit.service.LinkImportService;
+import com.dtoind.lastvisit.service.LinkRanking;
 import com.dtoind.lastvisit.service.LinkService;
+import com.dtoind.lastvisit.service.ResponseCache;
+import com.dtoind.lastvisit.service.VisitHistoryService;
+import com.dtoind.lastvisit.util.CursorPage;
+import com.dtoind.lastvisit.util.JSONify;
+import com.dtoind.lastvisit.util.LinkReader;
 
 import static com.dtoind.lastvisit.util.JSONify.toJson;
+import static com.dtoind.lastvisit.util.JSONify.toJsonBytes;
 
 /**
  * Controller class for managing links.
  *
  * This controller provides endpoints for updating the number of visits for a link,
- * deleting links by ID, and retrieving all links.
+ * deleting links by ID, retrieving all links or the most visited and most recently visited ones,
+ * and importing and exporting links in bulk.
  */
 @RestController
 public class LinksController {
 
     private static final Logger logger = LogManager.getLogger(LinksController.class);
 
+    private static final int DEFAULT_RANKING_SIZE = 10;
+
     private final LinkService linkService;
+    private final VisitHistoryService visitHistory;
+    private final LinkImportService linkImport;
+    private final DataVersion dataVersion;
+    private final ResponseCache responseCache;
+    private final LinkRanking ranking;
 
-    LinksController(LinkService linkService) {
+    LinksController(LinkService linkService, VisitHistoryService visitHistory, LinkImportService linkImport,
+                    DataVersion dataVersion, ResponseCache responseCache, LinkRanking ranking) {
         this.linkService = linkService;
+        this.visitHistory = visitHistory;
+        this.linkImport = linkImport;
+        this.dataVersion = dataVersion;
+        this.responseCache = responseCache;
+        this.ranking = ranking;
     }
 
     /**
@@ -42,6 +82,7 @@ public class LinksController {
      *         <ul>
      *             <li>HTTP 200 OK with an empty response body if the link is updated successfully</li>
      *             <li>HTTP 404 Not Found with an empty response body if the link is not found</li>
+     *             <li>HTTP 503 Service Unavailable if the visit buffer is full; the visit is not recorded</li>
      *             <li>HTTP 500 Internal Server Error with the error message if an unexpected
      *             error occurs during the method execution</li>
      *         </ul>
@@ -52,18 +93,15 @@ public class LinksController {
         logger.info("Entering updateLink(), url: {}", url);
 
         try {
-            Optional<Link> link = linkService.findByUrl(url);
-
-            if (link.isPresent()) {
-                Link linkFromRepo = link.get();
-                linkFromRepo.incNumVisits();
-                linkService.update(linkFromRepo);
+            if (linkService.recordVisit(url)) {
                 logger.info("Link updated successfully");
                 return ResponseEntity.ok().build();
             } else {
                 logger.warn("Link not found: {}", url);
                 return ResponseEntity.notFound().build();
             }
+        } catch (VisitBufferFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (Exception e) {
             logger.error("Unexpected error occurred: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal Server Error");
@@ -104,27 +142,248 @@ public class LinksController {
 
     /**
      * Endpoint that retrieves all links as a JSON array.
+     * The array is served from the {@link ResponseCache} as long as no write happened since it was
+     * built, gzipped if the client accepts it; otherwise concurrent requests share one rebuild.
+     * With {@code epochMillis}, the links are instead streamed from the database straight into the response body.
+     * If {@code after} or {@code limit} is given, one page of links is returned instead,
+     * as a JSON object with the links under "items" and the cursor of the next page under "next".
+     * The response carries the current {@link DataVersion} as its ETag; a request whose
+     * {@code If-None-Match} matches it is answered without reading any link.
+     * With {@code epochMillis}, the time of each link's most recent visit is sent as milliseconds
+     * since the epoch under "dateTimeMillis" instead of as formatted text under "dateTime".
      *
+     * @param after the cursor returned as "next" with the previous page, absent for the first page
+     * @param limit the maximum number of links in the page
+     * @param epochMillis whether to send the times as milliseconds since the epoch
+     * @param request the request, checked for a matching {@code If-None-Match} header
      * @return a ResponseEntity with the appropriate HTTP status and response body
      *         <ul>
-     *             <li>HTTP 200 OK with a JSON array of links as the response body
-     *             if the links are retrieved successfully</li>
+     *             <li>HTTP 200 OK with a JSON array of links, or a page of links, as the response body</li>
+     *             <li>HTTP 304 Not Modified with no body if the links have not changed</li>
+     *             <li>HTTP 400 Bad Request if the cursor or limit is invalid</li>
      *             <li>HTTP 500 Internal Server Error with the error message if an
-     *             unexpected error occurs during the method execution</li>
+     *             unexpected error occurs before the body is built or streaming starts</li>
      *         </ul>
      */
     @GetMapping("links")
-    public ResponseEntity<String> getLinksAsJson() {
-        logger.info("Entering getLinksAsJson()");
+    public ResponseEntity<?> getLinksAsJson(@RequestParam(required = false) String after,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam(defaultValue = "false") boolean epochMillis,
+                                            WebRequest request) {
+        logger.info("Entering getLinksAsJson(), after: {}, limit: {}, epochMillis: {}", after, limit, epochMillis);
+
+        String etag = dataVersion.etag();
+        if (CachedResponse.checkNotModified(etag, request)) {
+            logger.debug("Links not modified since {}", etag);
+            return null;
+        }
+
+        JSONify.DateStyle dateStyle = epochMillis ? JSONify.DateStyle.EPOCH_MILLIS : JSONify.DateStyle.FORMATTED;
+        if (after != null || limit != null) {
+            return getLinksPage(after, limit, dateStyle, etag);
+        }
 
         try {
-            List<String> links = linkService.findAllLinksAsJson();
-            logger.debug("Returning {} links", links.size());
-            return ResponseEntity.ok(toJson(links));
+            if (dateStyle == JSONify.DateStyle.FORMATTED) {
+                return CachedResponse.of(responseCache.get("links", this::buildLinksBody), etag, request);
+            }
+
+            StreamingResponseBody body = out -> {
+                try {
+                    linkService.writeAllLinksAsJson(out, dateStyle);
+                } catch (Exception e) {
+                    logger.error("Error streaming links", e);
+                    throw e;
+                }
+            };
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                    .contentType(MediaType.APPLICATION_JSON).body(body);
         } catch (Exception e) {
             logger.error("Error retrieving links", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
         }
     }
 
-}
+    private byte[] buildLinksBody() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            linkService.writeAllLinksAsJson(out, JSONify.DateStyle.FORMATTED);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private ResponseEntity<?> getLinksPage(String after, Integer limit, JSONify.DateStyle dateStyle, String etag) {
+        try {
+            CursorPage<LinkView> page = linkService.findLinksAfter(after, CursorPage.checkLimit(limit));
+            logger.debug("Returning {} links, next: {}", page.items().size(), page.next());
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                    .contentType(MediaType.APPLICATION_JSON).body(toJsonBytes(page, dateStyle));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid page request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error retrieving links", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint that retrieves the most visited links, most visited first, from the in-memory
+     * {@link LinkRanking} rather than the database.
+     *
+     * @param k the number of links to return, 10 by default
+     * @param epochMillis whether to write dates as epoch milliseconds instead of formatted strings
+     * @return a ResponseEntity with the appropriate HTTP status and response body
+     *         <ul>
+     *             <li>HTTP 200 OK with a JSON array of at most {@code k} links</li>
+     *             <li>HTTP 400 Bad Request if {@code k} is not between 1 and {@link CursorPage#MAX_LIMIT}</li>
+     *         </ul>
+     */
+    @GetMapping("links/top")
+    public ResponseEntity<?> getTopLinks(@RequestParam(required = false) Integer k,
+                                         @RequestParam(defaultValue = "false") boolean epochMillis) {
+        logger.info("Entering getTopLinks(), k: {}", k);
+        return getRanking(k, epochMillis, ranking::top);
+    }
+
+    /**
+     * Endpoint that retrieves the most recently visited links, most recent first, from the in-memory
+     * {@link LinkRanking} rather than the database.
+     *
+     * @param k the number of links to return, 10 by default
+     * @param epochMillis whether to write dates as epoch milliseconds instead of formatted strings
+     * @return a ResponseEntity with the appropriate HTTP status and response body
+     *         <ul>
+     *             <li>HTTP 200 OK with a JSON array of at most {@code k} links</li>
+     *             <li>HTTP 400 Bad Request if {@code k} is not between 1 and {@link CursorPage#MAX_LIMIT}</li>
+     *         </ul>
+     */
+    @GetMapping("links/recent")
+    public ResponseEntity<?> getRecentLinks(@RequestParam(required = false) Integer k,
+                                            @RequestParam(defaultValue = "false") boolean epochMillis) {
+        logger.info("Entering getRecentLinks(), k: {}", k);
+        return getRanking(k, epochMillis, ranking::recent);
+    }
+
+    private ResponseEntity<?> getRanking(Integer k, boolean epochMillis, IntFunction<List<LinkView>> links) {
+        int size = k != null ? k : DEFAULT_RANKING_SIZE;
+        if (size < 1 || size > CursorPage.MAX_LIMIT) {
+            logger.warn("Invalid ranking size: {}", k);
+            return ResponseEntity.badRequest().body("k must be between 1 and " + CursorPage.MAX_LIMIT);
+        }
+
+        JSONify.DateStyle dateStyle = epochMillis ? JSONify.DateStyle.EPOCH_MILLIS : JSONify.DateStyle.FORMATTED;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(toJsonBytes(links.apply(size), dateStyle));
+    }
+
+    /**
+     * Endpoint that exports all links as a file download, for backup and offline analysis.
+     * Rows are streamed from a database cursor straight into the response, compressed on the fly
+     * if requested, so memory use does not depend on the number of links.
+     *
+     * @param format "ndjson" or "csv"
+     * @param gzip whether to compress the export with gzip
+     * @return a ResponseEntity with the appropriate HTTP status and response body
+     *         <ul>
+     *             <li>HTTP 200 OK with the export as the response body</li>
+     *             <li>HTTP 400 Bad Request if the format is not supported</li>
+     *         </ul>
+     */
+    @GetMapping("links/export")
+    public ResponseEntity<?> exportLinks(@RequestParam(defaultValue = "ndjson") String format,
+                                         @RequestParam(defaultValue = "false") boolean gzip) {
+        logger.info("Entering exportLinks(), format: {}, gzip: {}", format, gzip);
+
+        try {
+            return ExportResponse.of("links", ExportFormat.of(format), gzip, linkService::exportLinks);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid export request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint that retrieves the visit history of a link, rolled up from the visit event log.
+     *
+     * @param id the ID of the link
+     * @param granularity either "hourly" or "daily"
+     * @param days how many days of history to return
+     * @return a ResponseEntity with the appropriate HTTP status and response body
+     *         <ul>
+     *             <li>HTTP 200 OK with a JSON array of visit buckets in chronological order</li>
+     *             <li>HTTP 400 Bad Request if the granularity or number of days is invalid</li>
+     *             <li>HTTP 500 Internal Server Error with the error message if an
+     *             unexpected error occurs during the method execution</li>
+     *         </ul>
+     */
+    @GetMapping("links/visits")
+    public ResponseEntity<?> getVisitHistory(@RequestParam int id,
+                                             @RequestParam(defaultValue = "daily") String granularity,
+                                             @RequestParam(defaultValue = "30") int days) {
+        logger.info("Entering getVisitHistory(), id: {}, granularity: {}, days: {}", id, granularity, days);
+
+        if (days < 1) {
+            return ResponseEntity.badRequest().body("days must be at least 1");
+        }
+
+        try {
+            LocalDateTime from = LocalDateTime.now().minusDays(days);
+            List<? extends VisitBucket> history = switch (granularity) {
+                case "hourly" -> visitHistory.findHourlyHistory(id, from);
+                case "daily" -> visitHistory.findDailyHistory(id, from);
+                default -> null;
+            };
+
+            if (history == null) {
+                logger.warn("Unknown granularity: {}", granularity);
+                return ResponseEntity.badRequest().body("granularity must be hourly or daily");
+            }
+            return ResponseEntity.ok(history);
+        } catch (Exception e) {
+            logger.error("Error retrieving visit history", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint that imports links in bulk from the request body, which is read as a stream.
+     * The body may be newline-delimited JSON, CSV with a header row, or a bookmark file exported
+     * by a browser, as given by {@code format} or, failing that, by the Content-Type header.
+     *
+     * @param format "ndjson", "csv" or "html", or absent to go by the Content-Type header
+     * @param category the category of links the upload gives no category for
+     * @param contentType the Content-Type header of the request
+     * @param body the request body
+     * @return a ResponseEntity with the appropriate HTTP status and response body
+     *         <ul>
+     *             <li>HTTP 200 OK with a JSON summary of the import, including the progress of each chunk</li>
+     *             <li>HTTP 400 Bad Request if the format is unknown or the upload cannot be parsed;
+     *             links of the chunks written before the error are kept</li>
+     *             <li>HTTP 500 Internal Server Error with the error message if an
+     *             unexpected error occurs during the method execution</li>
+     *         </ul>
+     */
+    @PostMapping("links/import")
+    public ResponseEntity<?> importLinks(@RequestParam(required = false) String format,
+                                         @RequestParam(defaultValue = "Imported") String category,
+                                         @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false)
+                                         String contentType,
+                                         InputStream body) {
+        logger.info("Entering importLinks(), format: {}, content type: {}", format, contentType);
+
+        try (LinkReader reader = ImportFormat.of(format, contentType)
+                .open(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)))) {
+            return ResponseEntity.ok(linkImport.importLinks(reader, category));
+        } catch (IllegalArgumentException | IOException e) {
+            logger.warn("Import rejected: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error importing links", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+        }
+    }
+
+}
\ No newline at end of file
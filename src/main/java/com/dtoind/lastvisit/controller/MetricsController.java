@@ -0,0 +1,80 @@
+package com.dtoind.lastvisit.controller;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dtoind.lastvisit.service.LinkJsonCache;
+import com.dtoind.lastvisit.service.ResponseCache;
+import com.dtoind.lastvisit.service.UrlIndex;
+import com.dtoind.lastvisit.service.VisitBuffer;
+
+/**
+ * Controller class exposing the hit and miss counters of the in-process caches and the state of the
+ * visit buffer.
+ */
+@RestController
+public class MetricsController {
+
+    private static final Logger logger = LogManager.getLogger(MetricsController.class);
+
+    private final UrlIndex urlIndex;
+    private final LinkJsonCache linkJsonCache;
+    private final ResponseCache responseCache;
+    private final VisitBuffer visitBuffer;
+
+    MetricsController(UrlIndex urlIndex, LinkJsonCache linkJsonCache, ResponseCache responseCache,
+                      VisitBuffer visitBuffer) {
+        this.urlIndex = urlIndex;
+        this.linkJsonCache = linkJsonCache;
+        this.responseCache = responseCache;
+        this.visitBuffer = visitBuffer;
+    }
+
+    /**
+     * Endpoint that retrieves the statistics of the URL index.
+     *
+     * @return a ResponseEntity with HTTP 200 OK and the URL index statistics as the response body
+     */
+    @GetMapping("metrics/url-index")
+    public ResponseEntity<UrlIndex.Stats> getUrlIndexStats() {
+        logger.debug("Entering getUrlIndexStats()");
+        return ResponseEntity.ok(urlIndex.stats());
+    }
+
+    /**
+     * Endpoint that retrieves the statistics of the link JSON cache.
+     *
+     * @return a ResponseEntity with HTTP 200 OK and the link JSON cache statistics as the response body
+     */
+    @GetMapping("metrics/link-json-cache")
+    public ResponseEntity<LinkJsonCache.Stats> getLinkJsonCacheStats() {
+        logger.debug("Entering getLinkJsonCacheStats()");
+        return ResponseEntity.ok(linkJsonCache.stats());
+    }
+
+    /**
+     * Endpoint that retrieves the statistics of the response cache.
+     *
+     * @return a ResponseEntity with HTTP 200 OK and the response cache statistics as the response body
+     */
+    @GetMapping("metrics/response-cache")
+    public ResponseEntity<ResponseCache.Stats> getResponseCacheStats() {
+        logger.debug("Entering getResponseCacheStats()");
+        return ResponseEntity.ok(responseCache.stats());
+    }
+
+    /**
+     * Endpoint that retrieves the size and the rejected and dropped visit counters of the visit buffer.
+     *
+     * @return a ResponseEntity with HTTP 200 OK and the visit buffer statistics as the response body
+     */
+    @GetMapping("metrics/visit-buffer")
+    public ResponseEntity<VisitBuffer.Stats> getVisitBufferStats() {
+        logger.debug("Entering getVisitBufferStats()");
+        return ResponseEntity.ok(visitBuffer.stats());
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.dtoind.lastvisit.controller;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.dtoind.lastvisit.service.SyncService;
+
+/**
+ * Controller class serving delta syncs of the links and categories.
+ */
+@RestController
+public class SyncController {
+
+    private static final Logger logger = LogManager.getLogger(SyncController.class);
+
+    private final SyncService syncService;
+
+    SyncController(SyncService syncService) {
+        this.syncService = syncService;
+    }
+
+    /**
+     * Endpoint that retrieves the links and categories created, changed or deleted after the
+     * given version, together with the version to pass as {@code since} next time. An answer marked
+     * {@code "full"} holds everything, and replaces what the client has.
+     *
+     * @param since the "version" returned by the previous sync, or 0 for everything
+     * @return a ResponseEntity with the appropriate HTTP status and response body
+     *         <ul>
+     *             <li>HTTP 200 OK with the changes as a JSON object</li>
+     *             <li>HTTP 400 Bad Request if the version is negative</li>
+     *         </ul>
+     */
+    @GetMapping("sync")
+    public ResponseEntity<?> sync(@RequestParam(defaultValue = "0") long since) {
+        logger.info("Entering sync(), since: {}", since);
+
+        if (since < 0) {
+            return ResponseEntity.badRequest().body("since must not be negative");
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                syncService.writeChangesSince(since, out);
+            } catch (Exception e) {
+                logger.error("Error streaming changes", e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore())
+                .contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.dtoind.lastvisit.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Registers the WebSocket endpoint visits are reported through.
+ *
+ * Browsers send the origin of the page or extension opening a WebSocket, and the handshake is refused
+ * unless the origin is the server's own or matches one of {@code lastvisit.visits.socket.allowed-origins},
+ * a comma-separated list of origin patterns. By default, browser extensions of Chrome, Firefox and Safari
+ * are allowed; web pages of other origins never are unless listed.
+ */
+@Configuration
+@EnableWebSocket
+public class VisitSocketConfig implements WebSocketConfigurer {
+
+    private final VisitSocketHandler visitSocketHandler;
+    private final String[] allowedOrigins;
+
+    /**
+     * Constructs a new VisitSocketConfig.
+     *
+     * @param visitSocketHandler the handler of the visit socket
+     * @param allowedOrigins the origin patterns allowed besides the server's own, such as {@code chrome-extension://*}
+     */
+    VisitSocketConfig(VisitSocketHandler visitSocketHandler,
+                      @Value("${lastvisit.visits.socket.allowed-origins:"
+                              + "chrome-extension://*,moz-extension://*,safari-web-extension://*}")
+                      String[] allowedOrigins) {
+        this.visitSocketHandler = visitSocketHandler;
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(visitSocketHandler, "/visits/socket")
+                .setAllowedOriginPatterns(allowedOrigins);
+    }
+
+}
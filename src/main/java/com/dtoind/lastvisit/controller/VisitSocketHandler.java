@@ -0,0 +1,158 @@
+package com.dtoind.lastvisit.controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import com.dtoind.lastvisit.exception.VisitBufferFullException;
+import com.dtoind.lastvisit.service.LinkService;
+
+/**
+ * WebSocket endpoint at {@code /visits/socket} for clients reporting visits continuously, such as
+ * browser extensions, without paying for an HTTP request per visit.
+ *
+ * The protocol is line-based text. On connecting, the server sends {@code window <n>}. The client then
+ * sends frames of one or more lines {@code <seq> <url>}, one visit each, with sequence numbers increasing
+ * over the connection. Each visit is recorded as by {@code POST /update-link}. Once a frame is recorded
+ * the server replies {@code unknown <seq>} for each visit to a URL that is not stored, followed by
+ * {@code ack <seq>} with the sequence number of the frame's last visit, which acknowledges every visit
+ * up to it. A client must not have more than {@code n} visits unacknowledged; after reconnecting, it
+ * sends them again.
+ *
+ * Frames are recorded on the thread that received them, one at a time per connection, and the next
+ * frame of a connection is not read before the previous one is acknowledged. When visits are written
+ * right away, a slow database therefore delays the acks, which stops the client at its window, and
+ * holds back reading from the socket, which fills the TCP buffers; neither grows server memory.
+ *
+ * When visits are buffered ({@code lastvisit.visits.mode=buffered}), recording a visit only adds it to
+ * the visit buffer, so acks come back at once however slow the database is, and the window does not
+ * slow the client down. The buffer's cap is what pushes back then: once it is full, the visits recorded
+ * so far are acknowledged and the connection is closed with 1013 (try again later), and the client
+ * reconnects later to send the rest again. The event log mode appends every visit, so it pushes back
+ * like direct writes. A frame that breaks the protocol closes the connection without recording anything
+ * from it.
+ */
+@Component
+public class VisitSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LogManager.getLogger(VisitSocketHandler.class);
+
+    private static final String LAST_SEQ = "lastSeq";
+
+    private final LinkService linkService;
+    private final int window;
+    private final int maxFrameBytes;
+
+    /**
+     * Constructs a new VisitSocketHandler.
+     *
+     * @param linkService the LinkService the visits are recorded with
+     * @param window the number of visits a client may send without waiting for their ack
+     * @param maxFrameBytes the maximum size of a frame
+     */
+    VisitSocketHandler(LinkService linkService,
+                       @Value("${lastvisit.visits.socket.window:256}") int window,
+                       @Value("${lastvisit.visits.socket.max-frame-bytes:65536}") int maxFrameBytes) {
+        this.linkService = linkService;
+        this.window = window;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        logger.debug("Visit socket {} opened", session.getId());
+        session.setTextMessageSizeLimit(maxFrameBytes);
+        session.getAttributes().put(LAST_SEQ, 0L);
+        session.sendMessage(new TextMessage("window " + window));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        long lastSeq = (Long) session.getAttributes().get(LAST_SEQ);
+        List<Visit> visits;
+        try {
+            visits = parse(message.getPayload(), lastSeq);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Closing visit socket {}: {}", session.getId(), e.getMessage());
+            session.close(CloseStatus.POLICY_VIOLATION.withReason(e.getMessage()));
+            return;
+        }
+        if (visits.isEmpty()) {
+            return;
+        }
+
+        StringBuilder reply = new StringBuilder();
+        try {
+            for (Visit visit : visits) {
+                if (!linkService.recordVisit(visit.url())) {
+                    reply.append("unknown ").append(visit.seq()).append('\n');
+                }
+                lastSeq = visit.seq();
+            }
+        } catch (VisitBufferFullException e) {
+            logger.warn("Visit buffer full, closing visit socket {} after seq {}", session.getId(), lastSeq);
+            session.getAttributes().put(LAST_SEQ, lastSeq);
+            session.sendMessage(new TextMessage(reply.append("ack ").append(lastSeq)));
+            session.close(CloseStatus.SERVICE_OVERLOAD);
+            return;
+        } catch (RuntimeException e) {
+            // acknowledge what was recorded, so that the client only sends the rest again
+            logger.error("Recording visits from socket {} failed after seq {}", session.getId(), lastSeq, e);
+            session.getAttributes().put(LAST_SEQ, lastSeq);
+            session.sendMessage(new TextMessage(reply.append("ack ").append(lastSeq)));
+            session.close(CloseStatus.SERVER_ERROR);
+            return;
+        }
+
+        session.getAttributes().put(LAST_SEQ, lastSeq);
+        session.sendMessage(new TextMessage(reply.append("ack ").append(lastSeq)));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        logger.debug("Visit socket {} closed at seq {}: {}", session.getId(),
+                session.getAttributes().get(LAST_SEQ), status);
+    }
+
+    private List<Visit> parse(String payload, long lastSeq) {
+        List<Visit> visits = new ArrayList<>();
+        long previous = lastSeq;
+        for (String line : payload.split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            if (visits.size() == window) {
+                throw new IllegalArgumentException("More than " + window + " visits in one frame");
+            }
+
+            int space = line.indexOf(' ');
+            if (space < 1 || line.substring(space + 1).isBlank()) {
+                throw new IllegalArgumentException("Expected <seq> <url>");
+            }
+            long seq;
+            try {
+                seq = Long.parseLong(line.substring(0, space));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid seq");
+            }
+            if (seq <= previous) {
+                throw new IllegalArgumentException("seq " + seq + " does not follow " + previous);
+            }
+            visits.add(new Visit(seq, line.substring(space + 1).trim()));
+            previous = seq;
+        }
+        return visits;
+    }
+
+    private record Visit(long seq, String url) {}
+
+}
@@ -0,0 +1,67 @@
+package com.dtoind.lastvisit.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dtoind.lastvisit.model.VisitBatch;
+import com.dtoind.lastvisit.service.VisitBatchService;
+import com.dtoind.lastvisit.util.JSONify;
+
+/**
+ * Controller class receiving the visits clients buffer and send in batches.
+ */
+@RestController
+public class VisitsController {
+
+    private static final Logger logger = LogManager.getLogger(VisitsController.class);
+
+    private final VisitBatchService visitBatches;
+
+    VisitsController(VisitBatchService visitBatches) {
+        this.visitBatches = visitBatches;
+    }
+
+    /**
+     * Endpoint that records a batch of visits in one request, for example:
+     * <pre>
+     * {"batchId": "5f0c...", "visits": [{"id": 7, "timestamp": 1709285400000}, {"url": "https://www.bbc.com"}]}
+     * </pre>
+     * Each visit gives the ID or the URL of the visited link and, optionally, the time of the visit
+     * in milliseconds since the epoch. A batch sent again with the same {@code batchId} is not applied
+     * twice, so a client may retry a batch whose request failed. The body is read whatever its
+     * Content-Type, as {@code navigator.sendBeacon} sends a string as {@code text/plain}.
+     *
+     * @param body the request body
+     * @return a ResponseEntity with the appropriate HTTP status and response body
+     *         <ul>
+     *             <li>HTTP 200 OK with the number of visits applied and of visits to unknown URLs,
+     *             and whether the batch had already been applied</li>
+     *             <li>HTTP 400 Bad Request if the body is not a valid batch</li>
+     *             <li>HTTP 500 Internal Server Error with the error message if an
+     *             unexpected error occurs during the method execution</li>
+     *         </ul>
+     */
+    @PostMapping("visits/batch")
+    public ResponseEntity<?> postVisitBatch(InputStream body) {
+        logger.info("Entering postVisitBatch()");
+
+        try {
+            VisitBatch batch = JSONify.fromJson(body, VisitBatch.class);
+            return ResponseEntity.ok(visitBatches.apply(batch));
+        } catch (IllegalArgumentException | IOException e) {
+            logger.warn("Visit batch rejected: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error applying visit batch", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+        }
+    }
+
+}
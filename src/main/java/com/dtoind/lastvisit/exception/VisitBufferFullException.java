@@ -0,0 +1,25 @@
+package com.dtoind.lastvisit.exception;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+/**
+ * The VisitBufferFullException is thrown when a visit cannot be buffered because the visit buffer
+ * holds as many links as it may, typically because the database has been unreachable for a while.
+ * The visit is not recorded; the client should send it again later.
+ */
+public class VisitBufferFullException extends RuntimeException {
+
+    private static final Logger logger = LogManager.getLogger(VisitBufferFullException.class);
+
+    /**
+     * Constructs a new VisitBufferFullException with the specified detail message.
+     *
+     * @param message The detail message (which is saved for later retrieval by the getMessage() method).
+     */
+    public VisitBufferFullException(String message) {
+        super(message);
+        logger.warn("VisitBufferFullException occurred: {}", message);
+    }
+
+}
@@ -1,9 +1,10 @@
 package com.dtoind.lastvisit.model;
 
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
 import java.time.LocalDateTime;
-
-import static java.time.format.DateTimeFormatter.ofPattern;
+import java.util.Map;
 
 /**
  * Interface representing a base model with common attributes and methods.
@@ -13,6 +14,28 @@ import static java.time.format.DateTimeFormatter.ofPattern;
  */
 public interface BaseModel {
 
+    /**
+     * The format used by {@link #formatDefaultDateTime(LocalDateTime)}, such as "9:30 am on 03.01.24".
+     * It writes " am" and " pm" itself, in any locale, so the result needs no further replacing.
+     */
+    DateTimeFormatter DEFAULT_DATE_TIME_FORMAT = new DateTimeFormatterBuilder()
+            .appendPattern("h:mm")
+            .appendText(ChronoField.AMPM_OF_DAY, Map.of(0L, " am", 1L, " pm"))
+            .appendPattern(" 'on' MM.dd.uu")
+            .toFormatter();
+
+    /**
+     * The name of the ID generator shared by categories and links, which is also the name of
+     * its sequence (a single-row table on MySQL).
+     */
+    String ID_GENERATOR = "CUST_SEQ";
+
+    /**
+     * How many IDs the generator takes from the sequence at a time. The block is handed out in memory
+     * (pooled-lo), so only one insert in this many touches the sequence.
+     */
+    String ID_ALLOCATION_SIZE = "50";
+
     /**
      * Returns the ID associated with this object.
      *
@@ -64,13 +87,7 @@ public interface BaseModel {
      * @throws IllegalArgumentException if ldt or dateFormat is null
      */
     default String formatCustomDateTime(LocalDateTime ldt, DateTimeFormatter dateFormat) {
-        if (ldt == null || dateFormat == null) {
-            throw new IllegalArgumentException("LocalDateTime and DateTimeFormatter cannot be null");
-        }
-
-        String formattedDate = dateFormat.format(ldt);
-        formattedDate = formattedDate.replace("AM", " am").replace("PM", " pm");
-        return formattedDate;
+        return formatDateTime(ldt, dateFormat);
     }
 
     /**
@@ -80,7 +97,29 @@ public interface BaseModel {
      * @return the formatted date and time string
      */
     default String formatDefaultDateTime(LocalDateTime ldt) {
-        return formatCustomDateTime(ldt, ofPattern("h:mma 'on' MM.dd.uu"));
+        return formatDateTime(ldt, DEFAULT_DATE_TIME_FORMAT);
+    }
+
+    /**
+     * Formats a LocalDateTime using the provided DateTimeFormatter.
+     * Shared by the model classes and by read-only views that do not implement this interface.
+     *
+     * @param ldt the LocalDateTime to format
+     * @param dateFormat the DateTimeFormatter to use
+     * @return the formatted date and time string
+     * @throws IllegalArgumentException if ldt or dateFormat is null
+     */
+    static String formatDateTime(LocalDateTime ldt, DateTimeFormatter dateFormat) {
+        if (ldt == null || dateFormat == null) {
+            throw new IllegalArgumentException("LocalDateTime and DateTimeFormatter cannot be null");
+        }
+
+        String formattedDate = dateFormat.format(ldt);
+        if (dateFormat == DEFAULT_DATE_TIME_FORMAT) {
+            return formattedDate;
+        }
+        formattedDate = formattedDate.replace("AM", " am").replace("PM", " pm");
+        return formattedDate;
     }
 
 }
\ No newline at end of file
@@ -5,13 +5,17 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
-import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
@@ -23,19 +27,26 @@ import static java.time.format.DateTimeFormatter.ofPattern;
  * Represents a category entity in the application.
  */
 @Entity
-@Table(name = "CATIMPL")
+@Table(name = "CATIMPL", uniqueConstraints = @UniqueConstraint(name = "UK_CATIMPL_NAME", columnNames = "name"))
 public class CategoryImpl implements Category {
 
     private static final Logger logger = LogManager.getLogger(CategoryImpl.class);
 
     @Id
-    @GeneratedValue(strategy = SEQUENCE, generator = "CUST_SEQ")
-    @SequenceGenerator(name = "CUST_SEQ", allocationSize = 1)
+    @GeneratedValue(strategy = SEQUENCE, generator = ID_GENERATOR)
+    @GenericGenerator(name = ID_GENERATOR, strategy = "enhanced-sequence", parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = ID_GENERATOR),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = ID_ALLOCATION_SIZE),
+            @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "pooled-lo")})
     @Column(name = "CATIMPL_ID")
     private int id;
     private String name = "";
     private LocalDateTime dateTime;
 
+    // data version of the last write to this category
+    @Column(columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private long changeVersion;
+
     public CategoryImpl() {
     }
 
@@ -122,6 +133,25 @@ public class CategoryImpl implements Category {
         return formatDefaultDateTime(dateTime);
     }
 
+    /**
+     * Retrieves the data version of the last write to this Category.
+     *
+     * @return The change version of this Category.
+     */
+    @JsonIgnore
+    public long getChangeVersion() {
+        return changeVersion;
+    }
+
+    /**
+     * Sets the data version of the write about to be made to this Category.
+     *
+     * @param changeVersion The change version to set.
+     */
+    public void setChangeVersion(long changeVersion) {
+        this.changeVersion = changeVersion;
+    }
+
     /**
      * Returns a string representation of this Category object.
      *
@@ -0,0 +1,85 @@
+package com.dtoind.lastvisit.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A change to the links or categories, pushed to the clients subscribed to the change feed.
+ * Only the fields the type of change needs are set; the others are left out of the JSON.
+ *
+ * @param type     the type of change, also used as the name of the server-sent event
+ * @param link     the created or visited link, as the client displays it
+ * @param id       the ID of the deleted link
+ * @param category the name of the created or deleted category
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ChangeEvent(@JsonIgnore String type, LinkView link, Integer id, String category) {
+
+    public static final String LINK_CREATED = "link-created";
+    public static final String LINK_VISITED = "link-visited";
+    public static final String LINK_DELETED = "link-deleted";
+    public static final String CATEGORY_CREATED = "category-created";
+    public static final String CATEGORY_DELETED = "category-deleted";
+    public static final String RELOAD = "reload";
+
+    /**
+     * Creates the event of a link being created.
+     *
+     * @param link the created link
+     * @return the event
+     */
+    public static ChangeEvent linkCreated(LinkView link) {
+        return new ChangeEvent(LINK_CREATED, link, null, null);
+    }
+
+    /**
+     * Creates the event of a link being visited.
+     *
+     * @param link the visited link, with its new number of visits and time of its most recent visit
+     * @return the event
+     */
+    public static ChangeEvent linkVisited(LinkView link) {
+        return new ChangeEvent(LINK_VISITED, link, null, null);
+    }
+
+    /**
+     * Creates the event of a link being deleted.
+     *
+     * @param id the ID of the deleted link
+     * @return the event
+     */
+    public static ChangeEvent linkDeleted(int id) {
+        return new ChangeEvent(LINK_DELETED, null, id, null);
+    }
+
+    /**
+     * Creates the event of a category being created.
+     *
+     * @param name the name of the created category
+     * @return the event
+     */
+    public static ChangeEvent categoryCreated(String name) {
+        return new ChangeEvent(CATEGORY_CREATED, null, null, name);
+    }
+
+    /**
+     * Creates the event of a category being deleted, together with its links.
+     *
+     * @param name the name of the deleted category
+     * @return the event
+     */
+    public static ChangeEvent categoryDeleted(String name) {
+        return new ChangeEvent(CATEGORY_DELETED, null, null, name);
+    }
+
+    /**
+     * Creates the event telling clients to read everything again, sent after changes too large
+     * or too spread out to describe one by one, such as an import or a batch of buffered visits.
+     *
+     * @return the event
+     */
+    public static ChangeEvent reload() {
+        return new ChangeEvent(RELOAD, null, null, null);
+    }
+
+}
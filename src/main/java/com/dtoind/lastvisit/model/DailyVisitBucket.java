@@ -0,0 +1,16 @@
+package com.dtoind.lastvisit.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * Entity class representing the number of visits a link received during one day.
+ */
+@Entity
+@Table(name = "VISITDAILY", uniqueConstraints = @UniqueConstraint(name = "UK_VISITDAILY_LINK_BUCKET",
+        columnNames = {"linkId", "bucketStart"}),
+        indexes = @Index(name = "IDX_VISITDAILY_BUCKET_START", columnList = "bucketStart"))
+public class DailyVisitBucket extends VisitBucket {
+}
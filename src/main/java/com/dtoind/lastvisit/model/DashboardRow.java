@@ -0,0 +1,41 @@
+package com.dtoind.lastvisit.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of the dashboard: a category together with one of its links, or with no link at all
+ * if the category is empty. Built directly by a JPQL constructor expression over a left join,
+ * so the whole dashboard is read with one SELECT and no entity is loaded.
+ *
+ * @param categoryId    the ID of the category
+ * @param categoryName  the name of the category
+ * @param linkId        the ID of the link, or {@code null} if the category has no link
+ * @param linkName      the name of the link
+ * @param url           the URL of the link
+ * @param dateTime      the date and time of the link's most recent visit
+ * @param numVisits     the number of visits to the link
+ * @param changeVersion the data version of the last write to the link
+ */
+public record DashboardRow(int categoryId, String categoryName, Integer linkId, String linkName, String url,
+                           LocalDateTime dateTime, Integer numVisits, Long changeVersion) {
+
+    /**
+     * Checks if the row carries a link.
+     *
+     * @return {@code true} if the row carries a link, {@code false} if its category is empty
+     */
+    public boolean hasLink() {
+        return linkId != null;
+    }
+
+    /**
+     * Returns the link of the row, in the form it is serialized from.
+     *
+     * @return the versioned view of the link
+     * @throws NullPointerException if the row carries no link
+     */
+    public VersionedLinkView link() {
+        return new VersionedLinkView(linkId, categoryName, linkName, url, dateTime, numVisits, changeVersion);
+    }
+
+}
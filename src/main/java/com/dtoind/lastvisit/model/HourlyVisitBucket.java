@@ -0,0 +1,16 @@
+package com.dtoind.lastvisit.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * Entity class representing the number of visits a link received during one hour.
+ */
+@Entity
+@Table(name = "VISITHOURLY", uniqueConstraints = @UniqueConstraint(name = "UK_VISITHOURLY_LINK_BUCKET",
+        columnNames = {"linkId", "bucketStart"}),
+        indexes = @Index(name = "IDX_VISITHOURLY_BUCKET_START", columnList = "bucketStart"))
+public class HourlyVisitBucket extends VisitBucket {
+}
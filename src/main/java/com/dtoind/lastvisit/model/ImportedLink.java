@@ -0,0 +1,35 @@
+package com.dtoind.lastvisit.model;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * One link read from an import file, before it is stored.
+ *
+ * @param category the name of the link's category, or {@code null} if the file gives none
+ * @param name     the name of the link, or {@code null} if the file gives none
+ * @param url      the URL of the link
+ * @param addedAt  when the link was added, if the file records it, otherwise {@code null}
+ */
+public record ImportedLink(String category, String name, String url, LocalDateTime addedAt) {
+
+    /**
+     * Parses a date and time given in an import file.
+     *
+     * @param text the date and time in ISO-8601, or {@code null}
+     * @return the date and time, or {@code null} if none was given
+     * @throws IllegalArgumentException if the text is not a valid date and time
+     */
+    public static LocalDateTime parseDateTime(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+
+        try {
+            return LocalDateTime.parse(text.strip());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date and time: " + text, e);
+        }
+    }
+
+}
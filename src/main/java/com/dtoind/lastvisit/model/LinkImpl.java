@@ -10,13 +10,21 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
-import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import com.dtoind.lastvisit.util.UrlHash;
+
 import static jakarta.persistence.GenerationType.SEQUENCE;
 
 /**
@@ -25,28 +33,43 @@ import static jakarta.persistence.GenerationType.SEQUENCE;
  * such as name, URL, date/time, visit count, and category association.
  */
 @Entity
-@Table(name = "LINKIMPL")
+@Table(name = "LINKIMPL", indexes = {
+        @Index(name = "UK_LINKIMPL_URL_HASH", columnList = "urlHash", unique = true),
+        @Index(name = "IDX_LINKIMPL_CHANGE_VERSION", columnList = "changeVersion")})
 public class LinkImpl implements Link {
 
     private static final Logger logger = LogManager.getLogger(LinkImpl.class);
 
     @Id
-    @GeneratedValue(strategy = SEQUENCE, generator = "CUST_SEQ")
-    @SequenceGenerator(name = "CUST_SEQ", allocationSize = 1)
+    @GeneratedValue(strategy = SEQUENCE, generator = ID_GENERATOR)
+    @GenericGenerator(name = ID_GENERATOR, strategy = "enhanced-sequence", parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = ID_GENERATOR),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = ID_ALLOCATION_SIZE),
+            @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "pooled-lo")})
     @Column(name = "LINKIMPL_ID")
     @JsonProperty("id")
     private int id;
 
-    @ManyToOne(fetch = FetchType.LAZY, optional = false, cascade = {CascadeType.PERSIST,
-            CascadeType.MERGE, CascadeType.REFRESH})
+    // categories are saved on their own and links may reference detached copies from CategoryRegistry,
+    // so persisting or merging a link must not cascade to its category
+    @ManyToOne(fetch = FetchType.LAZY, optional = false, cascade = CascadeType.REFRESH)
     @JoinColumn(name = "CATIMPL_ID", nullable = false)
     private CategoryImpl categoryImpl;
 
     private String name = "";
     private String url;
+
+    // SHA-256 of the normalized URL; links are looked up by this fixed-width key instead of the URL itself
+    @Column(columnDefinition = "BINARY(32)")
+    private byte[] urlHash;
+
     private LocalDateTime dateTime;
     private int numVisits = 0;
 
+    // data version of the last write to this link; set by the services, also by bulk UPDATE statements
+    @Column(columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private long changeVersion;
+
     public LinkImpl() {
     }
 
@@ -69,10 +92,10 @@ public class LinkImpl implements Link {
         }
 
         this.name = name;
-        this.url = url;
+        setUrl(url);
         this.categoryImpl = (CategoryImpl) category;
         this.dateTime = LocalDateTime.now();
-        logger.info("Created new link: {}", this);
+        logger.debug("Created new link: {}", this);
     }
 
     /**
@@ -122,13 +145,23 @@ public class LinkImpl implements Link {
     }
 
     /**
-     * Sets the URL for this visit.
+     * Sets the URL for this visit. The URL is stored normalized, see {@link UrlHash#normalize(String)}.
      *
      * @param url The URL to set.
      */
     @Override
     public void setUrl(String url) {
-        this.url = url;
+        this.url = url == null ? null : UrlHash.normalize(url);
+        this.urlHash = url == null ? null : UrlHash.of(url);
+    }
+
+    // keeps the hash in step with the URL even if the URL was changed without going through setUrl
+    @PrePersist
+    @PreUpdate
+    private void updateUrlHash() {
+        if (url != null) {
+            urlHash = UrlHash.of(url);
+        }
     }
 
     /**
@@ -181,6 +214,24 @@ public class LinkImpl implements Link {
         this.numVisits = numVisits;
     }
 
+    /**
+     * Retrieves the data version of the last write to this link.
+     *
+     * @return The change version.
+     */
+    public long getChangeVersion() {
+        return changeVersion;
+    }
+
+    /**
+     * Sets the data version of the write about to be made to this link.
+     *
+     * @param changeVersion The change version to set.
+     */
+    public void setChangeVersion(long changeVersion) {
+        this.changeVersion = changeVersion;
+    }
+
     /**
      * Retrieves the category of this visit.
      *
@@ -209,7 +260,7 @@ public class LinkImpl implements Link {
     public String toString() {
         return "Link { " +
                 "id=" + id +
-                ", category='" + categoryImpl.getName() + '\'' +
+                ", category='" + categoryName() + '\'' +
                 ", name='" + name + '\'' +
                 ", url='" + url + '\'' +
                 ", dateTime=" + getFormattedDateTime() +
@@ -217,6 +268,14 @@ public class LinkImpl implements Link {
                 " }";
     }
 
+    // never triggers a lazy load, so logging a link costs no extra query
+    private String categoryName() {
+        if (categoryImpl == null) {
+            return null;
+        }
+        return Hibernate.isInitialized(categoryImpl) ? categoryImpl.getName() : "<not loaded>";
+    }
+
     /**
      * Compares the current object with the specified object for equality.
      * Two LinkImpl objects are considered equal if they have the same values
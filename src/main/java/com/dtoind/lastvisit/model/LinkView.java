@@ -0,0 +1,39 @@
+package com.dtoind.lastvisit.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of a link together with the name of its category.
+ * Built directly by a JPQL constructor expression, so reading it loads no entity,
+ * triggers no lazy loading and needs no dirty checking.
+ *
+ * @param id        the ID of the link
+ * @param category  the name of the link's category
+ * @param name      the name of the link
+ * @param url       the URL of the link
+ * @param dateTime  the date and time of the link's most recent visit
+ * @param numVisits the number of visits to the link
+ */
+public record LinkView(int id, String category, String name, String url, LocalDateTime dateTime, int numVisits) {
+
+    /**
+     * Creates a view of the given link.
+     *
+     * @param link the link, whose category must be loaded
+     * @return the view of the link
+     */
+    public static LinkView of(Link link) {
+        return new LinkView(link.getId(), link.getCategory() != null ? link.getCategory().getName() : null,
+                link.getName(), link.getUrl(), link.getDateTime(), link.getNumVisits());
+    }
+
+    /**
+     * Retrieves the formatted date and time of the link's most recent visit.
+     *
+     * @return the formatted date and time
+     */
+    public String formattedDateTime() {
+        return BaseModel.formatDateTime(dateTime, BaseModel.DEFAULT_DATE_TIME_FORMAT);
+    }
+
+}
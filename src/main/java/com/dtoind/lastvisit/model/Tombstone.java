@@ -0,0 +1,128 @@
+package com.dtoind.lastvisit.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import static jakarta.persistence.GenerationType.IDENTITY;
+
+/**
+ * Entity class recording the deletion of a link or category, so that clients syncing changes
+ * since an earlier version learn about rows that no longer exist.
+ * Tombstones are appended with the data version of the deleting write and pruned once they are older
+ * than {@code lastvisit.sync.tombstone-retention-days} days.
+ */
+@Entity
+@Table(name = "TOMBSTONE", indexes = @Index(name = "IDX_TOMBSTONE_CHANGE_VERSION", columnList = "changeVersion"))
+public class Tombstone {
+
+    /**
+     * The kinds of rows a tombstone can stand for.
+     */
+    public enum Kind {
+        LINK, CATEGORY
+    }
+
+    @Id
+    @GeneratedValue(strategy = IDENTITY)
+    @Column(name = "TOMBSTONE_ID")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Kind kind;
+
+    @Column(nullable = false)
+    private int entityId;
+
+    @Column(nullable = false)
+    private long changeVersion;
+
+    @Column(nullable = false)
+    private LocalDateTime dateTime;
+
+    public Tombstone() {
+    }
+
+    /**
+     * Constructor for creating a new tombstone.
+     *
+     * @param kind the kind of the deleted row
+     * @param entityId the ID of the deleted link or category
+     * @param changeVersion the data version of the deletion
+     */
+    public Tombstone(Kind kind, int entityId, long changeVersion) {
+        this.kind = kind;
+        this.entityId = entityId;
+        this.changeVersion = changeVersion;
+        this.dateTime = LocalDateTime.now();
+    }
+
+    /**
+     * Retrieves the ID of this tombstone.
+     *
+     * @return the ID, or {@code null} if the tombstone has not been saved yet
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Retrieves the kind of the deleted row.
+     *
+     * @return the kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Retrieves the ID of the deleted link or category.
+     *
+     * @return the ID of the deleted row
+     */
+    public int getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * Retrieves the data version of the deletion.
+     *
+     * @return the change version
+     */
+    public long getChangeVersion() {
+        return changeVersion;
+    }
+
+    /**
+     * Retrieves the date and time of the deletion.
+     *
+     * @return the date and time
+     */
+    public LocalDateTime getDateTime() {
+        return dateTime;
+    }
+
+    /**
+     * Returns a string representation of this Tombstone object.
+     *
+     * @return A string containing the ID, kind, entity ID and change version of this tombstone.
+     */
+    @Override
+    public String toString() {
+        return "Tombstone { " +
+                "id=" + id +
+                ", kind=" + kind +
+                ", entityId=" + entityId +
+                ", changeVersion=" + changeVersion +
+                " }";
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.dtoind.lastvisit.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of a link together with the data version of the last write to it, so that
+ * anything derived from the view can be reused for as long as the version stays the same.
+ * Built directly by a JPQL constructor expression, like {@link LinkView}.
+ *
+ * @param id            the ID of the link
+ * @param category      the name of the link's category
+ * @param name          the name of the link
+ * @param url           the URL of the link
+ * @param dateTime      the date and time of the link's most recent visit
+ * @param numVisits     the number of visits to the link
+ * @param changeVersion the data version of the last write to the link
+ */
+public record VersionedLinkView(int id, String category, String name, String url, LocalDateTime dateTime,
+                                int numVisits, long changeVersion) {
+
+    /**
+     * Returns the view of the link without its version.
+     *
+     * @return the view of the link
+     */
+    public LinkView view() {
+        return new LinkView(id, category, name, url, dateTime, numVisits);
+    }
+
+}
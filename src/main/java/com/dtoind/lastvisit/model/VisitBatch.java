@@ -0,0 +1,24 @@
+package com.dtoind.lastvisit.model;
+
+import java.util.List;
+
+/**
+ * A batch of visits sent by a client in one request. The batch carries an ID chosen by the client,
+ * so that a batch sent again, after a request that failed or timed out, is only applied once.
+ *
+ * @param batchId the client's ID of the batch, unique per batch and at most 64 characters long
+ * @param visits  the visits in the batch
+ */
+public record VisitBatch(String batchId, List<Visit> visits) {
+
+    /**
+     * A single visit to a link, identified by its ID or, if no ID is given, by its URL.
+     *
+     * @param id        the ID of the visited link, or {@code null}
+     * @param url       the URL of the visited link, used if no ID is given
+     * @param timestamp the time of the visit in milliseconds since the epoch, or {@code null}
+     *                  for the time the batch is received
+     */
+    public record Visit(Integer id, String url, Long timestamp) {}
+
+}
@@ -0,0 +1,74 @@
+package com.dtoind.lastvisit.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Entity class recording that a client's {@link VisitBatch} has been applied.
+ * A receipt is written in the same transaction as the batch's visits, so a batch is applied
+ * exactly once however often it is sent. Receipts are pruned once clients can no longer retry them.
+ */
+@Entity
+@Table(name = "VISITBATCHRECEIPT", indexes = @Index(name = "IDX_VISITBATCHRECEIPT_DATE_TIME", columnList = "dateTime"))
+public class VisitBatchReceipt {
+
+    @Id
+    @Column(length = 64)
+    private String batchId;
+
+    @Column(nullable = false)
+    private LocalDateTime dateTime;
+
+    @Column(nullable = false)
+    private int visits;
+
+    public VisitBatchReceipt() {
+    }
+
+    /**
+     * Retrieves the client's ID of the applied batch.
+     *
+     * @return the batch ID
+     */
+    public String getBatchId() {
+        return batchId;
+    }
+
+    /**
+     * Retrieves the date and time the batch was applied.
+     *
+     * @return the date and time
+     */
+    public LocalDateTime getDateTime() {
+        return dateTime;
+    }
+
+    /**
+     * Retrieves the number of visits in the batch.
+     *
+     * @return the number of visits
+     */
+    public int getVisits() {
+        return visits;
+    }
+
+    /**
+     * Returns a string representation of this VisitBatchReceipt object.
+     *
+     * @return A string containing the batch ID, date and time and number of visits of this receipt.
+     */
+    @Override
+    public String toString() {
+        return "VisitBatchReceipt { " +
+                "batchId='" + batchId + '\'' +
+                ", dateTime=" + dateTime +
+                ", visits=" + visits +
+                " }";
+    }
+
+}
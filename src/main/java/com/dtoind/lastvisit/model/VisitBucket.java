@@ -0,0 +1,61 @@
+package com.dtoind.lastvisit.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.MappedSuperclass;
+
+import static jakarta.persistence.GenerationType.IDENTITY;
+
+/**
+ * Base class for the number of visits a link received during one time bucket.
+ * Subclasses map the hourly and daily bucket tables.
+ */
+@MappedSuperclass
+public abstract class VisitBucket {
+
+    @Id
+    @GeneratedValue(strategy = IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private int linkId;
+
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    private long visits;
+
+    protected VisitBucket() {
+    }
+
+    /**
+     * Retrieves the ID of the link this bucket belongs to.
+     *
+     * @return the link ID
+     */
+    public int getLinkId() {
+        return linkId;
+    }
+
+    /**
+     * Retrieves the start of the time bucket.
+     *
+     * @return the date and time the bucket starts at
+     */
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    /**
+     * Retrieves the number of visits in the bucket.
+     *
+     * @return the number of visits
+     */
+    public long getVisits() {
+        return visits;
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.dtoind.lastvisit.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Identifies one {@link VisitBucket}: a link and the start of a time bucket.
+ *
+ * @param linkId      the ID of the link
+ * @param bucketStart the date and time the bucket starts at
+ */
+public record VisitBucketKey(int linkId, LocalDateTime bucketStart) {}
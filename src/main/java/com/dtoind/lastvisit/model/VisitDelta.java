@@ -0,0 +1,35 @@
+package com.dtoind.lastvisit.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * An accumulated number of visits to a single link together with the time of the latest one.
+ * Used to apply many visits to a link with a single statement.
+ *
+ * @param count     the number of visits to add
+ * @param lastVisit the date and time of the most recent of those visits
+ */
+public record VisitDelta(long count, LocalDateTime lastVisit) {
+
+    /**
+     * Creates a delta representing one visit at the given time.
+     *
+     * @param visitTime the date and time of the visit
+     * @return a delta with a count of one
+     */
+    public static VisitDelta single(LocalDateTime visitTime) {
+        return new VisitDelta(1, visitTime);
+    }
+
+    /**
+     * Combines this delta with another one, adding the counts and keeping the later visit time.
+     *
+     * @param other the delta to combine with this one
+     * @return the combined delta
+     */
+    public VisitDelta merge(VisitDelta other) {
+        LocalDateTime latest = lastVisit.isAfter(other.lastVisit) ? lastVisit : other.lastVisit;
+        return new VisitDelta(count + other.count, latest);
+    }
+
+}
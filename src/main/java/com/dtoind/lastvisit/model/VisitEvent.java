@@ -0,0 +1,106 @@
+package com.dtoind.lastvisit.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import static jakarta.persistence.GenerationType.IDENTITY;
+
+/**
+ * Entity class representing a single visit to a link.
+ * Visit events are only ever appended; {@link VisitBucket} tables and the counters on
+ * {@link LinkImpl} are derived from them by a background rollup.
+ * The date and time of the visit may be stamped by the client and be hours old by the time the
+ * event is appended, so the event also records when the server appended it.
+ */
+@Entity
+@Table(name = "VISITEVENT", indexes = @Index(name = "IDX_VISITEVENT_LINK", columnList = "linkId, dateTime"))
+public class VisitEvent {
+
+    @Id
+    @GeneratedValue(strategy = IDENTITY)
+    @Column(name = "VISITEVENT_ID")
+    private Long id;
+
+    @Column(nullable = false)
+    private int linkId;
+
+    @Column(nullable = false)
+    private LocalDateTime dateTime;
+
+    // set by the server; rows appended before the column existed take the time it was added
+    @Column(columnDefinition = "DATETIME(6) DEFAULT CURRENT_TIMESTAMP(6) NOT NULL")
+    private LocalDateTime recordedAt;
+
+    public VisitEvent() {
+    }
+
+    /**
+     * Constructor for creating a new visit event, recorded now.
+     *
+     * @param linkId the ID of the visited link
+     * @param dateTime the date and time of the visit
+     */
+    public VisitEvent(int linkId, LocalDateTime dateTime) {
+        this.linkId = linkId;
+        this.dateTime = dateTime;
+        this.recordedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Retrieves the ID of this visit event.
+     *
+     * @return the ID, or {@code null} if the event has not been saved yet
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Retrieves the ID of the visited link.
+     *
+     * @return the link ID
+     */
+    public int getLinkId() {
+        return linkId;
+    }
+
+    /**
+     * Retrieves the date and time of the visit.
+     *
+     * @return the date and time
+     */
+    public LocalDateTime getDateTime() {
+        return dateTime;
+    }
+
+    /**
+     * Retrieves the date and time the server appended the visit.
+     *
+     * @return the date and time
+     */
+    public LocalDateTime getRecordedAt() {
+        return recordedAt;
+    }
+
+    /**
+     * Returns a string representation of this VisitEvent object.
+     *
+     * @return A string containing the ID, link ID and date and time of this visit.
+     */
+    @Override
+    public String toString() {
+        return "VisitEvent { " +
+                "id=" + id +
+                ", linkId=" + linkId +
+                ", dateTime=" + dateTime +
+                ", recordedAt=" + recordedAt +
+                " }";
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.dtoind.lastvisit.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Entity class recording a visit event ID the rollup has passed without seeing its event.
+ * Event IDs are assigned when an event is inserted but the event only becomes visible when its
+ * transaction commits, so a missing ID is either an event that has not committed yet or an ID that
+ * was burnt by a rolled back insert. The rollup looks for the events of open gaps on every run and
+ * stops waiting for a gap once it has been open for longer than any append transaction could take.
+ * Gaps are {@link Persistable} so that saving a new one inserts it without first looking it up by ID.
+ */
+@Entity
+@Table(name = "VISITROLLUPGAP")
+public class VisitRollupGap implements Persistable<Long> {
+
+    @Id
+    @Column(name = "VISITEVENT_ID")
+    private Long eventId;
+
+    @Column(nullable = false)
+    private LocalDateTime seenAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public VisitRollupGap() {
+    }
+
+    /**
+     * Constructor for creating a new gap.
+     *
+     * @param eventId the missing visit event ID
+     * @param seenAt the date and time the rollup passed the ID
+     */
+    public VisitRollupGap(long eventId, LocalDateTime seenAt) {
+        this.eventId = eventId;
+        this.seenAt = seenAt;
+    }
+
+    /**
+     * Retrieves the missing visit event ID.
+     *
+     * @return the event ID
+     */
+    public Long getEventId() {
+        return eventId;
+    }
+
+    @Override
+    public Long getId() {
+        return eventId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
+    /**
+     * Retrieves the date and time the rollup passed the ID.
+     *
+     * @return the date and time
+     */
+    public LocalDateTime getSeenAt() {
+        return seenAt;
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.dtoind.lastvisit.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Entity class recording how far the visit rollup has progressed through the visit event log.
+ */
+@Entity
+@Table(name = "VISITROLLUP")
+public class VisitRollupState {
+
+    @Id
+    private String name;
+
+    private long lastEventId;
+
+    public VisitRollupState() {
+    }
+
+    /**
+     * Constructor for creating a new rollup state that has not processed any events yet.
+     *
+     * @param name the name of the rollup
+     */
+    public VisitRollupState(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Retrieves the name of the rollup.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Retrieves the ID of the last visit event that has been rolled up.
+     *
+     * @return the last rolled up event ID
+     */
+    public long getLastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * Sets the ID of the last visit event that has been rolled up.
+     *
+     * @param lastEventId the last rolled up event ID
+     */
+    public void setLastEventId(long lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+}
@@ -4,7 +4,11 @@ import java.util.Optional;
 
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.dtoind.lastvisit.model.Category;
 import com.dtoind.lastvisit.model.CategoryImpl;
@@ -15,7 +19,7 @@ import com.dtoind.lastvisit.model.CategoryImpl;
  */
 @Primary
 @Repository
-public interface CategoryRepository extends JpaRepository<CategoryImpl, Integer> {
+public interface CategoryRepository extends JpaRepository<CategoryImpl, Integer>, CategoryUpsertRepository {
 
   /**
    * Finds a Category entity by its name.
@@ -25,4 +29,41 @@ public interface CategoryRepository extends JpaRepository<CategoryImpl, Integer>
    */
   Optional<Category> findByName(String name);
 
+  /**
+   * Deletes the category with the given ID and leaves a tombstone with the given data version,
+   * both in one transaction. The category must have no links left.
+   *
+   * @param id the ID of the category
+   * @param version the data version of the deletion
+   * @return the number of categories deleted, 0 if no category has the given ID
+   */
+  @Transactional
+  default int deleteWithTombstone(int id, long version) {
+    insertTombstone(id, version);
+    return deleteByIdReturningCount(id);
+  }
+
+  /**
+   * Records the deletion of the category with the given ID with a tombstone, if the category exists.
+   *
+   * @param id the ID of the category about to be deleted
+   * @param version the data version of the deletion
+   * @return the number of tombstones written
+   */
+  @Modifying
+  @Query(value = "INSERT INTO tombstone (kind, entity_id, change_version, date_time)"
+          + " SELECT 'CATEGORY', catimpl_id, :version, CURRENT_TIMESTAMP FROM catimpl WHERE catimpl_id = :id",
+          nativeQuery = true)
+  int insertTombstone(@Param("id") int id, @Param("version") long version);
+
+  /**
+   * Deletes the category with the given ID without loading it.
+   *
+   * @param id the ID of the category
+   * @return the number of categories deleted
+   */
+  @Modifying
+  @Query("DELETE FROM CategoryImpl c WHERE c.id = :id")
+  int deleteByIdReturningCount(@Param("id") int id);
+
 }
@@ -0,0 +1,21 @@
+package com.dtoind.lastvisit.repository;
+
+import com.dtoind.lastvisit.model.CategoryImpl;
+
+/**
+ * Repository fragment inserting categories whose name may already be taken by a concurrent writer.
+ */
+public interface CategoryUpsertRepository {
+
+  /**
+   * Inserts the given new category unless a category with its name is already stored, with a single
+   * INSERT statement that neither fails nor waits for a retry when the name is taken. The category
+   * is given its ID from the shared ID sequence before it is inserted. Must be called within a
+   * transaction; a concurrent transaction inserting the same name makes this one wait for its outcome.
+   *
+   * @param category the category to insert, with its name, date/time and change version set
+   * @return {@code true} if the category was inserted, {@code false} if its name was already taken
+   */
+  boolean insertIfAbsent(CategoryImpl category);
+
+}
@@ -0,0 +1,59 @@
+package com.dtoind.lastvisit.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.dtoind.lastvisit.model.HourlyVisitBucket;
+
+/**
+ * Repository interface for reading and pruning {@link HourlyVisitBucket} entities.
+ */
+@Repository
+public interface HourlyVisitBucketRepository extends JpaRepository<HourlyVisitBucket, Long> {
+
+  /**
+   * Finds the hourly buckets of a link starting at or after the given time.
+   *
+   * @param linkId the ID of the link
+   * @param from the earliest bucket start to include
+   * @return the buckets in chronological order
+   */
+  List<HourlyVisitBucket> findByLinkIdAndBucketStartGreaterThanEqualOrderByBucketStart(int linkId,
+                                                                                        LocalDateTime from);
+
+  /**
+   * Deletes the hourly buckets of the link with the given ID.
+   *
+   * @param linkId the ID of the link
+   * @return the number of buckets deleted
+   */
+  @Modifying
+  @Query("DELETE FROM HourlyVisitBucket b WHERE b.linkId = :linkId")
+  int deleteByLinkId(@Param("linkId") int linkId);
+
+  /**
+   * Deletes the hourly buckets starting before the given time.
+   *
+   * @param before the bucket start before which buckets are deleted
+   * @return the number of buckets deleted
+   */
+  @Modifying
+  @Query("DELETE FROM HourlyVisitBucket b WHERE b.bucketStart < :before")
+  int deleteStartingBefore(@Param("before") LocalDateTime before);
+
+  /**
+   * Deletes the hourly buckets of links that no longer exist.
+   *
+   * @return the number of buckets deleted
+   */
+  @Modifying
+  @Query("DELETE FROM HourlyVisitBucket b WHERE NOT EXISTS (SELECT l.id FROM LinkImpl l WHERE l.id = b.linkId)")
+  int deleteOrphans();
+
+}
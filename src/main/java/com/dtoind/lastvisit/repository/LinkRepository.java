@@ -1,21 +1,43 @@
 package com.dtoind.lastvisit.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.dtoind.lastvisit.model.Category;
+import com.dtoind.lastvisit.model.DashboardRow;
 import com.dtoind.lastvisit.model.Link;
 import com.dtoind.lastvisit.model.LinkImpl;
+import com.dtoind.lastvisit.model.LinkView;
+import com.dtoind.lastvisit.model.VersionedLinkView;
+import com.dtoind.lastvisit.util.UrlHash;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 /**
  * Repository interface for managing {@link Link} entities.
  * Extends {@link JpaRepository} for basic CRUD operations and provides additional methods for custom queries.
+ * Bulk visit counting is provided by the {@link VisitCountRepository} fragment.
+ *
+ * Links are looked up by URL through the unique index on the hash of the normalized URL
+ * (see {@link UrlHash}); the URL itself is then compared to rule out a hash collision.
  */
 @Repository
-public interface LinkRepository extends JpaRepository<LinkImpl, Integer> {
+public interface LinkRepository extends JpaRepository<LinkImpl, Integer>, VisitCountRepository {
 
   /**
    * Finds a {@link Link} entity by its URL.
@@ -23,7 +45,18 @@ public interface LinkRepository extends JpaRepository<LinkImpl, Integer> {
    * @param url the URL of the link
    * @return an {@link Optional} containing the link if found, or an empty {@link Optional} if not found
    */
-  Optional<Link> findByUrl(String url);
+  default Optional<Link> findByUrl(String url) {
+    return findByUrlHashAndUrl(UrlHash.of(url), UrlHash.normalize(url));
+  }
+
+  /**
+   * Finds a {@link Link} entity by the hash of its URL and its normalized URL.
+   *
+   * @param urlHash the hash of the URL
+   * @param url the normalized URL
+   * @return an {@link Optional} containing the link if found, or an empty {@link Optional} if not found
+   */
+  Optional<Link> findByUrlHashAndUrl(byte[] urlHash, String url);
 
   /**
    * Finds a list of {@link Link} entities associated with a given {@link Category}.
@@ -39,6 +72,222 @@ public interface LinkRepository extends JpaRepository<LinkImpl, Integer> {
    * @param url the URL to check
    * @return true if a link with the specified URL exists, false otherwise
    */
-  boolean existsByUrl(String url);
+  default boolean existsByUrl(String url) {
+    return existsByUrlHashAndUrl(UrlHash.of(url), UrlHash.normalize(url));
+  }
+
+  /**
+   * Checks if a {@link Link} entity with the given URL hash and normalized URL exists.
+   *
+   * @param urlHash the hash of the URL
+   * @param url the normalized URL
+   * @return true if such a link exists, false otherwise
+   */
+  boolean existsByUrlHashAndUrl(byte[] urlHash, String url);
+
+  /**
+   * Finds the ID of the {@link Link} with the given URL without loading the entity.
+   *
+   * @param url the URL of the link
+   * @return an {@link Optional} containing the link ID if found, or an empty {@link Optional} if not found
+   */
+  default Optional<Integer> findIdByUrl(String url) {
+    return findIdByUrlHashAndUrl(UrlHash.of(url), UrlHash.normalize(url));
+  }
+
+  /**
+   * Finds the ID of the {@link Link} with the given URL hash and normalized URL without loading the entity.
+   *
+   * @param urlHash the hash of the URL
+   * @param url the normalized URL
+   * @return an {@link Optional} containing the link ID if found, or an empty {@link Optional} if not found
+   */
+  @Query("SELECT l.id FROM LinkImpl l WHERE l.urlHash = :urlHash AND l.url = :url")
+  Optional<Integer> findIdByUrlHashAndUrl(@Param("urlHash") byte[] urlHash, @Param("url") String url);
+
+  /**
+   * Finds which of the given URL hashes belong to stored links, in one query.
+   *
+   * @param urlHashes the URL hashes to check
+   * @return the normalized URLs of the stored links among them
+   */
+  @Query("SELECT l.url FROM LinkImpl l WHERE l.urlHash IN :urlHashes")
+  List<String> findUrlsByUrlHashIn(@Param("urlHashes") Collection<byte[]> urlHashes);
+
+  /**
+   * Finds which of the given link IDs belong to stored links, in one query.
+   *
+   * @param ids the link IDs to check
+   * @return the IDs of the stored links among them
+   */
+  @Query("SELECT l.id FROM LinkImpl l WHERE l.id IN :ids")
+  List<Integer> findIdsByIdIn(@Param("ids") Collection<Integer> ids);
+
+  /**
+   * Streams read-only views of all links, with their category names joined in the same SELECT.
+   * Rows are fetched from the database in chunks, so the whole table is never held in memory.
+   * Must be called inside a transaction and the returned stream must be closed.
+   * With MySQL, cursor fetching ({@code useCursorFetch=true}) must be enabled on the connection URL
+   * for the fetch size to take effect.
+   *
+   * @return a stream of views of all links
+   */
+  @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+  @Query("SELECT new com.dtoind.lastvisit.model.LinkView(l.id, c.name, l.name, l.url, l.dateTime, l.numVisits)"
+          + " FROM LinkImpl l JOIN l.categoryImpl c")
+  Stream<LinkView> streamAllViews();
+
+  /**
+   * Streams read-only views of all links with their change versions, with their category names
+   * joined in the same SELECT. Must be called inside a transaction and the returned stream must be closed.
+   *
+   * @return a stream of versioned views of all links
+   */
+  @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+  @Query("SELECT new com.dtoind.lastvisit.model.VersionedLinkView(l.id, c.name, l.name, l.url, l.dateTime,"
+          + " l.numVisits, l.changeVersion) FROM LinkImpl l JOIN l.categoryImpl c")
+  Stream<VersionedLinkView> streamAllVersionedViews();
+
+  /**
+   * Streams every category with its links, in category ID order and then link ID order, with one
+   * left-joined SELECT. An empty category comes as a single row without a link.
+   * Must be called inside a transaction and the returned stream must be closed.
+   *
+   * @return a stream of dashboard rows
+   */
+  @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+  @Query("SELECT new com.dtoind.lastvisit.model.DashboardRow(c.id, c.name, l.id, l.name, l.url, l.dateTime,"
+          + " l.numVisits, l.changeVersion)"
+          + " FROM CategoryImpl c LEFT JOIN LinkImpl l ON l.categoryImpl = c ORDER BY c.id, l.id")
+  Stream<DashboardRow> streamDashboardRows();
+
+  /**
+   * Finds read-only views of the links that come after the given ID in ID order.
+   * Uses the primary key index, so the cost of a page does not depend on how deep it is.
+   *
+   * @param afterId the ID of the last link of the previous page, or 0 for the first page
+   * @param page the maximum number of links to return
+   * @return the link views in ID order
+   */
+  @Query("SELECT new com.dtoind.lastvisit.model.LinkView(l.id, c.name, l.name, l.url, l.dateTime, l.numVisits)"
+          + " FROM LinkImpl l JOIN l.categoryImpl c WHERE l.id > :afterId ORDER BY l.id")
+  List<LinkView> findViewPageAfter(@Param("afterId") int afterId, Pageable page);
+
+  /**
+   * Streams read-only views of the links written after the given data version, in change version order.
+   * Uses the change version index, so the cost depends on the number of links changed since then.
+   * Must be called inside a transaction and the returned stream must be closed.
+   *
+   * @param since the data version the client has already synced
+   * @return a stream of views of the changed links
+   */
+  @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+  @Query("SELECT new com.dtoind.lastvisit.model.LinkView(l.id, c.name, l.name, l.url, l.dateTime, l.numVisits)"
+          + " FROM LinkImpl l JOIN l.categoryImpl c WHERE l.changeVersion > :since ORDER BY l.changeVersion")
+  Stream<LinkView> streamViewsChangedSince(@Param("since") long since);
+
+  /**
+   * Streams the URLs of all links, for seeding in-memory indexes.
+   * Must be called inside a transaction and the returned stream must be closed.
+   *
+   * @return a stream of all link URLs
+   */
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  @Query("SELECT l.url FROM LinkImpl l")
+  Stream<String> streamAllUrls();
+
+  /**
+   * Counts the links in the category with the given ID.
+   *
+   * @param categoryId the ID of the category
+   * @return the number of links in the category
+   */
+  @Query("SELECT COUNT(l) FROM LinkImpl l WHERE l.categoryImpl.id = :categoryId")
+  long countByCategoryId(@Param("categoryId") int categoryId);
+
+  /**
+   * Deletes up to {@code limit} links of the category with the given ID without loading them,
+   * leaving a tombstone with the given data version for each, all in one transaction.
+   * Callers repeat it until it returns 0, so no single transaction holds locks on more than
+   * {@code limit} rows.
+   *
+   * @param categoryId the ID of the category
+   * @param limit the maximum number of links to delete
+   * @param version the data version of the deletion
+   * @return the number of links deleted
+   */
+  @Transactional
+  default int deleteBatchByCategoryId(int categoryId, int limit, long version) {
+    List<Integer> ids = findIdsByCategoryId(categoryId, PageRequest.of(0, limit));
+    if (ids.isEmpty()) {
+      return 0;
+    }
+    insertTombstones(ids, version);
+    return deleteByIdIn(ids);
+  }
+
+  /**
+   * Deletes the link with the given ID and leaves a tombstone with the given data version,
+   * both in one transaction.
+   *
+   * @param id the ID of the link
+   * @param version the data version of the deletion
+   * @return the number of links deleted, 0 if no link has the given ID
+   */
+  @Transactional
+  default int deleteWithTombstone(int id, long version) {
+    List<Integer> ids = List.of(id);
+    insertTombstones(ids, version);
+    return deleteByIdIn(ids);
+  }
+
+  /**
+   * Finds the IDs of links in the category with the given ID.
+   *
+   * @param categoryId the ID of the category
+   * @param page the maximum number of IDs to return
+   * @return the link IDs
+   */
+  @Query("SELECT l.id FROM LinkImpl l WHERE l.categoryImpl.id = :categoryId")
+  List<Integer> findIdsByCategoryId(@Param("categoryId") int categoryId, Pageable page);
+
+  /**
+   * Records the deletion of the links with the given IDs with one tombstone each.
+   *
+   * @param ids the IDs of the links about to be deleted
+   * @param version the data version of the deletion
+   * @return the number of tombstones written
+   */
+  @Modifying
+  @Query(value = "INSERT INTO tombstone (kind, entity_id, change_version, date_time)"
+          + " SELECT 'LINK', linkimpl_id, :version, CURRENT_TIMESTAMP FROM linkimpl WHERE linkimpl_id IN :ids",
+          nativeQuery = true)
+  int insertTombstones(@Param("ids") Collection<Integer> ids, @Param("version") long version);
+
+  /**
+   * Deletes the links with the given IDs in one set-based DELETE, without loading them.
+   *
+   * @param ids the IDs of the links to delete
+   * @return the number of links deleted
+   */
+  @Modifying
+  @Query("DELETE FROM LinkImpl l WHERE l.id IN :ids")
+  int deleteByIdIn(@Param("ids") Collection<Integer> ids);
+
+  /**
+   * Records one visit to the {@link Link} with the given ID in a single UPDATE statement,
+   * incrementing its number of visits and setting its date and time and change version.
+   * No entity is loaded, so concurrent visits to the same link are never lost.
+   *
+   * @param id the ID of the visited link
+   * @param visitTime the date and time of the visit
+   * @param version the data version of the visit
+   * @return the number of links updated, 0 if no link has the given ID
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE LinkImpl l SET l.numVisits = l.numVisits + 1, l.dateTime = :visitTime, l.changeVersion = :version"
+          + " WHERE l.id = :id")
+  int recordVisit(@Param("id") int id, @Param("visitTime") LocalDateTime visitTime, @Param("version") long version);
 
 }
@@ -0,0 +1,59 @@
+package com.dtoind.lastvisit.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.dtoind.lastvisit.model.Tombstone;
+
+/**
+ * Repository interface for the log of {@link Tombstone} entities, which is appended to on every deletion
+ * and pruned by age.
+ */
+@Repository
+public interface TombstoneRepository extends JpaRepository<Tombstone, Long> {
+
+  /**
+   * Finds the tombstones of the rows deleted after the given data version.
+   * Uses the change version index, so the cost depends on the number of deletions since then.
+   *
+   * @param since the data version the client has already synced
+   * @return the tombstones in change version order
+   */
+  @Query("SELECT t FROM Tombstone t WHERE t.changeVersion > :since ORDER BY t.changeVersion")
+  List<Tombstone> findChangedSince(@Param("since") long since);
+
+  /**
+   * Finds the data version of the oldest tombstone kept.
+   *
+   * @return an Optional containing the lowest change version, or an empty Optional if there are no tombstones
+   */
+  @Query("SELECT MIN(t.changeVersion) FROM Tombstone t")
+  Optional<Long> findOldestVersion();
+
+  /**
+   * Finds the data version of the newest tombstone written before the given date and time.
+   *
+   * @param before the date and time before which tombstones are considered
+   * @return an Optional containing the highest change version, or an empty Optional if there is none
+   */
+  @Query("SELECT MAX(t.changeVersion) FROM Tombstone t WHERE t.dateTime < :before")
+  Optional<Long> findLatestVersionBefore(@Param("before") LocalDateTime before);
+
+  /**
+   * Deletes the tombstones of the deletions before the given data version.
+   *
+   * @param version the data version before which tombstones are deleted
+   * @return the number of tombstones deleted
+   */
+  @Modifying
+  @Query("DELETE FROM Tombstone t WHERE t.changeVersion < :version")
+  int deleteVersionsBefore(@Param("version") long version);
+
+}
@@ -0,0 +1,44 @@
+package com.dtoind.lastvisit.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.dtoind.lastvisit.model.VisitBatchReceipt;
+
+/**
+ * Repository interface for the {@link VisitBatchReceipt} entities of applied visit batches.
+ */
+@Repository
+public interface VisitBatchReceiptRepository extends JpaRepository<VisitBatchReceipt, String> {
+
+  /**
+   * Records that the batch with the given ID is being applied, unless it already has been.
+   * A concurrent transaction recording the same batch makes this one wait for its outcome.
+   *
+   * @param batchId the client's ID of the batch
+   * @param dateTime the date and time the batch is applied
+   * @param visits the number of visits in the batch
+   * @return 1 if the receipt was written, 0 if the batch had already been applied
+   */
+  @Modifying
+  @Query(value = "INSERT IGNORE INTO visitbatchreceipt (batch_id, date_time, visits)"
+          + " VALUES (:batchId, :dateTime, :visits)", nativeQuery = true)
+  int insertIfAbsent(@Param("batchId") String batchId, @Param("dateTime") LocalDateTime dateTime,
+                     @Param("visits") int visits);
+
+  /**
+   * Deletes the receipts of batches applied before the given date and time.
+   *
+   * @param before the date and time before which receipts are deleted
+   * @return the number of receipts deleted
+   */
+  @Modifying
+  @Query("DELETE FROM VisitBatchReceipt r WHERE r.dateTime < :before")
+  int deleteOlderThan(@Param("before") LocalDateTime before);
+
+}
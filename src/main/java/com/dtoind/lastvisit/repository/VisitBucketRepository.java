@@ -0,0 +1,27 @@
+package com.dtoind.lastvisit.repository;
+
+import java.util.Map;
+
+import com.dtoind.lastvisit.model.VisitBucketKey;
+
+/**
+ * Repository fragment for adding visit counts to the hourly and daily bucket tables.
+ * Implemented by {@link VisitBucketRepositoryImpl} and mixed into {@link VisitEventRepository}.
+ */
+public interface VisitBucketRepository {
+
+  /**
+   * Adds the given counts to the hourly buckets, creating buckets that do not exist yet.
+   *
+   * @param counts the number of visits to add, keyed by link and start of the hour
+   */
+  void addToHourlyBuckets(Map<VisitBucketKey, Long> counts);
+
+  /**
+   * Adds the given counts to the daily buckets, creating buckets that do not exist yet.
+   *
+   * @param counts the number of visits to add, keyed by link and start of the day
+   */
+  void addToDailyBuckets(Map<VisitBucketKey, Long> counts);
+
+}
@@ -0,0 +1,54 @@
+package com.dtoind.lastvisit.repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.dtoind.lastvisit.model.VisitBucketKey;
+
+/**
+ * JDBC implementation of {@link VisitBucketRepository} using batched MySQL upserts.
+ */
+public class VisitBucketRepositoryImpl implements VisitBucketRepository {
+
+  private static final String UPSERT = "INSERT INTO %s (link_id, bucket_start, visits) VALUES (?, ?, ?)"
+          + " ON DUPLICATE KEY UPDATE visits = visits + VALUES(visits)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Constructs a new VisitBucketRepositoryImpl with the specified JdbcTemplate.
+   *
+   * @param jdbcTemplate the JdbcTemplate used to run the batched statements
+   */
+  public VisitBucketRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public void addToHourlyBuckets(Map<VisitBucketKey, Long> counts) {
+    upsert("visithourly", counts);
+  }
+
+  @Override
+  public void addToDailyBuckets(Map<VisitBucketKey, Long> counts) {
+    upsert("visitdaily", counts);
+  }
+
+  private void upsert(String table, Map<VisitBucketKey, Long> counts) {
+    if (counts.isEmpty()) {
+      return;
+    }
+
+    List<Map.Entry<VisitBucketKey, Long>> entries = new ArrayList<>(counts.entrySet());
+    jdbcTemplate.batchUpdate(String.format(UPSERT, table), entries, entries.size(), (ps, entry) -> {
+      ps.setInt(1, entry.getKey().linkId());
+      ps.setTimestamp(2, Timestamp.valueOf(entry.getKey().bucketStart()));
+      ps.setLong(3, entry.getValue());
+    });
+  }
+
+}
@@ -0,0 +1,33 @@
+package com.dtoind.lastvisit.repository;
+
+import java.util.Map;
+
+import com.dtoind.lastvisit.model.VisitDelta;
+
+/**
+ * Repository fragment for applying accumulated visit counts to links in bulk.
+ * Implemented by {@link VisitCountRepositoryImpl} and mixed into {@link LinkRepository}.
+ */
+public interface VisitCountRepository {
+
+  /**
+   * Adds the given visit counts to the links with the matching URLs using one batched statement.
+   * Each link's date and time is set to the latest visit in its delta.
+   *
+   * @param deltas the visit deltas keyed by link URL
+   * @param version the data version stamped on the updated links
+   * @return the number of links that were updated
+   */
+  int addVisits(Map<String, VisitDelta> deltas, long version);
+
+  /**
+   * Adds the given visit counts to the links with the matching IDs using one batched statement.
+   * A link's date and time is only moved forward, never back.
+   *
+   * @param deltas the visit deltas keyed by link ID
+   * @param version the data version stamped on the updated links
+   * @return the number of links that were updated
+   */
+  int addVisitsById(Map<Integer, VisitDelta> deltas, long version);
+
+}
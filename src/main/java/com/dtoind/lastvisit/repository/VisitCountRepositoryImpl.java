@@ -0,0 +1,84 @@
+package com.dtoind.lastvisit.repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.dtoind.lastvisit.model.VisitDelta;
+import com.dtoind.lastvisit.util.UrlHash;
+
+/**
+ * JDBC implementation of {@link VisitCountRepository}.
+ * Uses plain batched UPDATE statements so that no entity has to be loaded to count a visit.
+ */
+public class VisitCountRepositoryImpl implements VisitCountRepository {
+
+  private static final String ADD_VISITS_BY_URL =
+          "UPDATE linkimpl SET num_visits = num_visits + ?, date_time = GREATEST(COALESCE(date_time, ?), ?),"
+          + " change_version = ? WHERE url_hash = ? AND url = ?";
+  private static final String ADD_VISITS_BY_ID = "UPDATE linkimpl SET num_visits = num_visits + ?,"
+          + " date_time = GREATEST(COALESCE(date_time, ?), ?), change_version = ? WHERE linkimpl_id = ?";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Constructs a new VisitCountRepositoryImpl with the specified JdbcTemplate.
+   *
+   * @param jdbcTemplate the JdbcTemplate used to run the batched statements
+   */
+  public VisitCountRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  @Transactional
+  public int addVisits(Map<String, VisitDelta> deltas, long version) {
+    if (deltas.isEmpty()) {
+      return 0;
+    }
+
+    List<Map.Entry<String, VisitDelta>> entries = new ArrayList<>(deltas.entrySet());
+    return countUpdated(jdbcTemplate.batchUpdate(ADD_VISITS_BY_URL, entries, entries.size(), (ps, entry) -> {
+      Timestamp lastVisit = Timestamp.valueOf(entry.getValue().lastVisit());
+      ps.setLong(1, entry.getValue().count());
+      ps.setTimestamp(2, lastVisit);
+      ps.setTimestamp(3, lastVisit);
+      ps.setLong(4, version);
+      ps.setBytes(5, UrlHash.of(entry.getKey()));
+      ps.setString(6, UrlHash.normalize(entry.getKey()));
+    }));
+  }
+
+  @Override
+  @Transactional
+  public int addVisitsById(Map<Integer, VisitDelta> deltas, long version) {
+    if (deltas.isEmpty()) {
+      return 0;
+    }
+
+    List<Map.Entry<Integer, VisitDelta>> entries = new ArrayList<>(deltas.entrySet());
+    return countUpdated(jdbcTemplate.batchUpdate(ADD_VISITS_BY_ID, entries, entries.size(), (ps, entry) -> {
+      Timestamp lastVisit = Timestamp.valueOf(entry.getValue().lastVisit());
+      ps.setLong(1, entry.getValue().count());
+      ps.setTimestamp(2, lastVisit);
+      ps.setTimestamp(3, lastVisit);
+      ps.setLong(4, version);
+      ps.setInt(5, entry.getKey());
+    }));
+  }
+
+  private static int countUpdated(int[][] results) {
+    int updated = 0;
+    for (int[] batch : results) {
+      for (int rows : batch) {
+        updated += Math.max(rows, 0);
+      }
+    }
+    return updated;
+  }
+
+}
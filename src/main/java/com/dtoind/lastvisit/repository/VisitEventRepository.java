@@ -0,0 +1,65 @@
+package com.dtoind.lastvisit.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.dtoind.lastvisit.model.VisitEvent;
+
+/**
+ * Repository interface for the append-only log of {@link VisitEvent} entities.
+ * Bucket maintenance is provided by the {@link VisitBucketRepository} fragment.
+ */
+@Repository
+public interface VisitEventRepository extends JpaRepository<VisitEvent, Long>, VisitBucketRepository {
+
+  /**
+   * Finds the oldest visit events with an ID greater than the given one.
+   *
+   * @param afterId the ID of the last event already processed
+   * @param page the maximum number of events to return
+   * @return the events in ID order
+   */
+  @Query("SELECT e FROM VisitEvent e WHERE e.id > :afterId ORDER BY e.id")
+  List<VisitEvent> findBatchAfter(@Param("afterId") long afterId, Pageable page);
+
+  /**
+   * Deletes the visit events of the link with the given ID.
+   *
+   * @param linkId the ID of the link
+   * @return the number of events deleted
+   */
+  @Modifying
+  @Query("DELETE FROM VisitEvent e WHERE e.linkId = :linkId")
+  int deleteByLinkId(@Param("linkId") int linkId);
+
+  /**
+   * Deletes the visit events the rollup has folded that were recorded before the given date and time.
+   * Events with an ID up to {@code lastEventId} that are still awaited as gaps are kept.
+   * Goes by when the server recorded an event, not by the visit time the client may have stamped.
+   *
+   * @param lastEventId the ID up to which the rollup has progressed
+   * @param before the date and time before which folded events are deleted
+   * @return the number of events deleted
+   */
+  @Modifying
+  @Query("DELETE FROM VisitEvent e WHERE e.id <= :lastEventId AND e.recordedAt < :before"
+          + " AND e.id NOT IN (SELECT g.eventId FROM VisitRollupGap g)")
+  int deleteFoldedBefore(@Param("lastEventId") long lastEventId, @Param("before") LocalDateTime before);
+
+  /**
+   * Deletes the visit events of links that no longer exist.
+   *
+   * @return the number of events deleted
+   */
+  @Modifying
+  @Query("DELETE FROM VisitEvent e WHERE NOT EXISTS (SELECT l.id FROM LinkImpl l WHERE l.id = e.linkId)")
+  int deleteOrphans();
+
+}
@@ -0,0 +1,29 @@
+package com.dtoind.lastvisit.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.dtoind.lastvisit.model.VisitRollupGap;
+
+/**
+ * Repository interface for the {@link VisitRollupGap} entities of the visit rollup.
+ */
+@Repository
+public interface VisitRollupGapRepository extends JpaRepository<VisitRollupGap, Long> {
+
+  /**
+   * Deletes the gaps the rollup passed before the given date and time, giving up on their events.
+   *
+   * @param before the date and time before which gaps are deleted
+   * @return the number of gaps deleted
+   */
+  @Modifying
+  @Query("DELETE FROM VisitRollupGap g WHERE g.seenAt < :before")
+  int deleteSeenBefore(@Param("before") LocalDateTime before);
+
+}
@@ -0,0 +1,31 @@
+package com.dtoind.lastvisit.repository;
+
+import java.util.Optional;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.dtoind.lastvisit.model.VisitRollupState;
+
+/**
+ * Repository interface for {@link VisitRollupState} entities.
+ */
+@Repository
+public interface VisitRollupStateRepository extends JpaRepository<VisitRollupState, String> {
+
+  /**
+   * Finds the state of the named rollup and locks it for the rest of the transaction,
+   * so that only one rollup can run at a time.
+   *
+   * @param name the name of the rollup
+   * @return an Optional containing the rollup state if found, or an empty Optional otherwise
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT s FROM VisitRollupState s WHERE s.name = :name")
+  Optional<VisitRollupState> findForUpdate(@Param("name") String name);
+
+}
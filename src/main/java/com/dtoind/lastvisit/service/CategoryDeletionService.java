@@ -0,0 +1,192 @@
+package com.dtoind.lastvisit.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.dtoind.lastvisit.model.Category;
+
+/**
+ * Service class for deleting a category together with its links.
+ *
+ * Links are deleted in set-based batches of {@code lastvisit.categories.delete-batch-size} links
+ * (1000 by default). A category with more than {@code lastvisit.categories.async-delete-threshold}
+ * links (10000 by default) is deleted by a background job, one job at a time, whose progress can be
+ * polled with {@link #findJob(String)}. Finished jobs are kept for an hour.
+ */
+@Service
+public class CategoryDeletionService {
+
+    private static final Logger logger = LogManager.getLogger(CategoryDeletionService.class);
+
+    private static final Duration FINISHED_JOB_RETENTION = Duration.ofHours(1);
+
+    private final LinkService linkService;
+    private final CategoryService catService;
+    private final int batchSize;
+    private final long asyncThreshold;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "category-deletion");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs a new CategoryDeletionService.
+     *
+     * @param linkService the LinkService the links are deleted through
+     * @param catService the CategoryService the category is deleted through
+     * @param batchSize the maximum number of links deleted per statement
+     * @param asyncThreshold the number of links above which a category is deleted in the background
+     */
+    public CategoryDeletionService(LinkService linkService,
+                                   CategoryService catService,
+                                   @Value("${lastvisit.categories.delete-batch-size:1000}") int batchSize,
+                                   @Value("${lastvisit.categories.async-delete-threshold:10000}") long asyncThreshold) {
+        this.linkService = linkService;
+        this.catService = catService;
+        this.batchSize = batchSize;
+        this.asyncThreshold = asyncThreshold;
+    }
+
+    /**
+     * Deletes the given category and its links. Small categories are deleted before this method
+     * returns; larger ones are handed to a background job.
+     *
+     * @param category the category to delete
+     * @return the deletion job, which is already finished if the category was deleted right away
+     */
+    public Job delete(Category category) {
+        pruneFinishedJobs();
+
+        long total = linkService.countLinks(category);
+        Job job = new Job(UUID.randomUUID().toString(), category.getName(), total);
+        jobs.put(job.getId(), job);
+
+        if (total <= asyncThreshold) {
+            run(job, category);
+        } else {
+            logger.info("Deleting category {} with {} links in background job {}", category.getName(), total,
+                    job.getId());
+            executor.execute(() -> run(job, category));
+        }
+        return job;
+    }
+
+    /**
+     * Finds a deletion job by its ID.
+     *
+     * @param id the ID of the job
+     * @return an {@code Optional} containing the job if found, otherwise an empty {@code Optional}
+     */
+    public Optional<Job> findJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Stops the background job, if any, when the application shuts down.
+     * A category whose job is interrupted keeps the links that were not deleted yet.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Job job, Category category) {
+        try {
+            linkService.deleteAllLinks(category, batchSize, job.deleted::set);
+            catService.delete(category);
+            job.finish(null);
+        } catch (Exception e) {
+            logger.error("Deleting category {} failed after {} links", category.getName(), job.getDeletedLinks(), e);
+            job.finish(e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private void pruneFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(FINISHED_JOB_RETENTION);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    /**
+     * The states a deletion job goes through.
+     */
+    public enum State {
+        RUNNING, DONE, FAILED
+    }
+
+    /**
+     * A category deletion and its progress.
+     */
+    public static class Job {
+
+        private final String id;
+        private final String category;
+        private final long totalLinks;
+        private final AtomicLong deleted = new AtomicLong();
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        Job(String id, String category, long totalLinks) {
+            this.id = id;
+            this.category = category;
+            this.totalLinks = totalLinks;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public long getTotalLinks() {
+            return totalLinks;
+        }
+
+        public long getDeletedLinks() {
+            return deleted.get();
+        }
+
+        public State getState() {
+            if (finishedAt == null) {
+                return State.RUNNING;
+            }
+            return error == null ? State.DONE : State.FAILED;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        public LocalDateTime getFinishedAt() {
+            return finishedAt;
+        }
+
+        private void finish(String error) {
+            this.error = error;
+            this.finishedAt = LocalDateTime.now();
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+package com.dtoind.lastvisit.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.dtoind.lastvisit.model.Category;
+import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.repository.CategoryRepository;
+
+/**
+ * In-memory copy of all categories, keyed by name and by ID.
+ *
+ * Categories are few and rarely change, so reads are served from an immutable snapshot that is
+ * replaced as a whole on every write ({@link CategoryService} writes through on save and delete).
+ * The snapshot is loaded when the application starts and reloaded every
+ * {@code lastvisit.categories.reload-interval-ms} milliseconds (one minute by default) to pick up
+ * changes made by other instances.
+ *
+ * Every snapshot carries a version that only advances when the categories change, so that
+ * {@code /cats} can be tagged and cached by it without being invalidated by writes to links.
+ */
+@Service
+public class CategoryRegistry {
+
+    private static final Logger logger = LogManager.getLogger(CategoryRegistry.class);
+
+    private static final Comparator<Category> BY_ID = Comparator.comparingInt(Category::getId);
+
+    private final CategoryRepository catRepo;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private volatile Snapshot snapshot;
+
+    // bumped on every write-through, so that a reload cannot overwrite a write it did not see
+    private long writes = 0;
+
+    /**
+     * Constructs a new CategoryRegistry.
+     *
+     * @param catRepo the CategoryRepository the categories are loaded from
+     */
+    public CategoryRegistry(CategoryRepository catRepo) {
+        this.catRepo = catRepo;
+    }
+
+    /**
+     * Replaces the snapshot with the categories currently stored in the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${lastvisit.categories.reload-interval-ms:60000}",
+            fixedDelayString = "${lastvisit.categories.reload-interval-ms:60000}")
+    @Transactional(readOnly = true)
+    public void reload() {
+        long writesBefore;
+        synchronized (this) {
+            writesBefore = writes;
+        }
+
+        List<Category> categories = new ArrayList<>(catRepo.findAll());
+        synchronized (this) {
+            if (writes != writesBefore) {
+                logger.debug("Category registry changed while reloading, keeping the current snapshot");
+                return;
+            }
+            Snapshot current = snapshot;
+            if (current == null) {
+                snapshot = Snapshot.of(categories, 0);
+            } else if (!Snapshot.of(categories, current.version()).all().equals(current.all())) {
+                snapshot = Snapshot.of(categories, current.version() + 1);
+            }
+        }
+        logger.debug("Category registry loaded with {} categories", categories.size());
+    }
+
+    /**
+     * Finds a category by its name.
+     *
+     * @param name the name of the category
+     * @return an {@code Optional} containing the category if found, otherwise an empty {@code Optional}
+     */
+    public Optional<Category> findByName(String name) {
+        return Optional.ofNullable(current().byName().get(name));
+    }
+
+    /**
+     * Finds a category by its ID.
+     *
+     * @param id the ID of the category
+     * @return an {@code Optional} containing the category if found, otherwise an empty {@code Optional}
+     */
+    public Optional<Category> findById(int id) {
+        return Optional.ofNullable(current().byId().get(id));
+    }
+
+    /**
+     * Returns all categories in ID order.
+     *
+     * @return an unmodifiable list of all categories
+     */
+    public List<Category> findAll() {
+        return current().all();
+    }
+
+    /**
+     * Returns the categories that come after the given ID in ID order.
+     *
+     * @param afterId the ID of the last category of the previous page, or 0 for the first page
+     * @param max the maximum number of categories to return
+     * @return an unmodifiable list of at most {@code max} categories
+     */
+    public List<Category> findAfter(int afterId, int max) {
+        List<Category> all = current().all();
+        int from = 0;
+        int to = all.size();
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (all.get(mid).getId() <= afterId) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return all.subList(from, Math.min(all.size(), from + max));
+    }
+
+    /**
+     * Returns the categories created or changed after the given version, in ID order.
+     *
+     * @param since the version the caller is up to date with
+     * @return the categories whose change version is greater than {@code since}
+     */
+    public List<Category> findChangedSince(long since) {
+        return current().all().stream()
+                .filter(c -> ((CategoryImpl) c).getChangeVersion() > since)
+                .toList();
+    }
+
+    /**
+     * Returns the version of the categories, which advances whenever a category is stored,
+     * deleted or found changed by a reload.
+     *
+     * @return the current version
+     */
+    public long version() {
+        return current().version();
+    }
+
+    /**
+     * Returns the given version of the categories as a strong ETag. Like the ETag of the
+     * {@link DataVersion}, it includes when this instance started, so ETags handed out by an
+     * earlier run or another instance never match.
+     *
+     * @param version a version returned by {@link #version()}
+     * @return the quoted ETag
+     */
+    public String etag(long version) {
+        return "\"" + epoch + "-c" + version + "\"";
+    }
+
+    /**
+     * Records that the given category has been stored.
+     *
+     * @param category the stored category
+     */
+    public synchronized void put(CategoryImpl category) {
+        List<Category> categories = new ArrayList<>(current().all());
+        categories.removeIf(c -> c.getId() == category.getId() || c.getName().equals(category.getName()));
+        categories.add(category);
+        snapshot = Snapshot.of(categories, current().version() + 1);
+        writes++;
+    }
+
+    /**
+     * Records that the given category has been deleted.
+     *
+     * @param category the deleted category
+     */
+    public synchronized void remove(Category category) {
+        List<Category> categories = new ArrayList<>(current().all());
+        if (categories.removeIf(c -> c.getId() == category.getId())) {
+            snapshot = Snapshot.of(categories, current().version() + 1);
+            writes++;
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // a request beat the startup load; load now rather than answer from an empty registry
+            synchronized (this) {
+                if (snapshot == null) {
+                    snapshot = Snapshot.of(new ArrayList<>(catRepo.findAll()), 0);
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private record Snapshot(Map<String, Category> byName, Map<Integer, Category> byId, List<Category> all,
+                            long version) {
+
+        static Snapshot of(List<Category> categories, long version) {
+            categories.sort(BY_ID);
+            Map<String, Category> byName = new HashMap<>();
+            Map<Integer, Category> byId = new HashMap<>();
+            for (Category category : categories) {
+                byName.put(category.getName(), category);
+                byId.put(category.getId(), category);
+            }
+            return new Snapshot(Map.copyOf(byName), Map.copyOf(byId), List.copyOf(categories), version);
+        }
+    }
+
+}
@@ -1,20 +1,28 @@
 package com.dtoind.lastvisit.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
-import org.springframework.data.domain.Example;
 import org.springframework.stereotype.Service;
 
 import com.dtoind.lastvisit.exception.CategoryNotFoundException;
 import com.dtoind.lastvisit.model.Category;
 import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.model.ChangeEvent;
+import com.dtoind.lastvisit.model.Tombstone;
 import com.dtoind.lastvisit.repository.CategoryRepository;
+import com.dtoind.lastvisit.util.Cursor;
+import com.dtoind.lastvisit.util.CursorPage;
+import com.dtoind.lastvisit.util.ExportWriter;
 
 /**
  * Service class for managing categories.
+ *
+ * Reads are answered by the {@link CategoryRegistry}, which this service keeps in sync on every write.
  */
 @Service
 public class CategoryService extends BaseService<CategoryImpl> {
@@ -22,15 +30,25 @@ public class CategoryService extends BaseService<CategoryImpl> {
     private static final Logger logger = LogManager.getLogger(CategoryService.class);
 
     private final CategoryRepository catRepo;
+    private final CategoryRegistry registry;
+    private final DataVersion dataVersion;
+    private final ChangeFeed changeFeed;
 
     /**
-     * Constructs a new CategoryService with the specified CategoryRepository.
+     * Constructs a new CategoryService with the specified CategoryRepository and CategoryRegistry.
      *
      * @param catRepo the CategoryRepository used for data access
+     * @param registry the in-memory registry categories are read from
+     * @param dataVersion the DataVersion every write takes its change version from
+     * @param changeFeed the ChangeFeed every write is published to
      */
-    public CategoryService(CategoryRepository catRepo) {
+    public CategoryService(CategoryRepository catRepo, CategoryRegistry registry, DataVersion dataVersion,
+                           ChangeFeed changeFeed) {
         super(catRepo);
         this.catRepo = catRepo;
+        this.registry = registry;
+        this.dataVersion = dataVersion;
+        this.changeFeed = changeFeed;
     }
 
     /**
@@ -56,8 +74,20 @@ public class CategoryService extends BaseService<CategoryImpl> {
             throw new IllegalArgumentException("Category cannot be null");
         }
 
-        if (!catRepo.exists(Example.of(category))) {
-            return super.save(category);
+        if (registry.findByName(category.getName()).isEmpty()) {
+            boolean saved;
+            long version = dataVersion.begin();
+            try {
+                category.setChangeVersion(version);
+                saved = super.save(category);
+            } finally {
+                dataVersion.end(version);
+            }
+            if (saved) {
+                registry.put(category);
+                changeFeed.publish(ChangeEvent.categoryCreated(category.getName()));
+            }
+            return saved;
         } else {
             logger.warn("Attempt to save an existing category: {}", category.getName());
             throw new IllegalArgumentException("Category already exists");
@@ -80,7 +110,34 @@ public class CategoryService extends BaseService<CategoryImpl> {
      * @param category the category to be deleted
      */
     public void delete(Category category) {
-        super.delete((CategoryImpl) category);
+        delete((CategoryImpl) category);
+    }
+
+    /**
+     * Deletes the specified category, leaving a {@link Tombstone} for clients that sync changes,
+     * and removes it from the registry. The category's links must have been deleted first.
+     *
+     * @param category the category to be deleted
+     * @throws IllegalArgumentException if the category is not stored
+     */
+    @Override
+    public void delete(CategoryImpl category) {
+        if (category == null) {
+            logger.warn("Attempt to delete a null category");
+            return;
+        }
+
+        long version = dataVersion.begin();
+        try {
+            if (catRepo.deleteWithTombstone(category.getId(), version) == 0) {
+                throw new IllegalArgumentException("Entity with ID " + category.getId() + " not found");
+            }
+        } finally {
+            dataVersion.end(version);
+        }
+        logger.info("Deleted category: {}", category);
+        registry.remove(category);
+        changeFeed.publish(ChangeEvent.categoryDeleted(category.getName()));
     }
 
     /**
@@ -100,7 +157,7 @@ public class CategoryService extends BaseService<CategoryImpl> {
      * @return an {@code Optional} containing the category with the specified name if found, otherwise an empty {@code Optional}
      */
     public Optional<Category> findByName(String catName) {
-        return catRepo.findByName(catName);
+        return registry.findByName(catName);
     }
 
     /**
@@ -124,24 +181,52 @@ public class CategoryService extends BaseService<CategoryImpl> {
      * @return a list containing all categories
      */
     public List<Category> findAllCategories() {
-        return catRepo.findAll().stream()
-                .map(c -> (Category) c)
-                .toList();
+        return registry.findAll();
     }
 
     /**
-     * Returns an existing category or creates and saves a new one if it doesn't exist.
+     * Returns the version of the categories, which advances only when a category changes.
      *
-     * @param catName the name of the category
-     * @return the existing or newly created category
+     * @return the current version of the categories
      */
-    public Category returnCategory(String catName) {
-        if (!categoryExists(catName)) {
-            Category category = createCategory(catName);
-            save(category);
-            return category;
-        } else {
-            return findOneCategory(catName);
+    public long categoriesVersion() {
+        return registry.version();
+    }
+
+    /**
+     * Returns the given version of the categories as a strong ETag.
+     *
+     * @param version a version returned by {@link #categoriesVersion()}
+     * @return the quoted ETag
+     */
+    public String categoriesETag(long version) {
+        return registry.etag(version);
+    }
+
+    /**
+     * Retrieves one page of categories in ID order.
+     *
+     * @param cursor the cursor returned with the previous page, or {@code null} for the first page
+     * @param limit the maximum number of categories in the page
+     * @return the page of categories and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public CursorPage<Category> findCategoriesAfter(String cursor, int limit) {
+        return CursorPage.of(registry.findAfter(Cursor.decode(cursor), limit + 1), limit, Category::getId);
+    }
+
+    /**
+     * Writes all categories to the given output stream in the given export format.
+     *
+     * @param format the export format
+     * @param out the stream to write the export to
+     * @throws IOException if writing to the stream fails
+     */
+    public void exportCategories(ExportFormat format, OutputStream out) throws IOException {
+        try (ExportWriter writer = format.open(out, "id", "name", "dateTime")) {
+            for (Category category : registry.findAll()) {
+                writer.writeRow(category.getId(), category.getName(), category.getDateTime());
+            }
         }
     }
 
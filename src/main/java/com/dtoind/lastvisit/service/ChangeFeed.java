@@ -0,0 +1,257 @@
+package com.dtoind.lastvisit.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.dtoind.lastvisit.model.ChangeEvent;
+import com.dtoind.lastvisit.util.JSONify;
+
+/**
+ * Fans change events out to every client subscribed to {@code GET /events}.
+ *
+ * Subscribers are asynchronous {@link SseEmitter}s, so no servlet thread is held per client.
+ * Events are serialized once and queued for each subscriber, so a write to the data never waits
+ * on a client. Each subscriber's queue is drained by at most one sender thread at a time, so a
+ * slow client only delays its own events. A queue holds at most {@code lastvisit.events.queue-size}
+ * events (256 by default); when it overflows, its events are replaced by a single {@code reload}
+ * and further events are dropped until the reload is sent, since the client reads everything
+ * again anyway. Each event carries the stable {@link DataVersion} as its ID.
+ *
+ * A subscriber that cannot be written to, or whose send has been blocked for longer than
+ * {@code lastvisit.events.send-timeout-ms} milliseconds (10 seconds by default), is dropped;
+ * the browser reconnects by itself and reads everything again.
+ */
+@Service
+public class ChangeFeed {
+
+    private static final Logger logger = LogManager.getLogger(ChangeFeed.class);
+
+    private final DataVersion dataVersion;
+    private final long timeoutMillis;
+    private final int queueSize;
+    private final long sendTimeoutNanos;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // at most one thread per subscriber with queued events, so a blocked client holds only its own
+    private final ExecutorService senders = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs a new ChangeFeed.
+     *
+     * @param dataVersion the DataVersion sent as the ID of each event
+     * @param timeoutMillis how long a subscription stays open before the client has to reconnect
+     * @param queueSize the number of events queued for a subscriber before they collapse into a reload
+     * @param sendTimeoutMillis how long a send may block before its subscriber is dropped
+     */
+    public ChangeFeed(DataVersion dataVersion,
+                      @Value("${lastvisit.events.timeout-ms:1800000}") long timeoutMillis,
+                      @Value("${lastvisit.events.queue-size:256}") int queueSize,
+                      @Value("${lastvisit.events.send-timeout-ms:10000}") long sendTimeoutMillis) {
+        this.dataVersion = dataVersion;
+        this.timeoutMillis = timeoutMillis;
+        this.queueSize = queueSize;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+    }
+
+    /**
+     * Subscribes a new client to the change events.
+     *
+     * @return the emitter the events are sent through
+     */
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(timeoutMillis));
+    }
+
+    // package-private so that tests can subscribe emitters of their own
+    SseEmitter subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        logger.debug("Change feed subscriber added, {} subscribers", subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * Checks if any client is subscribed, so that an event that is costly to build can be skipped.
+     *
+     * @return {@code true} if at least one client is subscribed, {@code false} otherwise
+     */
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    /**
+     * Returns the number of subscribed clients.
+     *
+     * @return the number of subscribers
+     */
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Sends the given event to every subscriber. Returns without waiting for the event to be sent.
+     *
+     * @param event the event to send
+     */
+    public void publish(ChangeEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        String data = JSONify.toJson(event);
+        String id = Long.toString(dataVersion.stable());
+        offer(() -> SseEmitter.event().name(event.type()).id(id).data(data));
+    }
+
+    /**
+     * Sends a comment to every subscriber every {@code lastvisit.events.heartbeat-interval-ms}
+     * milliseconds (30 seconds by default), so that clients that went away are noticed and
+     * proxies do not close idle connections. Subscribers whose send has been blocked for too long
+     * are dropped.
+     */
+    @Scheduled(initialDelayString = "${lastvisit.events.heartbeat-interval-ms:30000}",
+            fixedDelayString = "${lastvisit.events.heartbeat-interval-ms:30000}")
+    public void heartbeat() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.blockedLongerThan(sendTimeoutNanos, now)) {
+                subscriber.drop(new IOException("Send blocked for more than "
+                        + TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos) + " ms"));
+            }
+        }
+        offer(() -> SseEmitter.event().comment("heartbeat"));
+    }
+
+    /**
+     * Completes every subscription and stops the senders when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    // a builder can only be sent once, so each subscriber gets its own around the shared data
+    private void offer(Supplier<SseEmitter.SseEventBuilder> event) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    /**
+     * A subscribed client with its queue of events not sent yet.
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        // guarded by this
+        private final Deque<Supplier<SseEmitter.SseEventBuilder>> queue = new ArrayDeque<>();
+        private Supplier<SseEmitter.SseEventBuilder> queuedReload;
+        private boolean draining;
+
+        // when the send in progress started, 0 if none is
+        private volatile long sendingSince;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Supplier<SseEmitter.SseEventBuilder> event) {
+            synchronized (this) {
+                if (queuedReload != null) {
+                    // the client reads everything again once it gets the reload
+                    return;
+                }
+                if (queue.size() >= queueSize) {
+                    String id = Long.toString(dataVersion.stable());
+                    String data = JSONify.toJson(ChangeEvent.reload());
+                    queuedReload = () -> SseEmitter.event().name(ChangeEvent.RELOAD).id(id).data(data);
+                    queue.clear();
+                    queue.add(queuedReload);
+                    logger.debug("Change feed subscriber fell {} events behind, sending a reload instead", queueSize);
+                } else {
+                    queue.add(event);
+                }
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                senders.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                synchronized (this) {
+                    draining = false;
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Supplier<SseEmitter.SseEventBuilder> event;
+                synchronized (this) {
+                    event = queue.poll();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                    if (event == queuedReload) {
+                        queuedReload = null;
+                    }
+                }
+
+                sendingSince = System.nanoTime();
+                try {
+                    emitter.send(event.get());
+                } catch (IOException | IllegalStateException e) {
+                    drop(e);
+                    return;
+                } finally {
+                    sendingSince = 0;
+                }
+            }
+        }
+
+        boolean blockedLongerThan(long timeoutNanos, long now) {
+            long since = sendingSince;
+            return since != 0 && now - since > timeoutNanos;
+        }
+
+        void drop(Exception e) {
+            if (subscribers.remove(this)) {
+                logger.debug("Dropping change feed subscriber: {}", e.getMessage());
+                synchronized (this) {
+                    queue.clear();
+                }
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+}
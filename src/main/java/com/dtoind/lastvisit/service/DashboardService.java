@@ -0,0 +1,103 @@
+package com.dtoind.lastvisit.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.dtoind.lastvisit.model.DashboardRow;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.util.JSONify;
+
+/**
+ * Service class building the dashboard: every category with its links nested inside it,
+ * which is all the page needs to display itself.
+ */
+@Service
+public class DashboardService {
+
+    private static final Logger logger = LogManager.getLogger(DashboardService.class);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final LinkRepository linkRepo;
+    private final LinkJsonCache jsonCache;
+    private final DataVersion dataVersion;
+
+    /**
+     * Constructs a new DashboardService.
+     *
+     * @param linkRepo the LinkRepository the dashboard is read from
+     * @param jsonCache the LinkJsonCache links are written to JSON through
+     * @param dataVersion the DataVersion the dashboard is stamped with
+     */
+    public DashboardService(LinkRepository linkRepo, LinkJsonCache jsonCache, DataVersion dataVersion) {
+        this.linkRepo = linkRepo;
+        this.jsonCache = jsonCache;
+        this.dataVersion = dataVersion;
+    }
+
+    /**
+     * Writes the dashboard to the output stream as a JSON object:
+     * <pre>
+     * {"version": 42,
+     *  "categories": [{"id": 1, "name": "java", "links": [{"id": 7, "category": "java", ...}]}]}
+     * </pre>
+     * Categories come in ID order and links in ID order within their category. The rows are read
+     * with one joined SELECT through a database cursor, already in that order, and written as they
+     * arrive, so a category is closed as soon as the first row of the next one is read. The JSON of
+     * each link is copied from the {@link LinkJsonCache} unless the link changed since it was cached.
+     * The version is the one to pass to {@code /sync} to catch up from this dashboard.
+     *
+     * @param out the stream to write the JSON object to
+     * @throws IOException if writing to the stream fails
+     */
+    @Transactional(readOnly = true)
+    public void writeDashboard(OutputStream out) throws IOException {
+        long version = dataVersion.stable();
+        int categories = 0;
+        int links = 0;
+
+        BufferedOutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+        try (Stream<DashboardRow> rows = linkRepo.streamDashboardRows()) {
+            write(buffered, "{\"version\":" + version + ",\"categories\":[");
+
+            int currentCategory = 0;
+            boolean firstLink = true;
+            for (DashboardRow row : (Iterable<DashboardRow>) rows::iterator) {
+                if (categories == 0 || currentCategory != row.categoryId()) {
+                    write(buffered, categories == 0 ? "{\"id\":" : "]},{\"id\":");
+                    write(buffered, row.categoryId() + ",\"name\":");
+                    buffered.write(JSONify.toJsonBytes(row.categoryName(), JSONify.DateStyle.FORMATTED));
+                    write(buffered, ",\"links\":[");
+                    currentCategory = row.categoryId();
+                    categories++;
+                    firstLink = true;
+                }
+                if (row.hasLink()) {
+                    if (!firstLink) {
+                        buffered.write(',');
+                    }
+                    buffered.write(jsonCache.toJson(row.link()));
+                    firstLink = false;
+                    links++;
+                }
+            }
+
+            write(buffered, categories == 0 ? "]}" : "]}]}");
+            buffered.flush();
+        }
+        logger.debug("Wrote dashboard at version {}: {} categories, {} links", version, categories, links);
+    }
+
+    private static void write(OutputStream out, String ascii) throws IOException {
+        out.write(ascii.getBytes(StandardCharsets.US_ASCII));
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.dtoind.lastvisit.service;
+
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Global version of the links and categories, advanced by every write that changes what
+ * {@code /links}, {@code /cats} or {@code /sync} return.
+ *
+ * Each write takes a new version with {@link #begin()}, stamps it on the rows it changes (or on
+ * the tombstones of the rows it deletes) and hands it back with {@link #end(long)} once it has
+ * committed. Versions are taken in order but may commit out of order, so readers use
+ * {@link #stable()}, the highest version below which every write has committed: a client that
+ * synced up to it can never miss a row that commits later with a lower version.
+ *
+ * The version is also exposed as a strong ETag, so that clients polling for changes get a 304
+ * without any data being read. The counter starts from the highest version stored, so versions
+ * keep growing across restarts; the ETag also includes when this instance started, so ETags
+ * handed out by an earlier run or another instance never match.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class DataVersion {
+
+    private static final Logger logger = LogManager.getLogger(DataVersion.class);
+
+    private static final String SELECT_MAX_VERSION = "SELECT GREATEST("
+            + "(SELECT COALESCE(MAX(change_version), 0) FROM linkimpl),"
+            + " (SELECT COALESCE(MAX(change_version), 0) FROM catimpl),"
+            + " (SELECT COALESCE(MAX(change_version), 0) FROM tombstone))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    // guarded by this, so that a version is never seen as taken but not yet in flight
+    private long version = 0;
+    private final NavigableSet<Long> inFlight = new ConcurrentSkipListSet<>();
+
+    /**
+     * Constructs a new DataVersion.
+     *
+     * @param jdbcTemplate the JdbcTemplate used to read the highest version stored
+     */
+    public DataVersion(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Starts the counter from the highest version stored. Runs after Hibernate has updated the
+     * schema and before any write.
+     */
+    @PostConstruct
+    public void load() {
+        Long stored = jdbcTemplate.queryForObject(SELECT_MAX_VERSION, Long.class);
+        synchronized (this) {
+            version = Math.max(version, stored == null ? 0 : stored);
+        }
+        logger.info("Data version starts at {}", version);
+    }
+
+    /**
+     * Takes the next version for a write that is about to change links or categories.
+     * Every version taken must be handed back with {@link #end(long)} once the write has
+     * committed or failed, typically in a {@code finally} block.
+     *
+     * @return the version to stamp on the changed rows
+     */
+    public synchronized long begin() {
+        version++;
+        inFlight.add(version);
+        return version;
+    }
+
+    /**
+     * Marks the write that took the given version as committed or failed.
+     *
+     * @param version the version returned by {@link #begin()}
+     */
+    public void end(long version) {
+        inFlight.remove(version);
+    }
+
+    /**
+     * Records a change that does not stamp any row.
+     */
+    public void bump() {
+        end(begin());
+    }
+
+    /**
+     * Returns the latest version taken, whether or not its write has committed.
+     *
+     * @return the latest version
+     */
+    public synchronized long current() {
+        return version;
+    }
+
+    /**
+     * Returns the highest version at or below which every write has committed.
+     *
+     * @return the stable version
+     */
+    public synchronized long stable() {
+        return inFlight.isEmpty() ? version : inFlight.first() - 1;
+    }
+
+    /**
+     * Returns the stable version as a strong ETag.
+     * Read it before reading the data it stands for, so that the ETag is never newer than the data.
+     *
+     * @return the quoted ETag
+     */
+    public String etag() {
+        return "\"" + epoch + "-" + stable() + "\"";
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.dtoind.lastvisit.service;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dtoind.lastvisit.repository.CategoryRepository;
+
+/**
+ * Schema migration that merges categories stored under the same name before the unique
+ * constraint on the name (UK_CATIMPL_NAME) existed, and then adds the constraint if it is missing.
+ *
+ * Hibernate's schema update cannot add the constraint while duplicate names exist, and only logs
+ * that it failed. For each duplicated name, the links of every category but the oldest are moved
+ * to the oldest one and the emptied categories are deleted, leaving tombstones for syncing clients.
+ * Runs while the application context starts, after the schema update and before the categories are
+ * loaded or the web server accepts requests. If the constraint still cannot be added, startup fails,
+ * since creating categories relies on it to detect a taken name.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class DuplicateCategoryMerge {
+
+    private static final Logger logger = LogManager.getLogger(DuplicateCategoryMerge.class);
+
+    private static final String SELECT_DUPLICATED_NAMES =
+            "SELECT name FROM catimpl GROUP BY name HAVING COUNT(*) > 1";
+    private static final String SELECT_IDS_BY_NAME =
+            "SELECT catimpl_id FROM catimpl WHERE name = ? ORDER BY catimpl_id";
+    private static final String MOVE_LINKS =
+            "UPDATE linkimpl SET catimpl_id = ?, change_version = ? WHERE catimpl_id = ?";
+    private static final String ADD_UNIQUE_NAME =
+            "ALTER TABLE catimpl ADD CONSTRAINT UK_CATIMPL_NAME UNIQUE (name)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CategoryRepository categoryRepo;
+    private final DataVersion dataVersion;
+
+    /**
+     * Constructs a new DuplicateCategoryMerge.
+     *
+     * @param jdbcTemplate the JdbcTemplate used to find and move the links of duplicate categories
+     * @param transactionTemplate the template each name is merged in
+     * @param categoryRepo the repository the emptied categories are deleted through
+     * @param dataVersion the DataVersion stamped on the moved links and the tombstones
+     */
+    public DuplicateCategoryMerge(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                  CategoryRepository categoryRepo, DataVersion dataVersion) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.categoryRepo = categoryRepo;
+        this.dataVersion = dataVersion;
+    }
+
+    /**
+     * Merges the categories of every duplicated name and adds the unique constraint on the name if it is missing.
+     *
+     * @throws IllegalStateException if the constraint cannot be added
+     */
+    @PostConstruct
+    public void merge() {
+        List<String> names = jdbcTemplate.queryForList(SELECT_DUPLICATED_NAMES, String.class);
+        for (String name : names) {
+            int merged = transactionTemplate.execute(status -> mergeCategories(name));
+            logger.info("Merged {} duplicate categories named '{}'", merged, name);
+        }
+
+        if (!hasUniqueName()) {
+            try {
+                jdbcTemplate.execute(ADD_UNIQUE_NAME);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Cannot add the unique constraint on category names", e);
+            }
+            logger.info("Added unique constraint UK_CATIMPL_NAME");
+        }
+    }
+
+    // keeps the oldest category of the name; returns the number of categories merged into it
+    private int mergeCategories(String name) {
+        List<Integer> ids = jdbcTemplate.queryForList(SELECT_IDS_BY_NAME, Integer.class, name);
+        int keptId = ids.get(0);
+        long version = dataVersion.begin();
+        try {
+            for (int duplicateId : ids.subList(1, ids.size())) {
+                jdbcTemplate.update(MOVE_LINKS, keptId, version, duplicateId);
+                categoryRepo.deleteWithTombstone(duplicateId, version);
+            }
+        } finally {
+            dataVersion.end(version);
+        }
+        return ids.size() - 1;
+    }
+
+    // true if a unique index covers exactly the name column; the constraint's index is named differently per database
+    private boolean hasUniqueName() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String table = metaData.storesUpperCaseIdentifiers() ? "CATIMPL" : "catimpl";
+            Map<String, Set<String>> columnsByIndex = new HashMap<>();
+            try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(),
+                    table, true, false)) {
+                while (indexes.next()) {
+                    String column = indexes.getString("COLUMN_NAME");
+                    if (column != null) {
+                        columnsByIndex.computeIfAbsent(indexes.getString("INDEX_NAME"), index -> new HashSet<>())
+                                .add(column.toLowerCase());
+                    }
+                }
+            }
+            return columnsByIndex.containsValue(Set.of("name"));
+        }));
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.dtoind.lastvisit.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+import com.dtoind.lastvisit.util.ExportWriter;
+
+/**
+ * The file formats links and categories can be exported in.
+ * Both can be imported again through {@code /links/import}.
+ */
+public enum ExportFormat {
+
+    /**
+     * Newline-delimited JSON, one object per row.
+     */
+    NDJSON("application/x-ndjson", "ndjson"),
+
+    /**
+     * CSV with a header row.
+     */
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * Returns the content type of an export in this format.
+     *
+     * @return the content type
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Returns the file name extension of an export in this format.
+     *
+     * @return the extension, without a leading dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Opens a writer for this format.
+     *
+     * @param out the stream to write to
+     * @param columns the names of the columns
+     * @return the writer
+     * @throws IOException if the stream cannot be written to
+     */
+    public ExportWriter open(OutputStream out, String... columns) throws IOException {
+        return switch (this) {
+            case NDJSON -> ExportWriter.ndjson(out, columns);
+            case CSV -> ExportWriter.csv(out, columns);
+        };
+    }
+
+    /**
+     * Finds the format with the given name.
+     *
+     * @param format "ndjson" or "csv"
+     * @return the format
+     * @throws IllegalArgumentException if the name is not a supported format
+     */
+    public static ExportFormat of(String format) {
+        return switch (format.toLowerCase(Locale.ROOT)) {
+            case "ndjson", "jsonl" -> NDJSON;
+            case "csv" -> CSV;
+            default -> throw new IllegalArgumentException("Unsupported export format: " + format);
+        };
+    }
+
+}
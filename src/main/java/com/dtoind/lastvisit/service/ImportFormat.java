@@ -0,0 +1,82 @@
+package com.dtoind.lastvisit.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+import com.dtoind.lastvisit.util.BookmarkHtmlLinkReader;
+import com.dtoind.lastvisit.util.CsvLinkReader;
+import com.dtoind.lastvisit.util.LinkReader;
+import com.dtoind.lastvisit.util.NdjsonLinkReader;
+
+/**
+ * The file formats links can be imported from.
+ */
+public enum ImportFormat {
+
+    /**
+     * Newline-delimited JSON, see {@link NdjsonLinkReader}.
+     */
+    NDJSON("application/x-ndjson"),
+
+    /**
+     * CSV with a header row, see {@link CsvLinkReader}.
+     */
+    CSV("text/csv"),
+
+    /**
+     * A bookmark file exported by a browser, see {@link BookmarkHtmlLinkReader}.
+     */
+    BOOKMARKS("text/html");
+
+    private final String contentType;
+
+    ImportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Opens a reader for this format over the given input.
+     *
+     * @param reader the input
+     * @return a reader returning the links in the input
+     * @throws IOException if the input cannot be read
+     */
+    public LinkReader open(Reader reader) throws IOException {
+        return switch (this) {
+            case NDJSON -> new NdjsonLinkReader(reader);
+            case CSV -> new CsvLinkReader(reader);
+            case BOOKMARKS -> new BookmarkHtmlLinkReader(reader);
+        };
+    }
+
+    /**
+     * Determines the format of an upload from an explicit format name or, failing that, its content type.
+     *
+     * @param format "ndjson", "csv" or "html", or {@code null}
+     * @param contentType the content type of the upload, or {@code null}
+     * @return the format
+     * @throws IllegalArgumentException if neither identifies a supported format
+     */
+    public static ImportFormat of(String format, String contentType) {
+        if (format != null) {
+            return switch (format.toLowerCase(Locale.ROOT)) {
+                case "ndjson", "jsonl" -> NDJSON;
+                case "csv" -> CSV;
+                case "html", "bookmarks" -> BOOKMARKS;
+                default -> throw new IllegalArgumentException("Unsupported import format: " + format);
+            };
+        }
+
+        if (contentType != null) {
+            String type = contentType.toLowerCase(Locale.ROOT);
+            for (ImportFormat candidate : values()) {
+                if (type.startsWith(candidate.contentType)) {
+                    return candidate;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Cannot tell the import format, give format=ndjson, csv or html");
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.dtoind.lastvisit.service;
+
+import java.util.Locale;
+import java.util.Optional;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dtoind.lastvisit.exception.LinkAlreadyExistsException;
+import com.dtoind.lastvisit.model.Category;
+import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.model.ChangeEvent;
+import com.dtoind.lastvisit.model.LinkImpl;
+import com.dtoind.lastvisit.model.LinkView;
+import com.dtoind.lastvisit.repository.CategoryRepository;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.util.SingleFlight;
+
+/**
+ * Service class creating a link together with its category, if the category does not exist yet.
+ *
+ * A category known to the {@link CategoryRegistry} costs no statement. A new one is inserted in a
+ * transaction of its own by one of the requests racing to create it, while the others wait for it and
+ * use the category it inserted; the insert leaves a category of the same name inserted by another
+ * instance in place instead of failing, so every request succeeds. The link is then inserted
+ * referencing the category, and the created link is returned from what was written, without reading
+ * it back. Taken together, creating a link in an existing category is one INSERT, and in a new
+ * category two, however many requests create it at once.
+ */
+@Service
+public class LinkCreationService {
+
+    private static final Logger logger = LogManager.getLogger(LinkCreationService.class);
+
+    // the length of the name column; INSERT IGNORE would truncate longer names instead of failing
+    static final int MAX_CATEGORY_NAME_LENGTH = 255;
+    private static final String URL_INDEX_NAME = "UK_LINKIMPL_URL_HASH";
+
+    private final LinkRepository linkRepo;
+    private final CategoryRepository catRepo;
+    private final CategoryRegistry registry;
+    private final UrlIndex urlIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final DataVersion dataVersion;
+    private final ChangeFeed changeFeed;
+    private final LinkRanking ranking;
+    private final SingleFlight<String, Category> creations = new SingleFlight<>();
+
+    /**
+     * Constructs a new LinkCreationService.
+     *
+     * @param linkRepo the LinkRepository the link is inserted with
+     * @param catRepo the CategoryRepository a new category is inserted with
+     * @param registry the registry categories are resolved from and new categories are added to
+     * @param urlIndex the URL index the created link is added to
+     * @param transactionTemplate the template the category and the link are each written in
+     * @param dataVersion the DataVersion the category and the link take their change version from
+     * @param changeFeed the ChangeFeed the created category and link are published to
+     * @param ranking the LinkRanking the created link is added to
+     */
+    public LinkCreationService(LinkRepository linkRepo, CategoryRepository catRepo, CategoryRegistry registry,
+                               UrlIndex urlIndex, TransactionTemplate transactionTemplate,
+                               DataVersion dataVersion, ChangeFeed changeFeed, LinkRanking ranking) {
+        this.linkRepo = linkRepo;
+        this.catRepo = catRepo;
+        this.registry = registry;
+        this.urlIndex = urlIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.dataVersion = dataVersion;
+        this.changeFeed = changeFeed;
+        this.ranking = ranking;
+    }
+
+    /**
+     * Creates a link in the category with the given name, creating the category first if it does not exist.
+     *
+     * @param name the name of the link
+     * @param url the URL of the link
+     * @param categoryName the name of the link's category
+     * @return the created link
+     * @throws IllegalArgumentException if a name or the URL is empty, or the category name is too long
+     * @throws LinkAlreadyExistsException if a link with the same URL already exists
+     */
+    public LinkView createLink(String name, String url, String categoryName) {
+        if (categoryName != null && categoryName.length() > MAX_CATEGORY_NAME_LENGTH) {
+            logger.warn("Attempt to create a category with a name of {} characters", categoryName.length());
+            throw new IllegalArgumentException("Category name cannot be longer than "
+                    + MAX_CATEGORY_NAME_LENGTH + " characters");
+        }
+        // checked before the category is created, so an invalid link does not leave an empty category behind
+        if (name == null || name.isEmpty() || url == null || url.isBlank()
+                || categoryName == null || categoryName.isEmpty()) {
+            logger.warn("Attempt to create a link with an empty name, url, or category");
+            throw new IllegalArgumentException("Name, URL, or Category cannot be empty");
+        }
+
+        Category category = registry.findByName(categoryName)
+                .orElseGet(() -> creations.load(categoryName, () -> registry.findByName(categoryName)
+                        .orElseGet(() -> createCategory(categoryName))));
+
+        LinkView created;
+        long version = dataVersion.begin();
+        try {
+            created = transactionTemplate.execute(status -> insert(name, url, category, version));
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateUrl(e)) {
+                throw new LinkAlreadyExistsException("Link already exists: " + url, e);
+            }
+            throw e;
+        } finally {
+            dataVersion.end(version);
+        }
+
+        urlIndex.put(url, created.id());
+        ranking.put(created);
+        changeFeed.publish(ChangeEvent.linkCreated(created));
+        logger.debug("Created link {} in category {}", created.id(), categoryName);
+        return created;
+    }
+
+    // runs once per new name at a time; concurrent requests for the name wait for it and share its category
+    private Category createCategory(String categoryName) {
+        CategoryImpl candidate = new CategoryImpl(categoryName);
+        boolean inserted;
+        long version = dataVersion.begin();
+        try {
+            candidate.setChangeVersion(version);
+            inserted = Boolean.TRUE.equals(transactionTemplate.execute(status -> catRepo.insertIfAbsent(candidate)));
+        } finally {
+            dataVersion.end(version);
+        }
+
+        if (!inserted) {
+            // created by another instance, which this one's registry has not heard of
+            Optional<Category> stored = catRepo.findByName(categoryName);
+            return stored.orElseThrow(() -> new IllegalStateException(
+                    "Category " + categoryName + " was neither inserted nor found"));
+        }
+        registry.put(candidate);
+        changeFeed.publish(ChangeEvent.categoryCreated(categoryName));
+        logger.debug("Created category {}", categoryName);
+        return candidate;
+    }
+
+    private LinkView insert(String name, String url, Category category, long version) {
+        // the category may be a detached copy; the link only takes its ID
+        LinkImpl link = new LinkImpl(name, url, category);
+        link.setChangeVersion(version);
+        linkRepo.saveAndFlush(link);
+        return LinkView.of(link);
+    }
+
+    private static boolean isDuplicateUrl(DataIntegrityViolationException e) {
+        String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        return message != null && message.toUpperCase(Locale.ROOT).contains(URL_INDEX_NAME);
+    }
+
+}
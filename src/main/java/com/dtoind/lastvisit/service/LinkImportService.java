@@ -0,0 +1,273 @@
+package com.dtoind.lastvisit.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.persistence.EntityManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dtoind.lastvisit.model.Category;
+import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.model.ChangeEvent;
+import com.dtoind.lastvisit.model.ImportedLink;
+import com.dtoind.lastvisit.model.LinkImpl;
+import com.dtoind.lastvisit.model.LinkView;
+import com.dtoind.lastvisit.repository.CategoryRepository;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.util.LinkReader;
+import com.dtoind.lastvisit.util.UrlHash;
+
+/**
+ * Service class for importing links in bulk.
+ *
+ * Links are read one at a time from the upload and written in chunks of
+ * {@code lastvisit.import.chunk-size} links (1000 by default), each chunk in its own transaction
+ * with its inserts sent as JDBC batches. Categories are resolved from a local map seeded from the
+ * {@link CategoryRegistry}, and URLs repeated within the upload are dropped in memory, so a chunk
+ * costs one query to find URLs that are already stored plus its batched inserts. A category missing
+ * from the map is inserted with a statement that leaves a category of the same name created since
+ * the import started in place, and that category is used instead.
+ * With MySQL, {@code rewriteBatchedStatements=true} should be set on the connection URL so that
+ * each batch is sent as a multi-row INSERT.
+ */
+@Service
+public class LinkImportService {
+
+    private static final Logger logger = LogManager.getLogger(LinkImportService.class);
+
+    private final EntityManager entityManager;
+    private final LinkRepository linkRepo;
+    private final CategoryRepository catRepo;
+    private final CategoryRegistry categoryRegistry;
+    private final UrlIndex urlIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final DataVersion dataVersion;
+    private final ChangeFeed changeFeed;
+    private final LinkRanking ranking;
+    private final int chunkSize;
+
+    /**
+     * Constructs a new LinkImportService.
+     *
+     * @param entityManager the EntityManager the links are persisted with
+     * @param linkRepo the LinkRepository used to find URLs that are already stored
+     * @param catRepo the CategoryRepository new categories are inserted with
+     * @param categoryRegistry the registry categories are resolved from and new categories are added to
+     * @param urlIndex the URL index imported links are added to
+     * @param transactionTemplate the template each chunk runs in
+     * @param dataVersion the DataVersion each chunk takes the change version of its links from
+     * @param changeFeed the ChangeFeed told to reload once an import has stored links
+     * @param ranking the LinkRanking imported links are added to
+     * @param chunkSize the number of links written per transaction
+     */
+    public LinkImportService(EntityManager entityManager,
+                             LinkRepository linkRepo,
+                             CategoryRepository catRepo,
+                             CategoryRegistry categoryRegistry,
+                             UrlIndex urlIndex,
+                             TransactionTemplate transactionTemplate,
+                             DataVersion dataVersion,
+                             ChangeFeed changeFeed,
+                             LinkRanking ranking,
+                             @Value("${lastvisit.import.chunk-size:1000}") int chunkSize) {
+        this.entityManager = entityManager;
+        this.linkRepo = linkRepo;
+        this.catRepo = catRepo;
+        this.categoryRegistry = categoryRegistry;
+        this.urlIndex = urlIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.dataVersion = dataVersion;
+        this.changeFeed = changeFeed;
+        this.ranking = ranking;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports every link the reader returns. Chunks are committed as they are written, so if the
+     * import fails part way, the links of the chunks written before the failure are kept.
+     *
+     * @param reader the reader over the upload
+     * @param defaultCategory the category of links the upload gives no category for
+     * @return a summary of the import, with the progress of each chunk
+     * @throws IOException if the upload cannot be read
+     * @throws IllegalArgumentException if the upload is not in the expected format
+     */
+    public Summary importLinks(LinkReader reader, String defaultCategory) throws IOException {
+        long start = System.nanoTime();
+
+        Map<String, CategoryImpl> categories = new HashMap<>();
+        for (Category category : categoryRegistry.findAll()) {
+            categories.put(category.getName(), (CategoryImpl) category);
+        }
+        Set<String> seenUrls = new HashSet<>();
+        List<ImportedLink> pending = new ArrayList<>(chunkSize);
+        List<Chunk> chunks = new ArrayList<>();
+        int read = 0;
+        int invalid = 0;
+        int repeated = 0;
+
+        ImportedLink row;
+        while ((row = reader.next()) != null) {
+            read++;
+            if (row.url() == null || row.url().isBlank()) {
+                invalid++;
+                continue;
+            }
+
+            String category = categoryName(row, defaultCategory);
+            if (category.length() > LinkCreationService.MAX_CATEGORY_NAME_LENGTH) {
+                invalid++;
+                continue;
+            }
+
+            String url = UrlHash.normalize(row.url());
+            if (!seenUrls.add(url)) {
+                repeated++;
+                continue;
+            }
+
+            pending.add(new ImportedLink(category, linkName(row, url), url, row.addedAt()));
+            if (pending.size() == chunkSize) {
+                chunks.add(writeChunk(chunks.size() + 1, pending, categories));
+                pending.clear();
+            }
+        }
+        if (!pending.isEmpty()) {
+            chunks.add(writeChunk(chunks.size() + 1, pending, categories));
+        }
+
+        long nanos = System.nanoTime() - start;
+        int imported = chunks.stream().mapToInt(Chunk::imported).sum();
+        int alreadyStored = chunks.stream().mapToInt(Chunk::alreadyStored).sum();
+        int categoriesCreated = chunks.stream().mapToInt(Chunk::categoriesCreated).sum();
+        if (imported > 0) {
+            changeFeed.publish(ChangeEvent.reload());
+        }
+
+        Summary summary = new Summary(read, imported, repeated + alreadyStored, invalid, categoriesCreated,
+                nanos / 1_000_000, rowsPerSecond(read, nanos), chunks);
+        logger.info("Imported {} of {} links in {} ms ({} rows/s)", imported, read, summary.elapsedMillis(),
+                summary.rowsPerSecond());
+        return summary;
+    }
+
+    private Chunk writeChunk(int number, List<ImportedLink> rows, Map<String, CategoryImpl> categories) {
+        long start = System.nanoTime();
+        List<CategoryImpl> newCategories = new ArrayList<>();
+        List<LinkImpl> links = new ArrayList<>(rows.size());
+
+        long version = dataVersion.begin();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(chunkSize);
+
+                Set<String> stored = new HashSet<>(linkRepo.findUrlsByUrlHashIn(
+                        rows.stream().map(row -> UrlHash.of(row.url())).toList()));
+
+                for (ImportedLink row : rows) {
+                    if (stored.contains(row.url())) {
+                        continue;
+                    }
+
+                    CategoryImpl category = categories.get(row.category());
+                    if (category == null) {
+                        category = insertCategory(row.category(), version, newCategories);
+                        categories.put(row.category(), category);
+                    }
+
+                    LinkImpl link = new LinkImpl(row.name(), row.url(), category);
+                    if (row.addedAt() != null) {
+                        link.setDateTime(row.addedAt());
+                    }
+                    link.setChangeVersion(version);
+                    entityManager.persist(link);
+                    links.add(link);
+                }
+
+                entityManager.flush();
+                entityManager.clear();
+            });
+        } finally {
+            dataVersion.end(version);
+        }
+
+        newCategories.forEach(categoryRegistry::put);
+        links.forEach(link -> {
+            urlIndex.put(link.getUrl(), link.getId());
+            ranking.put(LinkView.of(link));
+        });
+
+        long nanos = System.nanoTime() - start;
+        Chunk chunk = new Chunk(number, rows.size(), links.size(), rows.size() - links.size(),
+                newCategories.size(), nanos / 1_000_000, rowsPerSecond(rows.size(), nanos));
+        logger.info("Import chunk {}: {} rows, {} imported, {} already stored, {} ms ({} rows/s)", number,
+                chunk.rows(), chunk.imported(), chunk.alreadyStored(), chunk.elapsedMillis(), chunk.rowsPerSecond());
+        return chunk;
+    }
+
+    private CategoryImpl insertCategory(String name, long version, List<CategoryImpl> newCategories) {
+        CategoryImpl candidate = new CategoryImpl(name);
+        candidate.setChangeVersion(version);
+        if (catRepo.insertIfAbsent(candidate)) {
+            newCategories.add(candidate);
+            return candidate;
+        }
+
+        // created since the import started, by a concurrent request or another instance
+        logger.debug("Category {} was created during the import, using the stored one", name);
+        return (CategoryImpl) catRepo.findByName(name).orElseThrow(() -> new IllegalStateException(
+                "Category " + name + " was neither inserted nor found"));
+    }
+
+    private static String categoryName(ImportedLink row, String defaultCategory) {
+        return row.category() == null || row.category().isBlank() ? defaultCategory : row.category().strip();
+    }
+
+    private static String linkName(ImportedLink row, String url) {
+        return row.name() == null || row.name().isBlank() ? url : row.name().strip();
+    }
+
+    private static long rowsPerSecond(int rows, long nanos) {
+        return nanos == 0 ? rows : Math.round(rows * 1e9 / nanos);
+    }
+
+    /**
+     * The progress of one chunk of an import.
+     *
+     * @param number            the number of the chunk, starting at 1
+     * @param rows              the number of links in the chunk
+     * @param imported          the number of links stored
+     * @param alreadyStored     the number of links skipped because their URL was already stored
+     * @param categoriesCreated the number of categories created for the chunk
+     * @param elapsedMillis     how long the chunk took to write
+     * @param rowsPerSecond     the rate the chunk was written at
+     */
+    public record Chunk(int number, int rows, int imported, int alreadyStored, int categoriesCreated,
+                        long elapsedMillis, long rowsPerSecond) {}
+
+    /**
+     * The outcome of an import.
+     *
+     * @param read              the number of links read from the upload
+     * @param imported          the number of links stored
+     * @param duplicates        the number of links skipped because their URL was repeated or already stored
+     * @param invalid           the number of links skipped because they had no URL or too long a category name
+     * @param categoriesCreated the number of categories created
+     * @param elapsedMillis     how long the import took
+     * @param rowsPerSecond     the rate links were read and written at
+     * @param chunks            the progress of each chunk
+     */
+    public record Summary(int read, int imported, int duplicates, int invalid, int categoriesCreated,
+                          long elapsedMillis, long rowsPerSecond, List<Chunk> chunks) {}
+
+}
@@ -0,0 +1,101 @@
+package com.dtoind.lastvisit.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.dtoind.lastvisit.model.VersionedLinkView;
+import com.dtoind.lastvisit.util.JSONify;
+
+/**
+ * In-process cache of the JSON of each link, encoded as UTF-8 and ready to be copied into a response.
+ *
+ * Entries are keyed by link ID and hold the change version of the link they were serialized from,
+ * so a link changed by any write, including buffered visits and rollups, is serialized again the next
+ * time it is read, and an unchanged link is never serialized twice. {@link LinkService} drops the
+ * entries of updated and deleted links, so that memory is not held for stale JSON.
+ * The cache is a bounded LRU map; only the links read most recently stay cached.
+ */
+@Service
+public class LinkJsonCache {
+
+    private final Map<Integer, Fragment> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a new LinkJsonCache.
+     *
+     * @param size the maximum number of links whose JSON is kept
+     */
+    public LinkJsonCache(@Value("${lastvisit.link-json-cache.size:100000}") int size) {
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Fragment> eldest) {
+                return size() > size;
+            }
+        });
+    }
+
+    /**
+     * Returns the JSON of the given link, in the shape {@link JSONify} writes links in, serializing
+     * it only if it is not cached at its current version. The returned array must not be modified.
+     *
+     * @param link the link with its change version
+     * @return the UTF-8 bytes of the link's JSON
+     */
+    public byte[] toJson(VersionedLinkView link) {
+        Fragment cached = cache.get(link.id());
+        if (cached != null && cached.version() == link.changeVersion()) {
+            hits.increment();
+            return cached.json();
+        }
+
+        misses.increment();
+        byte[] json = JSONify.toJsonBytes(link.view(), JSONify.DateStyle.FORMATTED);
+        cache.put(link.id(), new Fragment(link.changeVersion(), json));
+        return json;
+    }
+
+    /**
+     * Drops the cached JSON of the link with the given ID.
+     *
+     * @param id the ID of the changed or deleted link
+     */
+    public void invalidate(int id) {
+        cache.remove(id);
+    }
+
+    /**
+     * Drops the cached JSON of every link, for bulk deletions that do not report which links they removed.
+     */
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    /**
+     * Returns a snapshot of the cache's hit and miss counters.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), cache.size());
+    }
+
+    private record Fragment(long version, byte[] json) {}
+
+    /**
+     * Hit and miss counters of the link JSON cache.
+     *
+     * @param hits        links copied from the cache
+     * @param misses      links that had to be serialized
+     * @param cachedLinks the number of links currently cached
+     */
+    public record Stats(long hits, long misses, int cachedLinks) {}
+
+}
@@ -0,0 +1,353 @@
+package com.dtoind.lastvisit.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.dtoind.lastvisit.model.LinkView;
+import com.dtoind.lastvisit.model.VisitDelta;
+import com.dtoind.lastvisit.repository.LinkRepository;
+
+/**
+ * In-memory rankings of the links: the most visited ones, and the most recently visited ones.
+ *
+ * Every link is held as a {@link LinkView} in a map by ID and in a skip list ordered by number of
+ * visits, so the top links are read off the head of the list. The IDs of visited links are written to
+ * a lock-free ring buffer, so the latest visits are read backwards from its head. Both are seeded from
+ * the database once the application has started and kept up to date by the services that write links
+ * and visits, after their writes have committed; a question is answered without reading the database
+ * or sorting anything. Writes made behind the services' back are only seen after {@link #reload()}.
+ */
+@Service
+public class LinkRanking {
+
+    private static final Logger logger = LogManager.getLogger(LinkRanking.class);
+
+    // most visited first; ties broken by ID, as entries that compare equal would replace each other
+    private static final Comparator<LinkView> BY_VISITS =
+            Comparator.comparingInt(LinkView::numVisits).reversed().thenComparingInt(LinkView::id);
+    private static final Comparator<LinkView> BY_DATE_TIME =
+            Comparator.comparing(LinkView::dateTime, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final LinkRepository linkRepo;
+    private final UrlIndex urlIndex;
+    private final int recentCapacity;
+
+    // writers share it while they update the ranks and note what they did; a reload takes it alone to swap
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Ranks ranks;
+    // the writes made while a reload runs, replayed onto the ranks it built before they replace the old ones
+    private volatile Queue<Consumer<Ranks>> missed;
+
+    /**
+     * Constructs a new LinkRanking.
+     *
+     * @param linkRepo the LinkRepository the rankings are seeded from
+     * @param urlIndex the UrlIndex visits counted by URL are resolved with
+     * @param recentCapacity the number of latest visits kept in the ring buffer
+     */
+    public LinkRanking(LinkRepository linkRepo,
+                       UrlIndex urlIndex,
+                       @Value("${lastvisit.ranking.recent-capacity:1024}") int recentCapacity) {
+        this.linkRepo = linkRepo;
+        this.urlIndex = urlIndex;
+        this.recentCapacity = recentCapacity;
+        this.ranks = new Ranks(recentCapacity);
+    }
+
+    /**
+     * Reads every link from the database into new rankings, once the application has started, and then
+     * replaces the current rankings with them at once; until then, questions are answered from the
+     * current ones. The ring buffer is filled with the links whose date and time is the latest, oldest
+     * first. Links written while this runs keep their newer state.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void reload() {
+        Queue<Consumer<Ranks>> writes = new ConcurrentLinkedQueue<>();
+        // a write that misses this has committed before the links are read, so they include it
+        missed = writes;
+
+        Ranks fresh = new Ranks(recentCapacity);
+        PriorityQueue<LinkView> latest = new PriorityQueue<>(BY_DATE_TIME);
+        try (Stream<LinkView> views = linkRepo.streamAllViews()) {
+            for (LinkView view : (Iterable<LinkView>) views::iterator) {
+                fresh.put(view);
+                latest.add(view);
+                if (latest.size() > recentCapacity) {
+                    latest.poll();
+                }
+            }
+        } catch (RuntimeException e) {
+            missed = null;
+            throw e;
+        }
+        while (!latest.isEmpty()) {
+            fresh.pushRecent(latest.poll().id());
+        }
+
+        swapLock.writeLock().lock();
+        try {
+            writes.forEach(write -> write.accept(fresh));
+            ranks = fresh;
+            missed = null;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        logger.info("Link ranking seeded with {} links, {} writes made meanwhile kept", fresh.links.size(),
+                writes.size());
+    }
+
+    /**
+     * Returns the most visited links, most visited first. Costs O(k).
+     *
+     * @param k the maximum number of links to return
+     * @return the links
+     */
+    public List<LinkView> top(int k) {
+        List<LinkView> top = new ArrayList<>(k);
+        Iterator<LinkView> iterator = ranks.byVisits.iterator();
+        while (top.size() < k && iterator.hasNext()) {
+            top.add(iterator.next());
+        }
+        return top;
+    }
+
+    /**
+     * Returns the most recently visited links, most recent first, each once. Costs O(k) unless the
+     * latest visits went to the same few links, and never more than the capacity of the ring buffer,
+     * which also bounds how far back the links are found.
+     *
+     * @param k the maximum number of links to return
+     * @return the links
+     */
+    public List<LinkView> recent(int k) {
+        Ranks current = ranks;
+        List<LinkView> recent = new ArrayList<>(k);
+        Set<Integer> seen = new HashSet<>();
+        long head = current.recentHead.get();
+        for (long slot = head - 1; slot >= Math.max(0, head - recentCapacity) && recent.size() < k; slot--) {
+            int id = current.recentIds.get(current.index(slot));
+            if (seen.add(id)) {
+                LinkView view = current.links.get(id);
+                if (view != null) {
+                    recent.add(view);
+                }
+            }
+        }
+        return recent;
+    }
+
+    /**
+     * Adds or replaces the given link.
+     *
+     * @param view the created or changed link
+     */
+    public void put(LinkView view) {
+        write(current -> {
+            current.put(view);
+            return keep(current, view.id());
+        });
+    }
+
+    /**
+     * Adds the given visits to the links with the matching IDs and records them as their latest visits.
+     * Links that are not ranked are skipped.
+     *
+     * @param deltas the visit deltas keyed by link ID
+     */
+    public void addVisits(Map<Integer, VisitDelta> deltas) {
+        // in the order of the visits, so that the ring buffer holds the latest last
+        deltas.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue(Comparator.comparing(VisitDelta::lastVisit)))
+                .forEach(entry -> addVisits(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Adds the given visits to the links with the matching URLs and records them as their latest visits.
+     * URLs of links that are not stored are skipped.
+     *
+     * @param deltas the visit deltas keyed by link URL
+     */
+    public void addVisitsByUrl(Map<String, VisitDelta> deltas) {
+        Map<Integer, VisitDelta> byId = new HashMap<>();
+        deltas.forEach((url, delta) -> urlIndex.findId(url)
+                .ifPresent(id -> byId.merge(id, delta, VisitDelta::merge)));
+        addVisits(byId);
+    }
+
+    /**
+     * Adds one visit to the link with the given ID and records it as its latest visit.
+     *
+     * @param id the ID of the visited link
+     * @param visitTime the date and time of the visit
+     * @return the link with its new number of visits and latest visit, or an empty {@code Optional}
+     *         if the link is not ranked
+     */
+    public Optional<LinkView> addVisit(int id, LocalDateTime visitTime) {
+        return Optional.ofNullable(addVisits(id, VisitDelta.single(visitTime)));
+    }
+
+    /**
+     * Removes the link with the given ID.
+     *
+     * @param id the ID of the deleted link
+     */
+    public void remove(int id) {
+        write(current -> {
+            current.remove(id);
+            return keep(current, id);
+        });
+    }
+
+    /**
+     * Removes every link of the category with the given name, for bulk deletions that do not report
+     * which links they removed.
+     *
+     * @param category the name of the category whose links were deleted
+     */
+    public void removeCategory(String category) {
+        write(current -> {
+            current.removeCategory(category);
+            return fresh -> fresh.removeCategory(category);
+        });
+    }
+
+    private LinkView addVisits(int id, VisitDelta delta) {
+        AtomicReference<LinkView> updated = new AtomicReference<>();
+        write(current -> {
+            updated.set(current.addVisits(id, delta));
+            if (updated.get() == null) {
+                // not ranked yet, as while the first reload runs; the reloaded link may lack these visits
+                return fresh -> fresh.addVisits(id, delta);
+            }
+            Consumer<Ranks> keep = keep(current, id);
+            return fresh -> {
+                keep.accept(fresh);
+                fresh.pushRecent(id);
+            };
+        });
+        return updated.get();
+    }
+
+    // applies a write to the current ranks and, while a reload runs, notes how to repeat it on the reloaded ones
+    private void write(Function<Ranks, Consumer<Ranks>> write) {
+        swapLock.readLock().lock();
+        try {
+            Consumer<Ranks> replay = write.apply(ranks);
+            Queue<Consumer<Ranks>> writes = missed;
+            if (writes != null) {
+                writes.add(replay);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    // copies the link's state in the given ranks as it is when replayed, so concurrent writes replay in any order
+    private static Consumer<Ranks> keep(Ranks current, int id) {
+        return fresh -> {
+            LinkView view = current.links.get(id);
+            if (view != null) {
+                fresh.put(view);
+            } else {
+                fresh.remove(id);
+            }
+        };
+    }
+
+    /**
+     * One generation of the rankings: the links by ID, by number of visits, and by latest visit.
+     */
+    private static final class Ranks {
+
+        private final ConcurrentMap<Integer, LinkView> links = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<LinkView> byVisits = new ConcurrentSkipListSet<>(BY_VISITS);
+        private final AtomicIntegerArray recentIds;
+        private final AtomicLong recentHead = new AtomicLong();
+
+        private Ranks(int recentCapacity) {
+            this.recentIds = new AtomicIntegerArray(recentCapacity);
+        }
+
+        private void put(LinkView view) {
+            links.compute(view.id(), (id, old) -> {
+                if (old != null) {
+                    byVisits.remove(old);
+                }
+                byVisits.add(view);
+                return view;
+            });
+        }
+
+        private void remove(int id) {
+            links.computeIfPresent(id, (key, old) -> {
+                byVisits.remove(old);
+                return null;
+            });
+        }
+
+        private void removeCategory(String category) {
+            links.values().stream()
+                    .filter(view -> category.equals(view.category()))
+                    .map(LinkView::id)
+                    .toList()
+                    .forEach(this::remove);
+        }
+
+        private LinkView addVisits(int id, VisitDelta delta) {
+            LinkView updated = links.computeIfPresent(id, (key, old) -> {
+                byVisits.remove(old);
+                LocalDateTime latest = old.dateTime() == null || delta.lastVisit().isAfter(old.dateTime())
+                        ? delta.lastVisit() : old.dateTime();
+                LinkView view = new LinkView(old.id(), old.category(), old.name(), old.url(), latest,
+                        (int) (old.numVisits() + delta.count()));
+                byVisits.add(view);
+                return view;
+            });
+            if (updated != null) {
+                pushRecent(id);
+            }
+            return updated;
+        }
+
+        private void pushRecent(int id) {
+            recentIds.set(index(recentHead.getAndIncrement()), id);
+        }
+
+        private int index(long slot) {
+            return (int) (slot % recentIds.length());
+        }
+
+    }
+
+}
@@ -1,21 +1,33 @@
 package com.dtoind.lastvisit.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.dtoind.lastvisit.exception.LinkAlreadyExistsException;
 import com.dtoind.lastvisit.exception.LinkNotFoundException;
+import com.dtoind.lastvisit.exception.VisitBufferFullException;
 import com.dtoind.lastvisit.model.Category;
+import com.dtoind.lastvisit.model.ChangeEvent;
 import com.dtoind.lastvisit.model.Link;
 import com.dtoind.lastvisit.model.LinkImpl;
+import com.dtoind.lastvisit.model.LinkView;
+import com.dtoind.lastvisit.model.Tombstone;
+import com.dtoind.lastvisit.model.VersionedLinkView;
 import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.util.Cursor;
+import com.dtoind.lastvisit.util.CursorPage;
+import com.dtoind.lastvisit.util.ExportWriter;
 import com.dtoind.lastvisit.util.JSONify;
 
 /**
@@ -26,16 +38,42 @@ public class LinkService extends BaseService<LinkImpl> {
 
     private static final Logger logger = LogManager.getLogger(LinkService.class);
 
+    private static final int DEFAULT_DELETE_BATCH_SIZE = 1000;
+
     private final LinkRepository linkRepo;
+    private final VisitBuffer visitBuffer;
+    private final VisitHistoryService visitHistory;
+    private final UrlIndex urlIndex;
+    private final DataVersion dataVersion;
+    private final ChangeFeed changeFeed;
+    private final LinkJsonCache jsonCache;
+    private final LinkRanking ranking;
 
     /**
-     * Constructs a new LinkService with the specified LinkRepository.
+     * Constructs a new LinkService.
      *
      * @param linkRepo the LinkRepository used for data access
+     * @param visitBuffer the VisitBuffer used to record visits when buffering is enabled
+     * @param visitHistory the VisitHistoryService used to record visits when the event log is enabled
+     *                     and to delete the visit history of deleted links
+     * @param urlIndex the UrlIndex used to look links up by URL
+     * @param dataVersion the DataVersion every write takes its change version from
+     * @param changeFeed the ChangeFeed every write is published to
+     * @param jsonCache the LinkJsonCache links are written to JSON through
+     * @param ranking the LinkRanking kept up to date with every write
      */
-    public LinkService(LinkRepository linkRepo) {
+    public LinkService(LinkRepository linkRepo, VisitBuffer visitBuffer, VisitHistoryService visitHistory,
+                       UrlIndex urlIndex, DataVersion dataVersion, ChangeFeed changeFeed, LinkJsonCache jsonCache,
+                       LinkRanking ranking) {
         super(linkRepo);
         this.linkRepo = linkRepo;
+        this.visitBuffer = visitBuffer;
+        this.visitHistory = visitHistory;
+        this.urlIndex = urlIndex;
+        this.dataVersion = dataVersion;
+        this.changeFeed = changeFeed;
+        this.jsonCache = jsonCache;
+        this.ranking = ranking;
     }
 
     /**
@@ -74,8 +112,15 @@ public class LinkService extends BaseService<LinkImpl> {
             throw new IllegalArgumentException("Link cannot be null");
         }
 
-        if (!linkRepo.existsByUrl(link.getUrl())) {
-            return update(link);
+        if (!urlIndex.exists(link.getUrl())) {
+            boolean saved = update(link);
+            if (saved) {
+                LinkView view = LinkView.of(link);
+                urlIndex.put(link.getUrl(), link.getId());
+                ranking.put(view);
+                changeFeed.publish(ChangeEvent.linkCreated(view));
+            }
+            return saved;
         } else {
             throw new LinkAlreadyExistsException("Link already exists: " + link.getUrl());
         }
@@ -88,8 +133,58 @@ public class LinkService extends BaseService<LinkImpl> {
      * @return {@code true} if the link is successfully updated, {@code false} otherwise
      */
     public boolean update(Link link) {
-        link.setDateTime(LocalDateTime.now());
-        return super.save((LinkImpl) link);
+        long version = dataVersion.begin();
+        try {
+            link.setDateTime(LocalDateTime.now());
+            ((LinkImpl) link).setChangeVersion(version);
+            return super.save((LinkImpl) link);
+        } finally {
+            dataVersion.end(version);
+            jsonCache.invalidate(link.getId());
+        }
+    }
+
+    /**
+     * Records a visit to the link with the given URL.
+     * Depending on the visit mode the visit is written right away with a single UPDATE statement,
+     * buffered and written later in a batch, or appended to the visit event log. Buffered and logged
+     * visits take a data version when they are written to the link. A visit written right away
+     * is published to the change feed with the link's new number of visits as the
+     * {@link LinkRanking} holds it, so the visit remains a single statement.
+     *
+     * @param url the URL of the visited link
+     * @return {@code true} if the link exists and the visit was recorded, {@code false} otherwise
+     * @throws VisitBufferFullException if visits are buffered and the buffer is full
+     */
+    public boolean recordVisit(String url) {
+        Optional<Integer> linkId = urlIndex.findId(url);
+        if (linkId.isEmpty()) {
+            return false;
+        }
+
+        if (visitBuffer.isEnabled()) {
+            visitBuffer.add(url, LocalDateTime.now());
+            return true;
+        }
+
+        if (visitHistory.isEnabled()) {
+            visitHistory.append(linkId.get(), LocalDateTime.now());
+            return true;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        long version = dataVersion.begin();
+        try {
+            if (linkRepo.recordVisit(linkId.get(), now, version) == 0) {
+                // the link was deleted since it was cached
+                urlIndex.remove(url);
+                return false;
+            }
+        } finally {
+            dataVersion.end(version);
+        }
+        ranking.addVisit(linkId.get(), now).ifPresent(view -> changeFeed.publish(ChangeEvent.linkVisited(view)));
+        return true;
     }
 
     /**
@@ -98,7 +193,41 @@ public class LinkService extends BaseService<LinkImpl> {
      * @param link the link to be deleted
      */
     public void delete(Link link) {
-        super.delete((LinkImpl) link);
+        delete((LinkImpl) link);
+    }
+
+    /**
+     * Deletes the specified LinkImpl instance, leaving a {@link Tombstone} for clients that sync
+     * changes, and removes its URL from the URL index and its visit history.
+     *
+     * @param link the LinkImpl instance to be deleted
+     * @throws IllegalArgumentException if the link is not stored
+     */
+    @Override
+    public void delete(LinkImpl link) {
+        if (link == null) {
+            logger.warn("Attempt to delete a null link");
+            return;
+        }
+
+        long version = dataVersion.begin();
+        try {
+            if (linkRepo.deleteWithTombstone(link.getId(), version) == 0) {
+                throw new IllegalArgumentException("Entity with ID " + link.getId() + " not found");
+            }
+        } finally {
+            dataVersion.end(version);
+        }
+        logger.info("Deleted link: {}", link);
+        urlIndex.remove(link.getUrl());
+        try {
+            visitHistory.deleteHistory(link.getId());
+        } catch (RuntimeException e) {
+            logger.warn("Deleting the visit history of link {} failed, the next prune will", link.getId(), e);
+        }
+        jsonCache.invalidate(link.getId());
+        ranking.remove(link.getId());
+        changeFeed.publish(ChangeEvent.linkDeleted(link.getId()));
     }
 
     /**
@@ -122,10 +251,60 @@ public class LinkService extends BaseService<LinkImpl> {
      * Deletes all links associated with the specified category.
      *
      * @param catToDelete the category whose links are to be deleted
+     * @return the number of links deleted
      */
-    public void deleteAllLinks(Category catToDelete) {
-        List<Link> linksToDelete = findByCategory(catToDelete);
-        linksToDelete.forEach(this::delete);
+    public long deleteAllLinks(Category catToDelete) {
+        return deleteAllLinks(catToDelete, DEFAULT_DELETE_BATCH_SIZE, deleted -> {});
+    }
+
+    /**
+     * Deletes all links associated with the specified category with set-based DELETE statements
+     * of at most {@code batchSize} links each, every batch in its own transaction together with
+     * a {@link Tombstone} for each link. No link is loaded. Nothing is published to the change feed;
+     * the deletion of the category tells clients to drop its links. The visit history of every
+     * link that no longer exists is deleted afterwards.
+     *
+     * @param catToDelete the category whose links are to be deleted
+     * @param batchSize the maximum number of links deleted per statement
+     * @param progress called after each batch with the number of links deleted so far
+     * @return the number of links deleted
+     */
+    public long deleteAllLinks(Category catToDelete, int batchSize, LongConsumer progress) {
+        long deleted = 0;
+        int batch;
+        do {
+            long version = dataVersion.begin();
+            try {
+                batch = linkRepo.deleteBatchByCategoryId(catToDelete.getId(), batchSize, version);
+            } finally {
+                dataVersion.end(version);
+            }
+            deleted += batch;
+            progress.accept(deleted);
+        } while (batch > 0);
+
+        // the deleted URLs and IDs are not known, so drop every cached one
+        urlIndex.invalidateAll();
+        try {
+            visitHistory.deleteOrphanedHistory();
+        } catch (RuntimeException e) {
+            logger.warn("Deleting the visit history of category {} failed, the next prune will",
+                    catToDelete.getName(), e);
+        }
+        jsonCache.invalidateAll();
+        ranking.removeCategory(catToDelete.getName());
+        logger.info("Deleted {} links of category {}", deleted, catToDelete.getName());
+        return deleted;
+    }
+
+    /**
+     * Counts the links associated with the specified category.
+     *
+     * @param category the category whose links are to be counted
+     * @return the number of links in the category
+     */
+    public long countLinks(Category category) {
+        return linkRepo.countByCategoryId(category.getId());
     }
 
     /**
@@ -135,7 +314,7 @@ public class LinkService extends BaseService<LinkImpl> {
      * @return {@code true} if a link with the specified URL exists, {@code false} otherwise
      */
     public boolean urlExist(String url) {
-        return findByUrl(url).isPresent();
+        return urlIndex.exists(url);
     }
 
     /**
@@ -159,14 +338,62 @@ public class LinkService extends BaseService<LinkImpl> {
     }
 
     /**
-     * Retrieves all links from the repository and converts them to JSON format.
+     * Retrieves one page of read-only link views, with their category names, in ID order.
      *
-     * @return a list of strings representing the JSON format of all links
+     * @param cursor the cursor returned with the previous page, or {@code null} for the first page
+     * @param limit the maximum number of links in the page
+     * @return the page of links and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is not valid
      */
-    public List<String> findAllLinksAsJson() {
-        return linkRepo.findAll().stream()
-                .map(JSONify::toJson)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public CursorPage<LinkView> findLinksAfter(String cursor, int limit) {
+        return CursorPage.of(linkRepo.findViewPageAfter(Cursor.decode(cursor), PageRequest.of(0, limit + 1)),
+                limit, LinkView::id);
+    }
+
+    /**
+     * Streams all links from the repository to the given output stream as a JSON array.
+     * Read-only link views are read through a database cursor and written one at a time,
+     * so memory use does not grow with the number of links and no entity is loaded.
+     * With formatted dates, the JSON of each link is copied from the {@link LinkJsonCache}
+     * unless the link changed since it was cached, so unchanged links are not serialized again.
+     *
+     * @param out the stream to write the JSON array to
+     * @param dateStyle how the date and time of each link is written
+     * @throws IOException if writing to the stream fails
+     */
+    @Transactional(readOnly = true)
+    public void writeAllLinksAsJson(OutputStream out, JSONify.DateStyle dateStyle) throws IOException {
+        if (dateStyle == JSONify.DateStyle.FORMATTED) {
+            try (Stream<VersionedLinkView> links = linkRepo.streamAllVersionedViews()) {
+                JSONify.writeRawJsonArray(links.map(jsonCache::toJson).iterator(), out);
+            }
+            return;
+        }
+
+        try (Stream<LinkView> links = linkRepo.streamAllViews()) {
+            JSONify.writeJsonArray(links.iterator(), out, dateStyle);
+        }
+    }
+
+    /**
+     * Streams all links from the repository to the given output stream in the given export format.
+     * Rows are read through a database cursor and written one at a time, so memory use does not
+     * grow with the number of links and the first rows are written before the query has finished.
+     *
+     * @param format the export format
+     * @param out the stream to write the export to
+     * @throws IOException if writing to the stream fails
+     */
+    @Transactional(readOnly = true)
+    public void exportLinks(ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<LinkView> links = linkRepo.streamAllViews();
+             ExportWriter writer = format.open(out, "id", "category", "name", "url", "dateTime", "numVisits")) {
+            for (LinkView link : (Iterable<LinkView>) links::iterator) {
+                writer.writeRow(link.id(), link.category(), link.name(), link.url(), link.dateTime(),
+                        link.numVisits());
+            }
+        }
     }
 
 }
@@ -0,0 +1,148 @@
+package com.dtoind.lastvisit.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.dtoind.lastvisit.util.SingleFlight;
+
+/**
+ * In-process cache of the complete, encoded bodies of the hottest read endpoints, such as
+ * {@code /links} and {@code /cats}, which return the same bytes from one write to the next.
+ *
+ * Each body is tagged with the stable {@link DataVersion} read before it was built, so that every
+ * write through {@link LinkService}, {@link CategoryService}, the visit buffer, the rollup or the
+ * import makes it stale without having to be told. Bodies built from data with a version of its own,
+ * such as the categories of the {@link CategoryRegistry}, are tagged with that version instead, so
+ * that writes to other data leave them cached. A cached body is served without any repository
+ * call or serialization. When a body is stale, concurrent requests for it share a single rebuild
+ * instead of each querying the database. Bodies of at least {@code lastvisit.response-cache.gzip-min-bytes}
+ * bytes are also kept gzipped, so clients that accept gzip are served without compressing per request.
+ */
+@Service
+public class ResponseCache {
+
+    private static final Logger logger = LogManager.getLogger(ResponseCache.class);
+
+    private final DataVersion dataVersion;
+    private final int gzipMinBytes;
+
+    private final Map<String, Body> bodies = new ConcurrentHashMap<>();
+    private final SingleFlight<String, Body> rebuilds = new SingleFlight<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rebuildCount = new LongAdder();
+
+    /**
+     * Constructs a new ResponseCache.
+     *
+     * @param dataVersion the DataVersion the bodies are tagged with
+     * @param gzipMinBytes the size from which a body is also kept gzipped
+     */
+    public ResponseCache(DataVersion dataVersion,
+                         @Value("${lastvisit.response-cache.gzip-min-bytes:1024}") int gzipMinBytes) {
+        this.dataVersion = dataVersion;
+        this.gzipMinBytes = gzipMinBytes;
+    }
+
+    /**
+     * Returns the body of the given endpoint, building it only if the data changed since it was cached.
+     * Concurrent callers that find it stale at the same version share one build.
+     *
+     * @param name the name of the endpoint
+     * @param builder builds the encoded body from the current data
+     * @return the body
+     */
+    public Body get(String name, Supplier<byte[]> builder) {
+        return get(name, dataVersion.stable(), builder);
+    }
+
+    /**
+     * Returns the body of the given endpoint, building it only if it was cached at an older version
+     * of its data. Each endpoint must always be given versions from the same source.
+     *
+     * @param name the name of the endpoint
+     * @param version the version of the data the body is built from, read before building it
+     * @param builder builds the encoded body from the current data
+     * @return the body
+     */
+    public Body get(String name, long version, Supplier<byte[]> builder) {
+        Body cached = bodies.get(name);
+        if (cached != null && cached.version() >= version) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        // keyed by version too, so that nobody waits for a build that started before a write they saw
+        return rebuilds.load(name + "@" + version, () -> {
+            Body current = bodies.get(name);
+            if (current != null && current.version() >= version) {
+                return current;
+            }
+            rebuildCount.increment();
+            byte[] json = builder.get();
+            Body body = new Body(version, json, json.length >= gzipMinBytes ? gzip(json) : null);
+            bodies.merge(name, body, (old, built) -> built.version() >= old.version() ? built : old);
+            logger.debug("Rebuilt {} at version {}: {} bytes", name, version, json.length);
+            return body;
+        });
+    }
+
+    /**
+     * Drops every cached body, for writes made behind the application's back.
+     */
+    public void invalidateAll() {
+        bodies.clear();
+    }
+
+    /**
+     * Returns a snapshot of the cache's hit and miss counters.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), rebuildCount.sum(), bodies.size());
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * An encoded response body.
+     *
+     * @param version the version of the data read before the body was built
+     * @param json    the UTF-8 JSON
+     * @param gzip    the gzipped JSON, or {@code null} if the body is too small to be worth compressing
+     */
+    public record Body(long version, byte[] json, byte[] gzip) {}
+
+    /**
+     * Hit and miss counters of the response cache.
+     *
+     * @param hits         requests served from a cached body
+     * @param misses       requests that found the body missing or stale
+     * @param rebuilds     bodies built; lower than {@code misses} when concurrent misses shared a build
+     * @param cachedBodies the number of endpoints with a cached body
+     */
+    public record Stats(long hits, long misses, long rebuilds, int cachedBodies) {}
+
+}
@@ -0,0 +1,163 @@
+package com.dtoind.lastvisit.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dtoind.lastvisit.model.Category;
+import com.dtoind.lastvisit.model.LinkView;
+import com.dtoind.lastvisit.model.Tombstone;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.repository.TombstoneRepository;
+import com.dtoind.lastvisit.util.JSONify;
+
+/**
+ * Service class answering delta sync requests: everything that changed after a given data version.
+ *
+ * Created and changed rows are found through their change version and deleted rows through their
+ * tombstones, both indexed, so the cost of a sync depends on how much changed rather than on the
+ * number of links.
+ *
+ * Tombstones are kept for {@code lastvisit.sync.tombstone-retention-days} days (90 by default). A client
+ * that has not synced since before the oldest tombstone kept may have missed deletions, so it is sent
+ * everything instead, marked as a full sync.
+ */
+@Service
+public class SyncService {
+
+    private static final Logger logger = LogManager.getLogger(SyncService.class);
+
+    private final LinkRepository linkRepo;
+    private final TombstoneRepository tombstoneRepo;
+    private final CategoryRegistry registry;
+    private final DataVersion dataVersion;
+    private final TransactionTemplate transactionTemplate;
+    private final int tombstoneRetentionDays;
+
+    /**
+     * Constructs a new SyncService.
+     *
+     * @param linkRepo the LinkRepository the changed links are read from
+     * @param tombstoneRepo the TombstoneRepository the deletions are read from
+     * @param registry the CategoryRegistry the changed categories are read from
+     * @param dataVersion the DataVersion the response is stamped with
+     * @param transactionTemplate the template old tombstones are deleted in
+     * @param tombstoneRetentionDays the number of days tombstones are kept
+     */
+    public SyncService(LinkRepository linkRepo, TombstoneRepository tombstoneRepo, CategoryRegistry registry,
+                       DataVersion dataVersion, TransactionTemplate transactionTemplate,
+                       @Value("${lastvisit.sync.tombstone-retention-days:90}") int tombstoneRetentionDays) {
+        this.linkRepo = linkRepo;
+        this.tombstoneRepo = tombstoneRepo;
+        this.registry = registry;
+        this.dataVersion = dataVersion;
+        this.transactionTemplate = transactionTemplate;
+        this.tombstoneRetentionDays = tombstoneRetentionDays;
+    }
+
+    /**
+     * Writes the changes after the given version to the output stream as a JSON object:
+     * <pre>
+     * {"version": 42,
+     *  "full": false,
+     *  "categories": [{"id": 1, "name": "java"}],
+     *  "links": [{"id": 7, "category": "java", ...}],
+     *  "deleted": {"links": [3], "categories": [2]}}
+     * </pre>
+     * The version is read before the changes, so every change up to it is included; changes after
+     * it may be included too and are sent again by the next sync, which is harmless as applying a
+     * change is idempotent. Since 0 returns every link and category, and so does a version older than
+     * the oldest tombstone kept, as deletions after it may have been pruned; both answers are marked
+     * {@code "full": true}, telling the client to drop whatever it holds that the answer does not contain.
+     *
+     * @param since the version the client is up to date with, 0 for a full sync
+     * @param out the stream to write the JSON object to
+     * @throws IOException if writing to the stream fails
+     */
+    @Transactional(readOnly = true)
+    public void writeChangesSince(long since, OutputStream out) throws IOException {
+        long version = dataVersion.stable();
+        int links = 0;
+        long from = isPruned(since) ? 0 : since;
+
+        try (JsonGenerator json = JSONify.createGenerator(out);
+             Stream<LinkView> changedLinks = linkRepo.streamViewsChangedSince(from)) {
+            json.writeStartObject();
+            json.writeNumberField("version", version);
+            json.writeBooleanField("full", from == 0);
+
+            List<Category> categories = registry.findChangedSince(from);
+            json.writeArrayFieldStart("categories");
+            for (Category category : categories) {
+                json.writeStartObject();
+                json.writeNumberField("id", category.getId());
+                json.writeStringField("name", category.getName());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+
+            json.writeArrayFieldStart("links");
+            for (LinkView link : (Iterable<LinkView>) changedLinks::iterator) {
+                json.writeObject(link);
+                links++;
+            }
+            json.writeEndArray();
+
+            List<Tombstone> tombstones = from == 0 ? List.of() : tombstoneRepo.findChangedSince(from);
+            json.writeObjectFieldStart("deleted");
+            writeIds(json, "links", tombstones, Tombstone.Kind.LINK);
+            writeIds(json, "categories", tombstones, Tombstone.Kind.CATEGORY);
+            json.writeEndObject();
+
+            json.writeEndObject();
+            logger.debug("Synced from {} to {}: {} categories, {} links, {} deletions",
+                    from, version, categories.size(), links, tombstones.size());
+        }
+    }
+
+    /**
+     * Deletes the tombstones older than the retention period, except those of the newest deletion among
+     * them, which stay as the mark below which deletions may be missing.
+     * Runs every {@code lastvisit.sync.prune-interval-ms} milliseconds (once an hour by default).
+     */
+    @Scheduled(initialDelayString = "${lastvisit.sync.prune-interval-ms:3600000}",
+            fixedDelayString = "${lastvisit.sync.prune-interval-ms:3600000}")
+    public void pruneTombstones() {
+        try {
+            LocalDateTime before = LocalDateTime.now().minusDays(tombstoneRetentionDays);
+            Integer pruned = transactionTemplate.execute(status -> tombstoneRepo.findLatestVersionBefore(before)
+                    .map(tombstoneRepo::deleteVersionsBefore).orElse(0));
+            logger.debug("Pruned {} tombstones older than {}", pruned, before);
+        } catch (Exception e) {
+            logger.error("Pruning tombstones failed, it will be retried on the next run", e);
+        }
+    }
+
+    // true if deletions after the given version may no longer have a tombstone
+    private boolean isPruned(long since) {
+        return since > 0 && tombstoneRepo.findOldestVersion().map(oldest -> since < oldest).orElse(false);
+    }
+
+    private static void writeIds(JsonGenerator json, String field, List<Tombstone> tombstones, Tombstone.Kind kind)
+            throws IOException {
+        json.writeArrayFieldStart(field);
+        for (Tombstone tombstone : tombstones) {
+            if (tombstone.getKind() == kind) {
+                json.writeNumber(tombstone.getEntityId());
+            }
+        }
+        json.writeEndArray();
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.dtoind.lastvisit.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.util.UrlHash;
+
+/**
+ * Schema migration that fills in the URL hash of links stored before the column existed,
+ * normalizing their URLs on the way.
+ *
+ * Runs while the application context starts, after Hibernate has updated the schema and before
+ * the web server accepts requests, so no lookup by hash can miss a link that has not been migrated.
+ * Rows are migrated in batches of {@value #BATCH_SIZE}, each in its own transaction.
+ *
+ * A link whose normalized URL is already stored by another link is merged into that link: its
+ * visit count is added, the later visit time is kept, its visit events and buckets are moved over
+ * and it is deleted, leaving a tombstone for syncing clients. So no link is left without a hash,
+ * where no lookup could find it, and no row is retried on the next start.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class UrlHashBackfill {
+
+    private static final Logger logger = LogManager.getLogger(UrlHashBackfill.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String SELECT_UNHASHED = "SELECT linkimpl_id, url, num_visits, date_time FROM linkimpl"
+            + " WHERE url_hash IS NULL AND url IS NOT NULL AND linkimpl_id > ? ORDER BY linkimpl_id LIMIT ?";
+    private static final String SET_HASH = "UPDATE linkimpl SET url = ?, url_hash = ? WHERE linkimpl_id = ?";
+    private static final String SELECT_HASHED_ID = "SELECT linkimpl_id FROM linkimpl WHERE url_hash = ? AND url = ?";
+    private static final String ADD_VISITS = "UPDATE linkimpl SET num_visits = num_visits + ?,"
+            + " date_time = CASE WHEN date_time IS NULL OR date_time < ? THEN ? ELSE date_time END,"
+            + " change_version = ? WHERE linkimpl_id = ?";
+    private static final String MOVE_EVENTS = "UPDATE visitevent SET link_id = ? WHERE link_id = ?";
+    private static final String MOVE_BUCKETS = "INSERT INTO %1$s (link_id, bucket_start, visits)"
+            + " SELECT ?, bucket_start, visits FROM %1$s WHERE link_id = ?"
+            + " ON DUPLICATE KEY UPDATE visits = visits + VALUES(visits)";
+    private static final String DELETE_BUCKETS = "DELETE FROM %s WHERE link_id = ?";
+    private static final List<String> BUCKET_TABLES = List.of("visithourly", "visitdaily");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LinkRepository linkRepo;
+    private final DataVersion dataVersion;
+
+    /**
+     * Constructs a new UrlHashBackfill.
+     *
+     * @param jdbcTemplate the JdbcTemplate used to read and update the links
+     * @param transactionTemplate the template each batch and each merge runs in
+     * @param linkRepo the repository merged links are deleted through
+     * @param dataVersion the DataVersion stamped on merged links and their tombstones
+     */
+    public UrlHashBackfill(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                           LinkRepository linkRepo, DataVersion dataVersion) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.linkRepo = linkRepo;
+        this.dataVersion = dataVersion;
+    }
+
+    /**
+     * Hashes every link that has no URL hash yet.
+     */
+    @PostConstruct
+    public void backfill() {
+        int afterId = 0;
+        int migrated = 0;
+        List<UnhashedLink> batch;
+        do {
+            batch = jdbcTemplate.query(SELECT_UNHASHED,
+                    (rs, rowNum) -> new UnhashedLink(rs.getInt(1), rs.getString(2), rs.getInt(3),
+                            rs.getObject(4, LocalDateTime.class)), afterId, BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            migrated += migrate(batch);
+            afterId = batch.get(batch.size() - 1).id();
+        } while (batch.size() == BATCH_SIZE);
+
+        if (migrated > 0) {
+            logger.info("Backfilled URL hashes of {} links", migrated);
+        }
+    }
+
+    private int migrate(List<UnhashedLink> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(SET_HASH, batch,
+                    batch.size(), (ps, link) -> {
+                        ps.setString(1, UrlHash.normalize(link.url()));
+                        ps.setBytes(2, UrlHash.of(link.url()));
+                        ps.setInt(3, link.id());
+                    }));
+            return batch.size();
+        } catch (DataIntegrityViolationException e) {
+            // some URLs normalize to one already stored; migrate the rest one by one
+            int migrated = 0;
+            for (UnhashedLink link : batch) {
+                try {
+                    jdbcTemplate.update(SET_HASH, UrlHash.normalize(link.url()), UrlHash.of(link.url()), link.id());
+                    migrated++;
+                } catch (DataIntegrityViolationException duplicate) {
+                    if (mergeIntoHashed(link)) {
+                        migrated++;
+                    }
+                }
+            }
+            return migrated;
+        }
+    }
+
+    // merges the link into the hashed link with the same normalized URL; false if there is none
+    private boolean mergeIntoHashed(UnhashedLink link) {
+        List<Integer> hashed = jdbcTemplate.queryForList(SELECT_HASHED_ID, Integer.class,
+                UrlHash.of(link.url()), UrlHash.normalize(link.url()));
+        if (hashed.isEmpty()) {
+            logger.warn("Link {} collides with another link's URL hash and is left unhashed: {}",
+                    link.id(), link.url());
+            return false;
+        }
+
+        int keptId = hashed.get(0);
+        Timestamp dateTime = link.dateTime() == null ? null : Timestamp.valueOf(link.dateTime());
+        long version = dataVersion.begin();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(ADD_VISITS, link.numVisits(), dateTime, dateTime, version, keptId);
+                jdbcTemplate.update(MOVE_EVENTS, keptId, link.id());
+                for (String table : BUCKET_TABLES) {
+                    jdbcTemplate.update(String.format(MOVE_BUCKETS, table), keptId, link.id());
+                    jdbcTemplate.update(String.format(DELETE_BUCKETS, table), link.id());
+                }
+                linkRepo.deleteWithTombstone(link.id(), version);
+            });
+        } finally {
+            dataVersion.end(version);
+        }
+        logger.info("Merged link {} into link {}, which has the same normalized URL {}",
+                link.id(), keptId, UrlHash.normalize(link.url()));
+        return true;
+    }
+
+    private record UnhashedLink(int id, String url, int numVisits, LocalDateTime dateTime) {}
+
+}
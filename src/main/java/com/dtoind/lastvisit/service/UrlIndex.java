@@ -0,0 +1,171 @@
+package com.dtoind.lastvisit.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.util.BloomFilter;
+import com.dtoind.lastvisit.util.UrlHash;
+
+/**
+ * In-process index from link URL to link ID.
+ *
+ * Lookups are answered, in order, by a bounded LRU cache of known URLs, by a Bloom filter
+ * that can tell a URL is definitely not stored, and only then by the database.
+ * URLs are normalized with {@link UrlHash#normalize(String)}, the form links are stored in.
+ * {@link LinkService} keeps the index in sync on every write.
+ */
+@Service
+public class UrlIndex {
+
+    private static final Logger logger = LogManager.getLogger(UrlIndex.class);
+
+    private static final double BLOOM_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private final LinkRepository linkRepo;
+    private final Map<String, Integer> cache;
+    private final BloomFilter bloomFilter;
+
+    // until the filter has been seeded with every stored URL, its negative answers cannot be trusted
+    private volatile boolean bloomReady = false;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder bloomNegatives = new LongAdder();
+    private final LongAdder databaseLookups = new LongAdder();
+
+    /**
+     * Constructs a new UrlIndex.
+     *
+     * @param linkRepo the LinkRepository used when the index cannot answer by itself
+     * @param cacheSize the maximum number of URLs kept in the LRU cache
+     * @param bloomCapacity the number of URLs the Bloom filter is sized for
+     */
+    public UrlIndex(LinkRepository linkRepo,
+                    @Value("${lastvisit.url-index.cache-size:10000}") int cacheSize,
+                    @Value("${lastvisit.url-index.bloom-capacity:1000000}") long bloomCapacity) {
+        this.linkRepo = linkRepo;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        this.bloomFilter = new BloomFilter(bloomCapacity, BLOOM_FALSE_POSITIVE_PROBABILITY);
+    }
+
+    /**
+     * Seeds the Bloom filter with every stored URL once the application has started.
+     * URLs added while seeding runs go into the same filter, so none are missed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void seed() {
+        long count = 0;
+        try (Stream<String> urls = linkRepo.streamAllUrls()) {
+            for (String url : (Iterable<String>) urls::iterator) {
+                bloomFilter.put(url);
+                count++;
+            }
+        }
+        bloomReady = true;
+        logger.info("URL index seeded with {} URLs", count);
+    }
+
+    /**
+     * Finds the ID of the link with the given URL.
+     *
+     * @param url the URL of the link
+     * @return an {@code Optional} containing the link ID if found, otherwise an empty {@code Optional}
+     */
+    public Optional<Integer> findId(String url) {
+        String normalized = UrlHash.normalize(url);
+        Integer cached = cache.get(normalized);
+        if (cached != null) {
+            cacheHits.increment();
+            return Optional.of(cached);
+        }
+
+        if (bloomReady && !bloomFilter.mightContain(normalized)) {
+            bloomNegatives.increment();
+            return Optional.empty();
+        }
+
+        databaseLookups.increment();
+        Optional<Integer> id = linkRepo.findIdByUrl(normalized);
+        id.ifPresent(found -> cache.put(normalized, found));
+        return id;
+    }
+
+    /**
+     * Checks if a link with the given URL exists.
+     *
+     * @param url the URL to check
+     * @return {@code true} if a link with the URL exists, {@code false} otherwise
+     */
+    public boolean exists(String url) {
+        return findId(url).isPresent();
+    }
+
+    /**
+     * Records that a link with the given URL and ID has been stored.
+     *
+     * @param url the URL of the link
+     * @param id the ID of the link
+     */
+    public void put(String url, int id) {
+        String normalized = UrlHash.normalize(url);
+        bloomFilter.put(normalized);
+        cache.put(normalized, id);
+    }
+
+    /**
+     * Records that the link with the given URL has been deleted.
+     * The URL stays in the Bloom filter, which only costs an occasional database lookup.
+     *
+     * @param url the URL of the deleted link
+     */
+    public void remove(String url) {
+        cache.remove(UrlHash.normalize(url));
+    }
+
+    /**
+     * Forgets every cached URL, for bulk deletions that do not report which URLs they removed.
+     */
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    /**
+     * Returns a snapshot of the index's hit and miss counters.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        return new Stats(cacheHits.sum(), bloomNegatives.sum(), databaseLookups.sum(), cache.size(), bloomReady);
+    }
+
+    /**
+     * Hit and miss counters of the URL index.
+     *
+     * @param cacheHits       lookups answered by the LRU cache
+     * @param bloomNegatives  lookups answered "not present" by the Bloom filter without a query
+     * @param databaseLookups lookups that had to query the database
+     * @param cachedUrls      the number of URLs currently in the LRU cache
+     * @param bloomReady      whether the Bloom filter has been seeded
+     */
+    public record Stats(long cacheHits, long bloomNegatives, long databaseLookups, int cachedUrls,
+                        boolean bloomReady) {}
+
+}
@@ -0,0 +1,235 @@
+package com.dtoind.lastvisit.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dtoind.lastvisit.model.ChangeEvent;
+import com.dtoind.lastvisit.model.VisitBatch;
+import com.dtoind.lastvisit.model.VisitBatchReceipt;
+import com.dtoind.lastvisit.model.VisitDelta;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.repository.VisitBatchReceiptRepository;
+
+/**
+ * Service class applying batches of visits sent by clients, which buffer clicks and send them together.
+ *
+ * The visits of a batch are grouped per link and added with one batched UPDATE, in the same transaction
+ * as the {@link VisitBatchReceipt} of the batch, so a batch sent again is recognized by its ID and
+ * skipped. Receipts are kept for {@code lastvisit.visits.batch-retention-hours} hours (24 by default),
+ * which bounds how late a client may retry a batch. When the visit mode is {@link VisitMode#EVENT_LOG},
+ * the visits are appended to the event log instead and counted by its rollup. Batched visits are
+ * written right away in the buffered visit mode too, as they have been buffered by the client already.
+ */
+@Service
+public class VisitBatchService {
+
+    private static final Logger logger = LogManager.getLogger(VisitBatchService.class);
+
+    // the length of the receipt's ID column
+    private static final int MAX_BATCH_ID_LENGTH = 64;
+
+    private final LinkRepository linkRepo;
+    private final VisitBatchReceiptRepository receiptRepo;
+    private final VisitHistoryService visitHistory;
+    private final UrlIndex urlIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final DataVersion dataVersion;
+    private final ChangeFeed changeFeed;
+    private final LinkRanking ranking;
+    private final int maxBatchSize;
+    private final int retentionHours;
+
+    /**
+     * Constructs a new VisitBatchService.
+     *
+     * @param linkRepo the LinkRepository visits given by link ID are checked and the visits are added with
+     * @param receiptRepo the repository of the receipts of applied batches
+     * @param visitHistory the VisitHistoryService the visits are appended to when the event log is enabled
+     * @param urlIndex the UrlIndex visits given by URL are resolved with
+     * @param transactionTemplate the template each batch is applied in
+     * @param dataVersion the DataVersion stamped on links when a batch is applied
+     * @param changeFeed the ChangeFeed told to reload when a batch has updated links
+     * @param ranking the LinkRanking told about the visits of a batch once they are written
+     * @param maxBatchSize the maximum number of visits in a batch
+     * @param retentionHours the number of hours the receipt of an applied batch is kept
+     */
+    public VisitBatchService(LinkRepository linkRepo,
+                             VisitBatchReceiptRepository receiptRepo,
+                             VisitHistoryService visitHistory,
+                             UrlIndex urlIndex,
+                             TransactionTemplate transactionTemplate,
+                             DataVersion dataVersion,
+                             ChangeFeed changeFeed,
+                             LinkRanking ranking,
+                             @Value("${lastvisit.visits.batch-max-size:1000}") int maxBatchSize,
+                             @Value("${lastvisit.visits.batch-retention-hours:24}") int retentionHours) {
+        this.linkRepo = linkRepo;
+        this.receiptRepo = receiptRepo;
+        this.visitHistory = visitHistory;
+        this.urlIndex = urlIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.dataVersion = dataVersion;
+        this.changeFeed = changeFeed;
+        this.ranking = ranking;
+        this.maxBatchSize = maxBatchSize;
+        this.retentionHours = retentionHours;
+    }
+
+    /**
+     * Applies the visits of the given batch, unless a batch with the same ID has been applied already.
+     * Visits to link IDs or URLs that are not stored are dropped and counted as unknown; the link IDs of
+     * a batch are checked with one query. Visit times in the future, as sent by a client whose clock is
+     * ahead, are taken as the time the batch is received.
+     *
+     * @param batch the batch of visits
+     * @return what was done with the batch
+     * @throws IllegalArgumentException if the batch has no valid ID, has too many visits, or has a visit
+     *                                  with neither a link ID nor a URL
+     */
+    public Result apply(VisitBatch batch) {
+        validate(batch);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ResolvedVisit> resolved = new ArrayList<>(batch.visits().size());
+        int unknown = 0;
+        Set<Integer> storedIds = findStoredIds(batch.visits());
+        for (VisitBatch.Visit visit : batch.visits()) {
+            Optional<Integer> linkId = visit.id() != null
+                    ? Optional.of(visit.id()).filter(storedIds::contains)
+                    : urlIndex.findId(visit.url());
+            if (linkId.isPresent()) {
+                resolved.add(new ResolvedVisit(linkId.get(), visitTime(visit.timestamp(), now)));
+            } else {
+                unknown++;
+            }
+        }
+        Map<Integer, VisitDelta> deltas = new HashMap<>();
+        for (ResolvedVisit visit : resolved) {
+            deltas.merge(visit.linkId(), VisitDelta.single(visit.time()), VisitDelta::merge);
+        }
+
+        // a version is only taken by a batch that updates links
+        AtomicLong version = new AtomicLong();
+        Integer updated;
+        try {
+            updated = transactionTemplate.execute(status -> {
+                if (receiptRepo.insertIfAbsent(batch.batchId(), now, batch.visits().size()) == 0) {
+                    return null;
+                }
+                return write(resolved, deltas, version);
+            });
+        } finally {
+            if (version.get() != 0) {
+                dataVersion.end(version.get());
+            }
+        }
+
+        if (updated == null) {
+            logger.info("Visit batch {} has already been applied, skipping it", batch.batchId());
+            return new Result(batch.batchId(), true, 0, 0, 0);
+        }
+        if (updated > 0) {
+            ranking.addVisits(deltas);
+            changeFeed.publish(ChangeEvent.reload());
+        }
+        logger.debug("Applied visit batch {}: {} visits, {} unknown, {} links updated",
+                batch.batchId(), resolved.size(), unknown, updated);
+        return new Result(batch.batchId(), false, resolved.size(), unknown, updated);
+    }
+
+    /**
+     * Deletes the receipts of batches applied longer ago than the retention period.
+     * Runs every {@code lastvisit.visits.batch-prune-interval-ms} milliseconds (once an hour by default).
+     */
+    @Scheduled(initialDelayString = "${lastvisit.visits.batch-prune-interval-ms:3600000}",
+            fixedDelayString = "${lastvisit.visits.batch-prune-interval-ms:3600000}")
+    public void pruneReceipts() {
+        try {
+            LocalDateTime before = LocalDateTime.now().minusHours(retentionHours);
+            Integer pruned = transactionTemplate.execute(status -> receiptRepo.deleteOlderThan(before));
+            logger.debug("Pruned {} visit batch receipts older than {}", pruned, before);
+        } catch (Exception e) {
+            logger.error("Pruning visit batch receipts failed, it will be retried on the next run", e);
+        }
+    }
+
+    // the IDs given by the visits that belong to stored links; no query if the visits only give URLs
+    private Set<Integer> findStoredIds(List<VisitBatch.Visit> visits) {
+        Set<Integer> ids = new HashSet<>();
+        visits.stream().map(VisitBatch.Visit::id).filter(Objects::nonNull).forEach(ids::add);
+        return ids.isEmpty() ? Set.of() : new HashSet<>(linkRepo.findIdsByIdIn(ids));
+    }
+
+    private int write(List<ResolvedVisit> visits, Map<Integer, VisitDelta> deltas, AtomicLong version) {
+        if (visitHistory.isEnabled()) {
+            visits.forEach(visit -> visitHistory.append(visit.linkId(), visit.time()));
+            return 0;
+        }
+
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        version.set(dataVersion.begin());
+        return linkRepo.addVisitsById(deltas, version.get());
+    }
+
+    private void validate(VisitBatch batch) {
+        if (batch == null || batch.batchId() == null || batch.batchId().isBlank()) {
+            throw new IllegalArgumentException("batchId is missing or empty");
+        }
+        if (batch.batchId().length() > MAX_BATCH_ID_LENGTH) {
+            throw new IllegalArgumentException("batchId cannot be longer than " + MAX_BATCH_ID_LENGTH + " characters");
+        }
+        if (batch.visits() == null) {
+            throw new IllegalArgumentException("visits is missing");
+        }
+        if (batch.visits().size() > maxBatchSize) {
+            throw new IllegalArgumentException("A batch cannot have more than " + maxBatchSize + " visits");
+        }
+        for (VisitBatch.Visit visit : batch.visits()) {
+            if (visit == null || (visit.id() == null && (visit.url() == null || visit.url().isBlank()))) {
+                throw new IllegalArgumentException("Every visit needs an id or a url");
+            }
+        }
+    }
+
+    private static LocalDateTime visitTime(Long timestamp, LocalDateTime now) {
+        if (timestamp == null) {
+            return now;
+        }
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        return time.isAfter(now) ? now : time;
+    }
+
+    private record ResolvedVisit(int linkId, LocalDateTime time) {}
+
+    /**
+     * What was done with a batch of visits.
+     *
+     * @param batchId      the client's ID of the batch
+     * @param duplicate    whether the batch had been applied before and was skipped
+     * @param visits       the number of visits applied
+     * @param unknown      the number of visits to URLs that are not stored, which were dropped
+     * @param linksUpdated the number of links whose visits were updated; 0 when the event log is enabled,
+     *                     as its rollup updates the links
+     */
+    public record Result(String batchId, boolean duplicate, int visits, int unknown, int linksUpdated) {}
+
+}
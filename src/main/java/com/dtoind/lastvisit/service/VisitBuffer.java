@@ -0,0 +1,266 @@
+package com.dtoind.lastvisit.service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.dtoind.lastvisit.exception.VisitBufferFullException;
+import com.dtoind.lastvisit.model.ChangeEvent;
+import com.dtoind.lastvisit.model.VisitDelta;
+import com.dtoind.lastvisit.repository.LinkRepository;
+
+/**
+ * Write-behind buffer for link visits.
+ *
+ * When the visit mode is {@link VisitMode#BUFFERED}, visits are counted in memory, keyed by URL,
+ * and periodically written to the database as one batch of increments. Once
+ * {@code lastvisit.visits.max-pending-urls} distinct URLs are pending, a flush is started early on a
+ * background thread, never on the thread adding the visit. The buffer is also flushed on shutdown.
+ *
+ * The buffer never holds more than {@code lastvisit.visits.max-buffered-urls} distinct URLs (give
+ * or take the number of threads adding at that moment), which bounds both its memory and the
+ * number of links whose visits are lost if the process dies. When it is full, a visit to a URL that
+ * is not pending already is rejected with a {@link VisitBufferFullException} rather than buffered.
+ * A flush that fails puts its visits back, within the same bound; visits that no longer fit are
+ * dropped and counted. After a failed flush the next ones are put off, doubling the wait each time
+ * up to a minute, so that an unreachable database is not hammered.
+ */
+@Service
+public class VisitBuffer {
+
+    private static final Logger logger = LogManager.getLogger(VisitBuffer.class);
+
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    private final LinkRepository linkRepo;
+    private final DataVersion dataVersion;
+    private final ChangeFeed changeFeed;
+    private final LinkRanking ranking;
+    private final VisitMode mode;
+    private final int maxPendingUrls;
+    private final int maxBufferedUrls;
+    private final long flushIntervalMillis;
+
+    // ConcurrentHashMap locks per bin, so visits to different links rarely contend
+    private final ConcurrentHashMap<String, VisitDelta> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean earlyFlushQueued = new AtomicBoolean();
+    private final ExecutorService earlyFlusher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "visit-buffer-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // guarded by flushLock, read without it to skip flushes that are not due
+    private volatile long nextFlushNanos = System.nanoTime();
+    private int consecutiveFailures;
+
+    private final LongAdder rejectedVisits = new LongAdder();
+    private final LongAdder droppedVisits = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+
+    /**
+     * Constructs a new VisitBuffer.
+     *
+     * @param linkRepo the LinkRepository the buffered visits are written to
+     * @param dataVersion the DataVersion stamped on links when buffered visits are written
+     * @param changeFeed the ChangeFeed told to reload when buffered visits are written
+     * @param ranking the LinkRanking told about buffered visits once they are written
+     * @param mode the configured visit mode; the buffer only accepts visits in {@link VisitMode#BUFFERED} mode
+     * @param maxPendingUrls the number of distinct buffered URLs that triggers an early flush
+     * @param maxBufferedUrls the maximum number of distinct buffered URLs, beyond which visits are rejected
+     * @param flushIntervalMillis the interval between flushes, which is also the first wait after a failed one
+     */
+    public VisitBuffer(LinkRepository linkRepo,
+                       DataVersion dataVersion,
+                       ChangeFeed changeFeed,
+                       LinkRanking ranking,
+                       @Value("${lastvisit.visits.mode:direct}") VisitMode mode,
+                       @Value("${lastvisit.visits.max-pending-urls:10000}") int maxPendingUrls,
+                       @Value("${lastvisit.visits.max-buffered-urls:100000}") int maxBufferedUrls,
+                       @Value("${lastvisit.visits.flush-interval-ms:1000}") long flushIntervalMillis) {
+        this.linkRepo = linkRepo;
+        this.dataVersion = dataVersion;
+        this.changeFeed = changeFeed;
+        this.ranking = ranking;
+        this.mode = mode;
+        this.maxPendingUrls = maxPendingUrls;
+        this.maxBufferedUrls = maxBufferedUrls;
+        this.flushIntervalMillis = flushIntervalMillis;
+        logger.info("Visit mode: {}", mode);
+    }
+
+    /**
+     * Checks whether visits should be recorded through this buffer.
+     *
+     * @return {@code true} if the visit mode is {@link VisitMode#BUFFERED}, {@code false} otherwise
+     */
+    public boolean isEnabled() {
+        return mode == VisitMode.BUFFERED;
+    }
+
+    /**
+     * Records one visit to the link with the given URL.
+     * Starts a flush in the background if too many distinct URLs are pending.
+     *
+     * @param url the URL of the visited link
+     * @param visitTime the date and time of the visit
+     * @throws VisitBufferFullException if the buffer is full and the URL has no visits pending
+     */
+    public void add(String url, LocalDateTime visitTime) {
+        if (pending.size() >= maxBufferedUrls && !pending.containsKey(url)) {
+            rejectedVisits.increment();
+            throw new VisitBufferFullException("Visit buffer is full with " + pending.size() + " URLs");
+        }
+        pending.merge(url, VisitDelta.single(visitTime), VisitDelta::merge);
+
+        if (pending.size() >= maxPendingUrls && isFlushDue() && earlyFlushQueued.compareAndSet(false, true)) {
+            earlyFlusher.execute(() -> {
+                try {
+                    logger.info("{} URLs pending, flushing visit buffer early", pending.size());
+                    flush();
+                } finally {
+                    earlyFlushQueued.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the number of distinct URLs with visits waiting to be written.
+     *
+     * @return the number of pending URLs
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Returns a snapshot of the buffer's size and counters.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        return new Stats(pending.size(), rejectedVisits.sum(), droppedVisits.sum(), failedFlushes.sum());
+    }
+
+    /**
+     * Writes all buffered visits to the database, unless the wait after a failed flush has not elapsed.
+     * Runs every {@code lastvisit.visits.flush-interval-ms} milliseconds (1 second by default).
+     */
+    @Scheduled(fixedDelayString = "${lastvisit.visits.flush-interval-ms:1000}")
+    public void flush() {
+        if (!isFlushDue()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            drainAndWrite();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes any remaining buffered visits before the application shuts down, whether a failed
+     * flush is being waited out or not.
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        logger.info("Flushing {} pending URLs before shutdown", pending.size());
+        earlyFlusher.shutdownNow();
+        flushLock.lock();
+        try {
+            drainAndWrite();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private boolean isFlushDue() {
+        return System.nanoTime() - nextFlushNanos >= 0;
+    }
+
+    private void drainAndWrite() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // remove() is atomic per key, so a visit lands either in this batch or in the next one
+        Map<String, VisitDelta> batch = new HashMap<>();
+        for (String url : pending.keySet()) {
+            VisitDelta delta = pending.remove(url);
+            if (delta != null) {
+                batch.put(url, delta);
+            }
+        }
+
+        int updated;
+        long version = dataVersion.begin();
+        try {
+            updated = linkRepo.addVisits(batch, version);
+            consecutiveFailures = 0;
+        } catch (Exception e) {
+            failedFlushes.increment();
+            long dropped = putBack(batch);
+            long backoff = Math.min(flushIntervalMillis << Math.min(consecutiveFailures, 16), MAX_BACKOFF_MILLIS);
+            consecutiveFailures++;
+            nextFlushNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+            logger.error("Failed to flush visits for {} URLs, keeping them for a flush in {} ms, {} visits dropped",
+                    batch.size(), backoff, dropped, e);
+            return;
+        } finally {
+            dataVersion.end(version);
+        }
+        logger.debug("Flushed visits for {} URLs, {} links updated", batch.size(), updated);
+
+        // the visits are committed by now; putting them back would write them a second time
+        try {
+            ranking.addVisitsByUrl(batch);
+            if (updated > 0) {
+                changeFeed.publish(ChangeEvent.reload());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Flushed visits for {} URLs, but could not pass them on to the ranking and the change feed",
+                    batch.size(), e);
+        }
+    }
+
+    private long putBack(Map<String, VisitDelta> batch) {
+        long dropped = 0;
+        for (Map.Entry<String, VisitDelta> entry : batch.entrySet()) {
+            if (pending.size() < maxBufferedUrls || pending.containsKey(entry.getKey())) {
+                pending.merge(entry.getKey(), entry.getValue(), VisitDelta::merge);
+            } else {
+                dropped += entry.getValue().count();
+            }
+        }
+        droppedVisits.add(dropped);
+        return dropped;
+    }
+
+    /**
+     * Size and counters of the visit buffer.
+     *
+     * @param pendingUrls    the number of distinct URLs with visits waiting to be written
+     * @param rejectedVisits visits rejected because the buffer was full
+     * @param droppedVisits  visits of failed flushes that no longer fit in the buffer and were lost
+     * @param failedFlushes  flushes that failed and were retried later
+     */
+    public record Stats(int pendingUrls, long rejectedVisits, long droppedVisits, long failedFlushes) {}
+
+}
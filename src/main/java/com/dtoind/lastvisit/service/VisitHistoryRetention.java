@@ -0,0 +1,100 @@
+package com.dtoind.lastvisit.service;
+
+import java.time.LocalDateTime;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dtoind.lastvisit.model.VisitRollupState;
+import com.dtoind.lastvisit.repository.DailyVisitBucketRepository;
+import com.dtoind.lastvisit.repository.HourlyVisitBucketRepository;
+import com.dtoind.lastvisit.repository.VisitEventRepository;
+import com.dtoind.lastvisit.repository.VisitRollupStateRepository;
+
+/**
+ * Keeps the visit event log and the visit bucket tables from growing forever.
+ *
+ * Folded visit events are kept for {@code lastvisit.visits.event-retention-days} days (7 by default)
+ * after the server recorded them, hourly buckets for {@code lastvisit.visits.hourly-retention-days}
+ * days (30 by default) and daily buckets for {@code lastvisit.visits.daily-retention-days} days
+ * (730 by default). Events the rollup has not folded yet are never deleted. Each run also deletes
+ * whatever history deleted links left.
+ */
+@Service
+public class VisitHistoryRetention {
+
+    private static final Logger logger = LogManager.getLogger(VisitHistoryRetention.class);
+
+    private final VisitEventRepository eventRepo;
+    private final VisitRollupStateRepository stateRepo;
+    private final HourlyVisitBucketRepository hourlyRepo;
+    private final DailyVisitBucketRepository dailyRepo;
+    private final VisitHistoryService visitHistory;
+    private final TransactionTemplate transactionTemplate;
+    private final int eventRetentionDays;
+    private final int hourlyRetentionDays;
+    private final int dailyRetentionDays;
+
+    /**
+     * Constructs a new VisitHistoryRetention.
+     *
+     * @param eventRepo the repository of the visit event log
+     * @param stateRepo the repository holding the rollup's progress
+     * @param hourlyRepo the repository of hourly visit buckets
+     * @param dailyRepo the repository of daily visit buckets
+     * @param visitHistory the VisitHistoryService the history of deleted links is deleted through
+     * @param transactionTemplate the template each pruning step runs in
+     * @param eventRetentionDays the number of days folded visit events are kept
+     * @param hourlyRetentionDays the number of days hourly buckets are kept
+     * @param dailyRetentionDays the number of days daily buckets are kept
+     */
+    public VisitHistoryRetention(VisitEventRepository eventRepo,
+                                 VisitRollupStateRepository stateRepo,
+                                 HourlyVisitBucketRepository hourlyRepo,
+                                 DailyVisitBucketRepository dailyRepo,
+                                 VisitHistoryService visitHistory,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${lastvisit.visits.event-retention-days:7}") int eventRetentionDays,
+                                 @Value("${lastvisit.visits.hourly-retention-days:30}") int hourlyRetentionDays,
+                                 @Value("${lastvisit.visits.daily-retention-days:730}") int dailyRetentionDays) {
+        this.eventRepo = eventRepo;
+        this.stateRepo = stateRepo;
+        this.hourlyRepo = hourlyRepo;
+        this.dailyRepo = dailyRepo;
+        this.visitHistory = visitHistory;
+        this.transactionTemplate = transactionTemplate;
+        this.eventRetentionDays = eventRetentionDays;
+        this.hourlyRetentionDays = hourlyRetentionDays;
+        this.dailyRetentionDays = dailyRetentionDays;
+    }
+
+    /**
+     * Deletes visit events and buckets older than their retention period and the history of deleted links.
+     * Runs every {@code lastvisit.visits.prune-interval-ms} milliseconds (once an hour by default).
+     */
+    @Scheduled(initialDelayString = "${lastvisit.visits.prune-interval-ms:3600000}",
+            fixedDelayString = "${lastvisit.visits.prune-interval-ms:3600000}")
+    public void prune() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            long lastEventId = stateRepo.findById(VisitHistoryService.ROLLUP_NAME)
+                    .map(VisitRollupState::getLastEventId).orElse(0L);
+            Integer events = transactionTemplate.execute(status ->
+                    eventRepo.deleteFoldedBefore(lastEventId, now.minusDays(eventRetentionDays)));
+            Integer hourly = transactionTemplate.execute(status ->
+                    hourlyRepo.deleteStartingBefore(now.minusDays(hourlyRetentionDays)));
+            Integer daily = transactionTemplate.execute(status ->
+                    dailyRepo.deleteStartingBefore(now.minusDays(dailyRetentionDays)));
+            logger.debug("Pruned {} visit events, {} hourly and {} daily visit buckets", events, hourly, daily);
+
+            visitHistory.deleteOrphanedHistory();
+        } catch (Exception e) {
+            logger.error("Pruning visit history failed, it will be retried on the next run", e);
+        }
+    }
+
+}
@@ -0,0 +1,283 @@
+package com.dtoind.lastvisit.service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dtoind.lastvisit.model.ChangeEvent;
+import com.dtoind.lastvisit.model.VisitBucket;
+import com.dtoind.lastvisit.model.VisitBucketKey;
+import com.dtoind.lastvisit.model.VisitDelta;
+import com.dtoind.lastvisit.model.VisitEvent;
+import com.dtoind.lastvisit.model.VisitRollupGap;
+import com.dtoind.lastvisit.model.VisitRollupState;
+import com.dtoind.lastvisit.repository.DailyVisitBucketRepository;
+import com.dtoind.lastvisit.repository.HourlyVisitBucketRepository;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.repository.VisitEventRepository;
+import com.dtoind.lastvisit.repository.VisitRollupGapRepository;
+import com.dtoind.lastvisit.repository.VisitRollupStateRepository;
+
+/**
+ * Service class for the append-only visit event log.
+ *
+ * When the visit mode is {@link VisitMode#EVENT_LOG}, every visit is appended as a {@link VisitEvent}
+ * instead of updating the link's row. A scheduled rollup folds new events into the links' visit
+ * counters and into the hourly and daily bucket tables, which can be queried as visit history.
+ *
+ * Event IDs are assigned on insert but events only become visible on commit, so the rollup can see
+ * an event before one with a lower ID whose transaction is still open. Rather than waiting a fixed
+ * time for such stragglers, the rollup records every ID it passes without seeing its event as a
+ * {@link VisitRollupGap}, folds the events of open gaps as soon as they appear, and only gives up on
+ * a gap after {@code lastvisit.visits.rollup-gap-timeout-seconds} (10 minutes by default), by which
+ * time its insert has been rolled back. The history of a link is deleted together with the link.
+ */
+@Service
+public class VisitHistoryService {
+
+    private static final Logger logger = LogManager.getLogger(VisitHistoryService.class);
+
+    static final String ROLLUP_NAME = "visits";
+
+    // a jump in IDs larger than this is not transactions in flight but IDs that were never used
+    private static final int MAX_OPEN_GAPS = 10_000;
+
+    private final VisitEventRepository eventRepo;
+    private final VisitRollupStateRepository stateRepo;
+    private final VisitRollupGapRepository gapRepo;
+    private final HourlyVisitBucketRepository hourlyRepo;
+    private final DailyVisitBucketRepository dailyRepo;
+    private final LinkRepository linkRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final DataVersion dataVersion;
+    private final ChangeFeed changeFeed;
+    private final LinkRanking ranking;
+    private final VisitMode mode;
+    private final int batchSize;
+    private final long gapTimeoutSeconds;
+
+    /**
+     * Constructs a new VisitHistoryService.
+     *
+     * @param eventRepo the repository visit events are appended to
+     * @param stateRepo the repository holding the rollup's progress
+     * @param gapRepo the repository of the event IDs the rollup is still waiting for
+     * @param hourlyRepo the repository of hourly visit buckets
+     * @param dailyRepo the repository of daily visit buckets
+     * @param linkRepo the repository of the links whose counters are rolled up
+     * @param transactionTemplate the template each rollup batch runs in
+     * @param dataVersion the DataVersion stamped on links when rolled up visits are written to them
+     * @param changeFeed the ChangeFeed told to reload when rolled up visits are written to the links
+     * @param ranking the LinkRanking told about rolled up visits once they are written to the links
+     * @param mode the configured visit mode; events are only appended in {@link VisitMode#EVENT_LOG} mode
+     * @param batchSize the maximum number of events folded per transaction
+     * @param gapTimeoutSeconds how long the rollup waits for the event of an ID it has passed
+     */
+    public VisitHistoryService(VisitEventRepository eventRepo,
+                               VisitRollupStateRepository stateRepo,
+                               VisitRollupGapRepository gapRepo,
+                               HourlyVisitBucketRepository hourlyRepo,
+                               DailyVisitBucketRepository dailyRepo,
+                               LinkRepository linkRepo,
+                               TransactionTemplate transactionTemplate,
+                               DataVersion dataVersion,
+                               ChangeFeed changeFeed,
+                               LinkRanking ranking,
+                               @Value("${lastvisit.visits.mode:direct}") VisitMode mode,
+                               @Value("${lastvisit.visits.rollup-batch-size:5000}") int batchSize,
+                               @Value("${lastvisit.visits.rollup-gap-timeout-seconds:600}") long gapTimeoutSeconds) {
+        this.eventRepo = eventRepo;
+        this.stateRepo = stateRepo;
+        this.gapRepo = gapRepo;
+        this.hourlyRepo = hourlyRepo;
+        this.dailyRepo = dailyRepo;
+        this.linkRepo = linkRepo;
+        this.transactionTemplate = transactionTemplate;
+        this.dataVersion = dataVersion;
+        this.changeFeed = changeFeed;
+        this.ranking = ranking;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.gapTimeoutSeconds = gapTimeoutSeconds;
+    }
+
+    /**
+     * Checks whether visits should be recorded as visit events.
+     *
+     * @return {@code true} if the visit mode is {@link VisitMode#EVENT_LOG}, {@code false} otherwise
+     */
+    public boolean isEnabled() {
+        return mode == VisitMode.EVENT_LOG;
+    }
+
+    /**
+     * Appends a visit event for the link with the given ID, recorded at the current server time.
+     *
+     * @param linkId the ID of the visited link
+     * @param visitTime the date and time of the visit, possibly stamped by the client
+     */
+    public void append(int linkId, LocalDateTime visitTime) {
+        eventRepo.save(new VisitEvent(linkId, visitTime));
+    }
+
+    /**
+     * Folds all visit events appended since the last rollup into the link counters and visit buckets.
+     * Runs every {@code lastvisit.visits.rollup-interval-ms} milliseconds (5 seconds by default),
+     * whatever the visit mode, so that no events are stranded after switching modes.
+     */
+    @Scheduled(initialDelayString = "${lastvisit.visits.rollup-interval-ms:5000}",
+            fixedDelayString = "${lastvisit.visits.rollup-interval-ms:5000}")
+    public void rollUp() {
+        try {
+            Progress progress;
+            do {
+                // a version is only taken by a batch that has events to fold
+                AtomicLong version = new AtomicLong();
+                Map<Integer, VisitDelta> perLink = new HashMap<>();
+                try {
+                    progress = transactionTemplate.execute(status -> rollUpBatch(version, perLink));
+                } finally {
+                    if (version.get() != 0) {
+                        dataVersion.end(version.get());
+                    }
+                }
+                if (progress != null && progress.folded() > 0) {
+                    ranking.addVisits(perLink);
+                    changeFeed.publish(ChangeEvent.reload());
+                }
+            } while (progress != null && progress.more());
+        } catch (Exception e) {
+            logger.error("Visit rollup failed, it will be retried on the next run", e);
+        }
+    }
+
+    /**
+     * Retrieves the hourly visit history of a link.
+     *
+     * @param linkId the ID of the link
+     * @param from the earliest hour to include
+     * @return the hourly buckets in chronological order
+     */
+    @Transactional(readOnly = true)
+    public List<? extends VisitBucket> findHourlyHistory(int linkId, LocalDateTime from) {
+        return hourlyRepo.findByLinkIdAndBucketStartGreaterThanEqualOrderByBucketStart(linkId,
+                from.truncatedTo(ChronoUnit.HOURS));
+    }
+
+    /**
+     * Retrieves the daily visit history of a link.
+     *
+     * @param linkId the ID of the link
+     * @param from the earliest day to include
+     * @return the daily buckets in chronological order
+     */
+    @Transactional(readOnly = true)
+    public List<? extends VisitBucket> findDailyHistory(int linkId, LocalDateTime from) {
+        return dailyRepo.findByLinkIdAndBucketStartGreaterThanEqualOrderByBucketStart(linkId,
+                from.truncatedTo(ChronoUnit.DAYS));
+    }
+
+    /**
+     * Deletes the visit events and the hourly and daily buckets of the link with the given ID.
+     *
+     * @param linkId the ID of the deleted link
+     */
+    @Transactional
+    public void deleteHistory(int linkId) {
+        int events = eventRepo.deleteByLinkId(linkId);
+        int buckets = hourlyRepo.deleteByLinkId(linkId) + dailyRepo.deleteByLinkId(linkId);
+        logger.debug("Deleted {} visit events and {} visit buckets of link {}", events, buckets, linkId);
+    }
+
+    /**
+     * Deletes the visit events and the hourly and daily buckets of every link that no longer exists,
+     * for links deleted in bulk and for events that were appended while their link was being deleted.
+     */
+    @Transactional
+    public void deleteOrphanedHistory() {
+        int events = eventRepo.deleteOrphans();
+        int buckets = hourlyRepo.deleteOrphans() + dailyRepo.deleteOrphans();
+        if (events > 0 || buckets > 0) {
+            logger.info("Deleted {} visit events and {} visit buckets of deleted links", events, buckets);
+        }
+    }
+
+    private Progress rollUpBatch(AtomicLong version, Map<Integer, VisitDelta> perLink) {
+        VisitRollupState state = stateRepo.findForUpdate(ROLLUP_NAME)
+                .orElseGet(() -> stateRepo.save(new VisitRollupState(ROLLUP_NAME)));
+        LocalDateTime now = LocalDateTime.now();
+
+        // events that committed after the rollup had passed their IDs
+        List<VisitRollupGap> gaps = gapRepo.findAll();
+        List<VisitEvent> events = new ArrayList<>();
+        if (!gaps.isEmpty()) {
+            events.addAll(eventRepo.findAllById(gaps.stream().map(VisitRollupGap::getEventId).toList()));
+            gapRepo.deleteAllByIdInBatch(events.stream().map(VisitEvent::getId).toList());
+            int expired = gapRepo.deleteSeenBefore(now.minusSeconds(gapTimeoutSeconds));
+            if (expired > 0) {
+                logger.info("Stopped waiting for {} visit event IDs, their inserts were rolled back", expired);
+            }
+        }
+        int late = events.size();
+
+        List<VisitEvent> fresh = eventRepo.findBatchAfter(state.getLastEventId(), PageRequest.of(0, batchSize));
+        List<VisitRollupGap> newGaps = new ArrayList<>();
+        int openGaps = gaps.size() - late;
+        long expectedId = state.getLastEventId() + 1;
+        for (VisitEvent event : fresh) {
+            for (long id = expectedId; id < event.getId(); id++) {
+                if (openGaps + newGaps.size() >= MAX_OPEN_GAPS) {
+                    logger.warn("Not waiting for visit event IDs {} to {}, too many are awaited already",
+                            id, event.getId() - 1);
+                    break;
+                }
+                newGaps.add(new VisitRollupGap(id, now));
+            }
+            expectedId = event.getId() + 1;
+        }
+        events.addAll(fresh);
+
+        if (events.isEmpty()) {
+            return new Progress(0, false);
+        }
+
+        Map<VisitBucketKey, Long> hourly = new HashMap<>();
+        Map<VisitBucketKey, Long> daily = new HashMap<>();
+        for (VisitEvent event : events) {
+            perLink.merge(event.getLinkId(), VisitDelta.single(event.getDateTime()), VisitDelta::merge);
+            hourly.merge(new VisitBucketKey(event.getLinkId(),
+                    event.getDateTime().truncatedTo(ChronoUnit.HOURS)), 1L, Long::sum);
+            daily.merge(new VisitBucketKey(event.getLinkId(),
+                    event.getDateTime().truncatedTo(ChronoUnit.DAYS)), 1L, Long::sum);
+        }
+
+        version.set(dataVersion.begin());
+        linkRepo.addVisitsById(perLink, version.get());
+        eventRepo.addToHourlyBuckets(hourly);
+        eventRepo.addToDailyBuckets(daily);
+        if (!fresh.isEmpty()) {
+            state.setLastEventId(fresh.get(fresh.size() - 1).getId());
+            stateRepo.save(state);
+        }
+        gapRepo.saveAll(newGaps);
+        logger.debug("Rolled up {} visit events ({} late) for {} links, {} new gaps", events.size(), late,
+                perLink.size(), newGaps.size());
+        return new Progress(events.size(), fresh.size() == batchSize);
+    }
+
+    private record Progress(int folded, boolean more) {}
+
+}
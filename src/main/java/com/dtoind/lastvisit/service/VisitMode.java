@@ -0,0 +1,24 @@
+package com.dtoind.lastvisit.service;
+
+/**
+ * The ways a visit to a link can be recorded, selected with the {@code lastvisit.visits.mode} property.
+ */
+public enum VisitMode {
+
+    /**
+     * Every visit is written to the database while the request is being handled.
+     */
+    DIRECT,
+
+    /**
+     * Visits are counted in memory by {@link VisitBuffer} and written to the database in batches.
+     */
+    BUFFERED,
+
+    /**
+     * Visits are appended to the visit event log by {@link VisitHistoryService} and rolled up
+     * into the link counters and the hourly and daily visit history in the background.
+     */
+    EVENT_LOG
+
+}
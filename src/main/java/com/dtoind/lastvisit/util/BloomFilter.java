@@ -0,0 +1,102 @@
+package com.dtoind.lastvisit.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter for strings.
+ *
+ * {@link #mightContain(String)} never returns {@code false} for a string that was added,
+ * so a negative answer means the string is definitely absent. Positive answers are wrong
+ * with roughly the false positive probability the filter was sized for.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+
+    /**
+     * Creates a Bloom filter sized for the given number of strings and false positive probability.
+     *
+     * @param expectedInsertions the number of strings the filter is expected to hold
+     * @param falsePositiveProbability the desired false positive probability, between 0 and 1
+     * @throws IllegalArgumentException if either argument is out of range
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("expectedInsertions must be positive");
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("falsePositiveProbability must be between 0 and 1");
+        }
+
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability)
+                / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.numBits = (long) words * 64;
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Adds a string to the filter.
+     *
+     * @param value the string to add
+     */
+    public void put(String value) {
+        long hash = hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long index = bitIndex(h1 + i * h2);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    /**
+     * Checks whether a string might have been added to the filter.
+     *
+     * @param value the string to check
+     * @return {@code false} if the string was definitely never added, {@code true} if it might have been
+     */
+    public boolean mightContain(String value) {
+        long hash = hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long index = bitIndex(h1 + i * h2);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long bitIndex(int combinedHash) {
+        return (combinedHash & 0x7fffffffL) % numBits;
+    }
+
+    // 64-bit FNV-1a over the UTF-16 code units, finished with a MurmurHash3 mix
+    private static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.dtoind.lastvisit.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.dtoind.lastvisit.model.ImportedLink;
+
+/**
+ * Reads links from the Netscape bookmark file format that browsers export bookmarks in.
+ *
+ * Each {@code <A HREF>} becomes a link named after its text, in the category named after the
+ * innermost {@code <H3>} folder that contains it. Bookmarks outside any folder get no category.
+ * The input is scanned tag by tag, so the file is never held in memory.
+ */
+public class BookmarkHtmlLinkReader implements LinkReader {
+
+    private static final Pattern HREF = Pattern.compile("(?i)\\bhref\\s*=\\s*\"([^\"]*)\"");
+    private static final Pattern ADD_DATE = Pattern.compile("(?i)\\badd_date\\s*=\\s*\"(\\d+)\"");
+
+    private final BufferedReader in;
+
+    // folder names of the enclosing <DL> lists, innermost first; "" for a list that is not a folder
+    private final Deque<String> folders = new ArrayDeque<>();
+    private String pendingFolder;
+
+    /**
+     * Creates a reader over the given bookmark file.
+     *
+     * @param reader the input
+     */
+    public BookmarkHtmlLinkReader(Reader reader) {
+        this.in = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+    }
+
+    @Override
+    public ImportedLink next() throws IOException {
+        while (readUntil('<') != null) {
+            String tag = readUntil('>');
+            if (tag == null) {
+                return null;
+            }
+
+            String name = tag.strip().toLowerCase(Locale.ROOT);
+            if (name.startsWith("h3")) {
+                pendingFolder = decode(readText());
+            } else if (name.equals("dl") || name.startsWith("dl ")) {
+                folders.push(pendingFolder != null ? pendingFolder : "");
+                pendingFolder = null;
+            } else if (name.equals("/dl")) {
+                folders.poll();
+            } else if (name.startsWith("a ")) {
+                ImportedLink link = link(tag, decode(readText()));
+                if (link != null) {
+                    return link;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private ImportedLink link(String tag, String text) {
+        Matcher href = HREF.matcher(tag);
+        if (!href.find()) {
+            return null;
+        }
+
+        LocalDateTime addedAt = null;
+        Matcher addDate = ADD_DATE.matcher(tag);
+        if (addDate.find()) {
+            addedAt = LocalDateTime.ofInstant(Instant.ofEpochSecond(Long.parseLong(addDate.group(1))),
+                    ZoneId.systemDefault());
+        }
+
+        String folder = folders.peek();
+        return new ImportedLink(folder == null || folder.isEmpty() ? null : folder,
+                text.isEmpty() ? null : text, decode(href.group(1)), addedAt);
+    }
+
+    // reads the text up to the next tag and skips that (closing) tag
+    private String readText() throws IOException {
+        String text = readUntil('<');
+        readUntil('>');
+        return text == null ? "" : text.strip();
+    }
+
+    // reads up to and consumes the delimiter; returns null if the input ends first
+    private String readUntil(char delimiter) throws IOException {
+        StringBuilder text = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == delimiter) {
+                return text.toString();
+            }
+            text.append((char) c);
+        }
+        return null;
+    }
+
+    private static String decode(String html) {
+        return html.replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&quot;", "\"")
+                .replace("&#39;", "'")
+                .replace("&#x27;", "'")
+                .replace("&amp;", "&");
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.dtoind.lastvisit.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.dtoind.lastvisit.model.ImportedLink;
+
+/**
+ * Reads links from RFC 4180 CSV. The first record must be a header naming the columns:
+ * "url" is required, "link" (or "name" or "title"), "category" (or "folder") and "dateTime"
+ * (ISO-8601, as written by {@code /links/export}) are optional, and any other columns are ignored.
+ */
+public class CsvLinkReader implements LinkReader {
+
+    private final BufferedReader in;
+    private final int urlColumn;
+    private final int nameColumn;
+    private final int categoryColumn;
+    private final int dateTimeColumn;
+
+    /**
+     * Creates a reader over the given CSV input and reads its header.
+     *
+     * @param reader the input
+     * @throws IOException if the input cannot be read
+     * @throws IllegalArgumentException if the header has no url column
+     */
+    public CsvLinkReader(Reader reader) throws IOException {
+        this.in = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+
+        List<String> header = readRecord();
+        if (header == null) {
+            header = List.of();
+        }
+        this.urlColumn = column(header, "url");
+        this.nameColumn = column(header, "link", "name", "title");
+        this.categoryColumn = column(header, "category", "folder");
+        this.dateTimeColumn = column(header, "datetime");
+        if (urlColumn < 0) {
+            throw new IllegalArgumentException("CSV header must contain a url column");
+        }
+    }
+
+    @Override
+    public ImportedLink next() throws IOException {
+        List<String> record;
+        do {
+            record = readRecord();
+            if (record == null) {
+                return null;
+            }
+        } while (record.size() == 1 && record.get(0).isBlank());
+
+        return new ImportedLink(field(record, categoryColumn), field(record, nameColumn),
+                field(record, urlColumn), ImportedLink.parseDateTime(field(record, dateTimeColumn)));
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // reads one record, which may span lines inside quoted fields; returns null at the end of the input
+    private List<String> readRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean readAny = false;
+        int c;
+
+        while ((c = in.read()) != -1) {
+            readAny = true;
+            if (quoted) {
+                if (c != '"') {
+                    field.append((char) c);
+                } else {
+                    in.mark(1);
+                    int next = in.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) {
+                            in.reset();
+                        }
+                    }
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+
+        if (!readAny) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static int column(List<String> header, String... names) {
+        for (String name : names) {
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).strip().toLowerCase(Locale.ROOT).equals(name)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String field(List<String> record, int column) {
+        if (column < 0 || column >= record.size()) {
+            return null;
+        }
+        String value = record.get(column).strip();
+        return value.isEmpty() ? null : value;
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.dtoind.lastvisit.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * This class provides utility methods for encoding and decoding the opaque cursors
+ * used for keyset pagination. A cursor identifies the last row of a page.
+ */
+public class Cursor {
+
+    private static final String PREFIX = "id:";
+
+    private Cursor() {
+    }
+
+    /**
+     * Encodes the ID of the last row of a page into an opaque cursor.
+     *
+     * @param lastId the ID of the last row of the page
+     * @return the cursor
+     */
+    public static String encode(int lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encode(int)}.
+     *
+     * @param cursor the cursor, or {@code null} to start from the first row
+     * @return the ID of the last row already returned, or 0 if the cursor is {@code null} or blank
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public static int decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return Integer.parseInt(decoded.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException too
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.dtoind.lastvisit.util;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * One page of a keyset-paginated result.
+ *
+ * @param items the rows of this page, in ID order
+ * @param next  the cursor of the next page, or {@code null} if this is the last page
+ * @param <T>   the type of the rows
+ */
+public record CursorPage<T>(List<T> items, String next) {
+
+    /**
+     * The page size used when a request does not specify one.
+     */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /**
+     * The largest page size a request may ask for.
+     */
+    public static final int MAX_LIMIT = 1000;
+
+    /**
+     * Validates a requested page size.
+     *
+     * @param limit the requested page size, or {@code null} to use the default
+     * @return the page size to use
+     * @throws IllegalArgumentException if the page size is not between 1 and {@link #MAX_LIMIT}
+     */
+    public static int checkLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    /**
+     * Builds a page from rows fetched with one row more than the page size.
+     * The extra row is only used to tell whether there is a next page and is not returned.
+     *
+     * @param rows the rows fetched, at most {@code limit + 1}
+     * @param limit the page size
+     * @param idOf the function returning the ID of a row
+     * @param <T> the type of the rows
+     * @return the page
+     */
+    public static <T> CursorPage<T> of(List<? extends T> rows, int limit, ToIntFunction<? super T> idOf) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(List.copyOf(rows), null);
+        }
+
+        List<T> items = List.copyOf(rows.subList(0, limit));
+        return new CursorPage<>(items, Cursor.encode(idOf.applyAsInt(items.get(limit - 1))));
+    }
+
+}
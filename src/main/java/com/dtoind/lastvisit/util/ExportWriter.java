@@ -0,0 +1,138 @@
+package com.dtoind.lastvisit.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+
+/**
+ * Writes rows of an export one at a time, as newline-delimited JSON or as CSV.
+ *
+ * Every row has the columns the writer was created with. Numbers are written as numbers,
+ * {@code java.time} values in ISO-8601 and {@code null} as JSON null or an empty CSV field.
+ * Closing the writer flushes it but leaves the underlying stream open.
+ */
+public abstract class ExportWriter implements Closeable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    protected final String[] columns;
+
+    private ExportWriter(String[] columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Creates a writer of newline-delimited JSON, one object per row keyed by column name.
+     *
+     * @param out the stream to write to
+     * @param columns the names of the columns
+     * @return the writer
+     * @throws IOException if the stream cannot be written to
+     */
+    public static ExportWriter ndjson(OutputStream out, String... columns) throws IOException {
+        JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+
+        return new ExportWriter(columns) {
+            private boolean empty = true;
+
+            @Override
+            public void writeRow(Object... values) throws IOException {
+                empty = false;
+                json.writeStartObject();
+                for (int i = 0; i < columns.length; i++) {
+                    json.writeFieldName(columns[i]);
+                    Object value = values[i];
+                    if (value == null) {
+                        json.writeNull();
+                    } else if (value instanceof Integer number) {
+                        json.writeNumber(number);
+                    } else if (value instanceof Long number) {
+                        json.writeNumber(number);
+                    } else {
+                        json.writeString(value.toString());
+                    }
+                }
+                json.writeEndObject();
+            }
+
+            @Override
+            public void close() throws IOException {
+                // rows are separated by newlines; end the last one with a newline too
+                if (!empty) {
+                    json.writeRaw('\n');
+                }
+                json.close();
+            }
+        };
+    }
+
+    /**
+     * Creates a writer of RFC 4180 CSV, starting with a header row of the column names.
+     *
+     * @param out the stream to write to
+     * @param columns the names of the columns
+     * @return the writer
+     * @throws IOException if the stream cannot be written to
+     */
+    public static ExportWriter csv(OutputStream out, String... columns) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        ExportWriter csv = new ExportWriter(columns) {
+            @Override
+            public void writeRow(Object... values) throws IOException {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    if (values[i] != null) {
+                        writeCsvField(writer, values[i].toString());
+                    }
+                }
+                writer.write("\r\n");
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.flush();
+            }
+        };
+        csv.writeRow((Object[]) columns);
+        return csv;
+    }
+
+    /**
+     * Writes one row.
+     *
+     * @param values the values of the row, in column order
+     * @throws IOException if the stream cannot be written to
+     */
+    public abstract void writeRow(Object... values) throws IOException;
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+}
@@ -1,25 +1,52 @@
 package com.dtoind.lastvisit.util;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializerProvider;
 
+import com.dtoind.lastvisit.model.BaseModel;
 import com.dtoind.lastvisit.model.Link;
+import com.dtoind.lastvisit.model.LinkView;
 
 /**
- * This class provides utility methods for converting Java objects to JSON strings.
+ * This class provides utility methods for converting Java objects to JSON, and request bodies from it.
+ *
+ * The writers are built once and shared, as they are immutable and thread-safe, and write compact
+ * JSON. Links and link views carry the date and time of their most recent visit as formatted text
+ * under "dateTime", or, with {@link DateStyle#EPOCH_MILLIS}, as milliseconds since the epoch under
+ * "dateTimeMillis", which costs no formatting and lets the client format it as it likes.
  */
 public class JSONify {
 
-    private static Logger logger = LogManager.getLogger(JSONify.class);
-    private static ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * How the date and time of links and link views is written.
+     */
+    public enum DateStyle {
+        /** Formatted text, as displayed by the page, under "dateTime". */
+        FORMATTED,
+        /** Milliseconds since the epoch, in the server's time zone, under "dateTimeMillis". */
+        EPOCH_MILLIS
+    }
+
+    private static final Logger logger = LogManager.getLogger(JSONify.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
 
     static {
         objectMapper.registerModule(new JavaTimeModule());
@@ -29,21 +56,61 @@ public class JSONify {
             @Override
             public void serialize(Link link, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
                     throws IOException {
-                jsonGenerator.writeStartObject();
-                jsonGenerator.writeNumberField("id", link.getId());
-                jsonGenerator.writeObjectField("category", link.getCategory().getName());
-                jsonGenerator.writeStringField("name", link.getName());
-                jsonGenerator.writeStringField("url", link.getUrl());
-                jsonGenerator.writeObjectField("dateTime", link.getFormattedDateTime());
-                jsonGenerator.writeNumberField("numVisits", link.getNumVisits());
-                jsonGenerator.writeEndObject();
+                writeLink(jsonGenerator, serializerProvider, link.getId(), link.getCategory().getName(),
+                        link.getName(), link.getUrl(), link.getDateTime(), link.getNumVisits());
+            }
+        });
+        module.addSerializer(LinkView.class, new JsonSerializer<LinkView>() {
+            @Override
+            public void serialize(LinkView link, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
+                    throws IOException {
+                writeLink(jsonGenerator, serializerProvider, link.id(), link.category(), link.name(),
+                        link.url(), link.dateTime(), link.numVisits());
             }
         });
         objectMapper.registerModule(module);
+        // streamed responses decide themselves when to flush
+        objectMapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        // dates as ISO-8601 text, as Spring MVC writes them
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    private static final int RAW_BUFFER_SIZE = 8192;
+
+    private static final ObjectWriter writer = objectMapper.writer();
+    private static final ObjectWriter epochMillisWriter = writer.withAttribute(DateStyle.class, DateStyle.EPOCH_MILLIS);
+    private static final ObjectReader reader = objectMapper.reader()
+            .without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    // links and link views share one JSON shape
+    private static void writeLink(JsonGenerator jsonGenerator, SerializerProvider serializerProvider, int id,
+                                  String category, String name, String url, LocalDateTime dateTime, int numVisits)
+            throws IOException {
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeNumberField("id", id);
+        jsonGenerator.writeStringField("category", category);
+        jsonGenerator.writeStringField("name", name);
+        jsonGenerator.writeStringField("url", url);
+        if (serializerProvider.getAttribute(DateStyle.class) == DateStyle.EPOCH_MILLIS) {
+            if (dateTime == null) {
+                jsonGenerator.writeNullField("dateTimeMillis");
+            } else {
+                jsonGenerator.writeNumberField("dateTimeMillis",
+                        dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+        } else if (dateTime == null) {
+            jsonGenerator.writeNullField("dateTime");
+        } else {
+            jsonGenerator.writeStringField("dateTime", BaseModel.formatDateTime(dateTime,
+                    BaseModel.DEFAULT_DATE_TIME_FORMAT));
+        }
+        jsonGenerator.writeNumberField("numVisits", numVisits);
+        jsonGenerator.writeEndObject();
     }
 
     /**
-     * Converts the given object to its JSON representation.
+     * Converts the given object to compact JSON on a single line, which can also be used where
+     * a line break ends the value, such as in a server-sent event.
      *
      * @param obj the object to be converted
      * @return the JSON string representation of the object
@@ -51,13 +118,104 @@ public class JSONify {
      */
     public static String toJson(Object obj) {
         try {
-            return objectMapper
-                    .writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(obj);
+            return writer.writeValueAsString(obj);
+        } catch (IOException e) {
+            logger.error("Failed to convert object to JSON", e);
+            throw new RuntimeException("Failed to convert object to JSON", e);
+        }
+    }
+
+    /**
+     * Reads a value of the given type from the JSON in the input stream, which is not closed.
+     *
+     * @param in the stream to read the JSON from
+     * @param type the type of the value
+     * @param <T> the type of the value
+     * @return the value
+     * @throws IOException if the stream cannot be read or does not hold JSON of the given type
+     */
+    public static <T> T fromJson(InputStream in, Class<T> type) throws IOException {
+        return reader.forType(type).readValue(in);
+    }
+
+    /**
+     * Converts the given object to compact JSON encoded as UTF-8, ready to be sent as a response body
+     * without being encoded again.
+     *
+     * @param obj the object to be converted
+     * @param dateStyle how the dates of links are written
+     * @return the UTF-8 bytes of the JSON representation of the object
+     * @throws RuntimeException if an error occurs during the conversion
+     */
+    public static byte[] toJsonBytes(Object obj, DateStyle dateStyle) {
+        try {
+            return writer(dateStyle).writeValueAsBytes(obj);
         } catch (IOException e) {
             logger.error("Failed to convert object to JSON", e);
             throw new RuntimeException("Failed to convert object to JSON", e);
         }
     }
 
+    /**
+     * Writes the given objects to the output stream as one compact JSON array, one object at a time.
+     * The output stream is flushed but not closed.
+     *
+     * @param items the objects to be written as the elements of the array
+     * @param out the stream to write the JSON to
+     * @param dateStyle how the dates of links are written
+     * @throws IOException if writing to the stream fails
+     */
+    public static void writeJsonArray(Iterator<?> items, OutputStream out, DateStyle dateStyle) throws IOException {
+        ObjectWriter itemWriter = writer(dateStyle);
+        try (JsonGenerator jsonGenerator = createGenerator(out)) {
+            jsonGenerator.writeStartArray();
+            while (items.hasNext()) {
+                itemWriter.writeValue(jsonGenerator, items.next());
+            }
+            jsonGenerator.writeEndArray();
+        }
+    }
+
+    /**
+     * Writes the given already encoded JSON values to the output stream as one JSON array, copying
+     * their bytes as they are. The output stream is flushed but not closed.
+     *
+     * @param values the UTF-8 JSON of the elements of the array
+     * @param out the stream to write the JSON to
+     * @throws IOException if writing to the stream fails
+     */
+    public static void writeRawJsonArray(Iterator<byte[]> values, OutputStream out) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out, RAW_BUFFER_SIZE);
+        buffered.write('[');
+        boolean first = true;
+        while (values.hasNext()) {
+            if (!first) {
+                buffered.write(',');
+            }
+            buffered.write(values.next());
+            first = false;
+        }
+        buffered.write(']');
+        buffered.flush();
+    }
+
+    /**
+     * Creates a generator that writes compact JSON to the output stream, for responses built
+     * one value at a time. Links and link views are written in the same shape as by {@link #toJson(Object)}.
+     * Closing the generator flushes the output stream but does not close it.
+     *
+     * @param out the stream to write the JSON to
+     * @return the generator
+     * @throws IOException if the generator cannot be created
+     */
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        JsonGenerator jsonGenerator = writer.createGenerator(out);
+        jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return jsonGenerator;
+    }
+
+    private static ObjectWriter writer(DateStyle dateStyle) {
+        return dateStyle == DateStyle.EPOCH_MILLIS ? epochMillisWriter : writer;
+    }
+
 }
@@ -0,0 +1,23 @@
+package com.dtoind.lastvisit.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.dtoind.lastvisit.model.ImportedLink;
+
+/**
+ * Reads links one at a time from an import file, so that files of any size can be imported
+ * without holding them in memory.
+ */
+public interface LinkReader extends Closeable {
+
+    /**
+     * Reads the next link.
+     *
+     * @return the next link, or {@code null} at the end of the input
+     * @throws IOException if the input cannot be read
+     * @throws IllegalArgumentException if the input is not in the expected format
+     */
+    ImportedLink next() throws IOException;
+
+}
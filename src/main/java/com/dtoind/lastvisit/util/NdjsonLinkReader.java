@@ -0,0 +1,59 @@
+package com.dtoind.lastvisit.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import com.dtoind.lastvisit.model.ImportedLink;
+
+/**
+ * Reads links from newline-delimited JSON, one object per line with the same keys as
+ * {@code /create-link-and-cat}: "url", "link" (or "name") and "category". An optional "dateTime"
+ * in ISO-8601, as written by {@code /links/export}, becomes the link's date and time.
+ */
+public class NdjsonLinkReader implements LinkReader {
+
+    private static final ObjectReader READER = new ObjectMapper().readerFor(JsonNode.class);
+
+    private final MappingIterator<JsonNode> values;
+
+    /**
+     * Creates a reader over the given NDJSON input.
+     *
+     * @param reader the input
+     * @throws IOException if the input cannot be read
+     */
+    public NdjsonLinkReader(Reader reader) throws IOException {
+        this.values = READER.readValues(reader);
+    }
+
+    @Override
+    public ImportedLink next() throws IOException {
+        if (!values.hasNextValue()) {
+            return null;
+        }
+
+        JsonNode node = values.nextValue();
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Expected a JSON object per line but found: " + node.getNodeType());
+        }
+        String name = text(node, "link");
+        return new ImportedLink(text(node, "category"), name != null ? name : text(node, "name"),
+                text(node, "url"), ImportedLink.parseDateTime(text(node, "dateTime")));
+    }
+
+    @Override
+    public void close() throws IOException {
+        values.close();
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.dtoind.lastvisit.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one load per key at a time: callers asking for a key that is already being loaded
+ * wait for that load and share its result, or its exception, instead of starting their own.
+ * Nothing is kept once a load has finished, so the next caller loads again; caching the result
+ * is left to the caller.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the loaded values
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the value of the given key, or waits for the load already running for it.
+     *
+     * @param key the key to load
+     * @param loader loads the value; runs on the calling thread if no load of the key is running
+     * @return the loaded value
+     * @throws RuntimeException if the load, whichever caller ran it, threw
+     */
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return join(running);
+        }
+
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.dtoind.lastvisit.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * This class provides utility methods for normalizing link URLs and computing the fixed-width hash
+ * that links are indexed and looked up by.
+ */
+public class UrlHash {
+
+    /**
+     * The length of a URL hash in bytes.
+     */
+    public static final int LENGTH = 32;
+
+    private UrlHash() {
+    }
+
+    /**
+     * Normalizes a URL: surrounding whitespace is removed and the scheme and host,
+     * which are case-insensitive, are lower-cased. Everything else is kept as given.
+     *
+     * @param url the URL to normalize
+     * @return the normalized URL
+     */
+    public static String normalize(String url) {
+        String trimmed = url.strip();
+        int schemeEnd = trimmed.indexOf("://");
+        if (schemeEnd < 0) {
+            return trimmed;
+        }
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = trimmed.length();
+        for (int i = authorityStart; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                authorityEnd = i;
+                break;
+            }
+        }
+
+        // user info, if any, is case-sensitive
+        int hostStart = trimmed.lastIndexOf('@', authorityEnd - 1) + 1;
+        if (hostStart < authorityStart) {
+            hostStart = authorityStart;
+        }
+
+        return trimmed.substring(0, authorityStart).toLowerCase(Locale.ROOT)
+                + trimmed.substring(authorityStart, hostStart)
+                + trimmed.substring(hostStart, authorityEnd).toLowerCase(Locale.ROOT)
+                + trimmed.substring(authorityEnd);
+    }
+
+    /**
+     * Computes the SHA-256 hash of the normalized form of a URL.
+     *
+     * @param url the URL to hash
+     * @return the {@value #LENGTH}-byte hash
+     */
+    public static byte[] of(String url) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(normalize(url).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+}
@@ -1,17 +1,3 @@
-export async function fetchAllCats() {
-    const catResponse = await fetch("/cats")
-    if (!catResponse.ok) {
-        throw new Error(`Failed to fetch cats: ${catResponse.status}`)
-    }
-
-    try {
-        return await catResponse.json()
-    } catch (error) {
-        console.error("Failed to parse categories response as JSON:", error)
-        throw new Error("Something went wrong on the server.")
-    }
-}
-
 export async function deleteCat(catHash) {    
     const catElem = document.getElementById(catHash)
     const catName = catElem.childNodes[0].textContent.trim()
@@ -39,9 +25,34 @@ export async function deleteCat(catHash) {
         if (data.success) {
             return true
         }
+
+        // large categories are deleted in the background: { jobId, status }
+        if (data.status) {
+            return await waitForDeletion(data.status)
+        }
     } catch (error) {
         console.error(error)
     }
     return false
 }
 
+async function waitForDeletion(statusUrl) {
+    while (true) {
+        await new Promise(resolve => setTimeout(resolve, 1000))
+
+        const response = await fetch(statusUrl)
+        if (!response.ok) {
+            throw new Error(`HTTP error! status: ${response.status}`)
+        }
+
+        const job = await response.json()
+        if (job.state === "DONE") {
+            return true
+        }
+        if (job.state === "FAILED") {
+            console.error(`Deleting category ${job.category} failed: ${job.error}`)
+            return false
+        }
+    }
+}
+
@@ -0,0 +1,14 @@
+export async function fetchDashboard() {
+    // revalidates the cached copy with If-None-Match, so an unchanged dashboard costs a 304
+    const dashboardResponse = await fetch("/dashboard", { cache: "no-cache" })
+    if (!dashboardResponse.ok) {
+        throw new Error(`Failed to fetch dashboard: ${dashboardResponse.status}`)
+    }
+
+    try {
+        return await dashboardResponse.json()
+    } catch (error) {
+        console.error("Failed to parse dashboard response as JSON:", error)
+        throw new Error("Something went wrong on the server.")
+    }
+}
@@ -1,17 +1,3 @@
-export async function fetchAllLinks() {
-    const linkResponse = await fetch("/links")
-    if (!linkResponse.ok) {
-        throw new Error(`Failed to fetch links: ${linkResponse.status}`)
-    }
-
-    try {
-        return await linkResponse.json()
-    } catch (error) {
-        console.error("Failed to parse response as JSON:", error)
-        throw new Error("Something went wrong on the server.")
-    }
-}
-
 export async function deleteLink(id) {
     try {
         const response = await fetch(`/delete-link?id=${id}`, {
@@ -37,27 +23,74 @@ export async function deleteLink(id) {
     return false
 }
 
-export async function incrementVisits(linkName, url) {
-    const requestData = {
-        url: url
-    }
+// Visits are buffered and sent to /visits/batch in batches. A batch keeps its ID until it has been
+// delivered, so that sending it again after a failed request cannot count its visits twice.
+const MAX_VISITS_PER_BATCH = 200
+let pendingVisits = []
+let unsentBatches = []
 
-    try {
-        const response = await fetch("/update-link", {
-            method: "POST",
-            headers: {
-                "Content-Type": "application/json"
-            },
-            body: JSON.stringify(requestData)
-        })
+export function queueVisit(id, url) {
+    pendingVisits.push({id: id, url: url, timestamp: Date.now()})
+}
 
-        if (!response.ok) {
-            throw new Error("Failed to update link")
-        } else {
-            return true
+export function hasUnsentVisits() {
+    return pendingVisits.length > 0 || unsentBatches.length > 0
+}
+
+// sends the buffered visits; returns true if any batch was applied
+export async function sendVisits() {
+    closeBatches()
+
+    let applied = false
+    for (const batch of unsentBatches) {
+        try {
+            const response = await fetch("/visits/batch", {
+                method: "POST",
+                headers: {
+                    "Content-Type": "application/json"
+                },
+                body: JSON.stringify(batch),
+                keepalive: true
+            })
+
+            if (response.status === 400) {
+                // sending it again would not help
+                console.error("Visit batch rejected:", await response.text())
+            } else if (!response.ok) {
+                throw new Error("Failed to send visits")
+            } else {
+                applied = true
+            }
+            unsentBatches = unsentBatches.filter(unsent => unsent !== batch)
+        } catch (error) {
+            console.error(error)
+            break
         }
-    } catch (error) {
-        console.error(error)
     }
-    return false
-}
\ No newline at end of file
+    return applied
+}
+
+// hands the buffered visits to the browser, which delivers them even while the page is being closed
+export function beaconVisits() {
+    if (!navigator.sendBeacon) {
+        sendVisits()
+        return
+    }
+
+    closeBatches()
+    unsentBatches = unsentBatches.filter(batch => !navigator.sendBeacon("/visits/batch", JSON.stringify(batch)))
+}
+
+function closeBatches() {
+    for (let i = 0; i < pendingVisits.length; i += MAX_VISITS_PER_BATCH) {
+        unsentBatches.push({batchId: newBatchId(), visits: pendingVisits.slice(i, i + MAX_VISITS_PER_BATCH)})
+    }
+    pendingVisits = []
+}
+
+function newBatchId() {
+    if (window.crypto && crypto.randomUUID) {
+        return crypto.randomUUID()
+    }
+    return Date.now().toString(36) + Math.random().toString(36).slice(2)
+}
@@ -0,0 +1,13 @@
+export async function fetchChanges(since) {
+    const syncResponse = await fetch(`/sync?since=${since}`)
+    if (!syncResponse.ok) {
+        throw new Error(`Failed to sync: ${syncResponse.status}`)
+    }
+
+    try {
+        return await syncResponse.json()
+    } catch (error) {
+        console.error("Failed to parse sync response as JSON:", error)
+        throw new Error("Something went wrong on the server.")
+    }
+}
@@ -1,6 +1,8 @@
 import * as Categories from "./Categories.js"
+import * as Dashboard from "./Dashboard.js"
 import * as Utility from "./Utility.js"
 import * as Links from "./Links.js"
+import * as Sync from "./Sync.js"
 
 onload()
 
@@ -8,9 +10,134 @@ onload()
 
 // ******** initialization ********
 
+let changeFeed = null
+// the version returned by the last sync, and the names of the categories it returned by ID,
+// needed to remove a category the server only reports by ID
+let syncVersion = null
+let catNames = new Map()
+let syncing = Promise.resolve()
+
 function onload() {
     fetchAndDisplayCatsLinks()
     displayEnterCat()
+    subscribeToChanges()
+    document.addEventListener("visibilitychange", () => {
+        if (document.visibilityState === "hidden") {
+            Links.beaconVisits()
+        }
+    })
+    window.addEventListener("pagehide", () => Links.beaconVisits())
+}
+
+
+
+// ********* change feed *********
+
+// Applies the changes pushed by /events to the page, so that it does not have to be read again
+// after every change made here or in another tab. The browser reconnects on its own after an
+// error; whatever was missed in between is caught up with a delta sync.
+function subscribeToChanges() {
+    if (!window.EventSource) {
+        return
+    }
+
+    changeFeed = new EventSource("/events")
+    let connectedBefore = false
+
+    changeFeed.addEventListener("open", () => {
+        if (connectedBefore) {
+            syncChanges()
+        }
+        connectedBefore = true
+    })
+    changeFeed.addEventListener("link-created", event => placeLink(JSON.parse(event.data).link))
+    changeFeed.addEventListener("link-visited", event => placeLink(JSON.parse(event.data).link))
+    changeFeed.addEventListener("link-deleted", event => removeElement(JSON.parse(event.data).id))
+    changeFeed.addEventListener("category-created", event => placeCat(JSON.parse(event.data).category))
+    changeFeed.addEventListener("category-deleted", event => removeCatElement(JSON.parse(event.data).category))
+    changeFeed.addEventListener("reload", () => syncChanges())
+}
+
+// syncs only if the change feed is not connected to report the change
+async function refreshUnlessLive() {
+    if (changeFeed === null || changeFeed.readyState !== EventSource.OPEN) {
+        await syncChanges()
+    }
+}
+
+
+
+// ********* delta sync *********
+
+// Reads what changed since the last sync from /sync and applies it to the page, so that
+// catching up costs as much as what changed rather than as much as everything.
+// Syncs run one after the other, each starting from the version the previous one returned.
+function syncChanges() {
+    syncing = syncing.then(applyChanges)
+    return syncing
+}
+
+async function applyChanges() {
+    if (syncVersion === null) {
+        return fetchAndDisplayCatsLinks()
+    }
+
+    try {
+        const changes = await Sync.fetchChanges(syncVersion)
+        if (changes.deleted.categories.some(id => !catNames.has(id))) {
+            // a category this page never knew by ID; start over
+            return fetchAndDisplayCatsLinks()
+        }
+
+        changes.categories.forEach(cat => {
+            catNames.set(cat.id, cat.name)
+            placeCat(cat.name)
+        })
+        changes.links.forEach(link => placeLink(link))
+        changes.deleted.links.forEach(id => removeElement(id))
+        changes.deleted.categories.forEach(id => {
+            removeCatElement(catNames.get(id))
+            catNames.delete(id)
+        })
+        syncVersion = changes.version
+    } catch (error) {
+        tempDisplayBelowTitle(error)
+    }
+}
+
+
+
+// ********* visits *********
+
+// Clicks are counted in batches: a visit is queued, and the queue is sent a few seconds after the
+// first visit in it, or handed to the browser as soon as the page is hidden or closed.
+const VISIT_FLUSH_DELAY_MS = 3000
+let visitFlush = null
+
+function recordVisit(linkId, url) {
+    Links.queueVisit(linkId, url)
+    scheduleVisitFlush()
+}
+
+function scheduleVisitFlush() {
+    if (visitFlush === null) {
+        visitFlush = setTimeout(flushVisits, VISIT_FLUSH_DELAY_MS)
+    }
+}
+
+async function flushVisits() {
+    visitFlush = null
+    try {
+        if (await Links.sendVisits()) {
+            await refreshUnlessLive()
+        }
+    } catch (error) {
+        console.error("Error in flushVisits:", error)
+    }
+    if (Links.hasUnsentVisits()) {
+        // failed batches, and visits queued while sending, go with the next flush
+        scheduleVisitFlush()
+    }
 }
 
 
@@ -48,7 +175,7 @@ async function subCreateLinkAndCat() {
             throw new Error(errorMessage)
         }
         displayEnterCat()
-        await fetchAndDisplayCatsLinks()
+        await refreshUnlessLive()
     } catch (error) {
         console.error("Error in subCreateLinkAndCat:", error)
         tempDisplayBelowTitle(error)
@@ -57,10 +184,10 @@ async function subCreateLinkAndCat() {
 
 async function fetchAndDisplayCatsLinks() {
     try {
-        const catResponse = await Categories.fetchAllCats()
-        const linkResponse = await Links.fetchAllLinks()
-        displayCat(catResponse)
-        displayLink(linkResponse)
+        const dashboard = await Dashboard.fetchDashboard()
+        catNames = new Map(dashboard.categories.map(cat => [cat.id, cat.name]))
+        displayDashboard(dashboard.categories)
+        syncVersion = dashboard.version
     } catch (error) {
         tempDisplayBelowTitle(error)
     }
@@ -70,34 +197,57 @@ async function fetchAndDisplayCatsLinks() {
 
 // ****** Category functions ******
 
-function displayCat(catData) {
+// shows the categories with their links, already grouped and ordered by the server
+function displayDashboard(categories) {
     const catListDiv = document.getElementById("cat-list")
 
     clearInnerHTML(catListDiv)
     const fragment = new DocumentFragment()
 
-    Object.values(catData).forEach(cat => {
-        const catName = cat.name
+    categories.forEach(cat => {
+        const categoryDiv = appendCat(fragment, cat.name)
+        categoryDiv?.append(...cat.links.map(link => createLinkItem(link)))
+    })
+    catListDiv.append(fragment)
+}
+
+// adds the category to the page, unless it is already there
+function placeCat(catName) {
+    appendCat(document.getElementById("cat-list"), catName)
+}
 
-        const catHash = Utility.hash(catName)
-        let categoryDiv = document.getElementById(catHash)
+// returns the new div of the category, or nothing if the category is already shown
+function appendCat(parent, catName) {
+    const catHash = Utility.hash(catName)
 
-        // Check if a div for the category already exists
-        if (!categoryDiv) {
-            const br = document.createElement("br")
-            fragment.append(br)
+    // Check if a div for the category already exists
+    if (document.getElementById(catHash) || parent.querySelector(`[id="${catHash}"]`)) {
+        return
+    }
 
-            categoryDiv = document.createElement("div")
-            categoryDiv.id = catHash
-            categoryDiv.textContent = `${catName} `
+    const br = document.createElement("br")
+    parent.append(br)
 
-            const deleteSpan = createSpan(`elm${catHash}`, "minusSign", "Click to delete",
-                "[-]", () => confirmDeleteCat(catHash))
-            categoryDiv.append(deleteSpan)
-            fragment.append(categoryDiv)
+    const categoryDiv = document.createElement("div")
+    categoryDiv.id = catHash
+    categoryDiv.textContent = `${catName} `
+
+    const deleteSpan = createSpan(`elm${catHash}`, "minusSign", "Click to delete",
+        "[-]", () => confirmDeleteCat(catHash))
+    categoryDiv.append(deleteSpan)
+    parent.append(categoryDiv)
+    return categoryDiv
+}
+
+// removes the category, its links and the line break before it
+function removeCatElement(catName) {
+    const categoryDiv = document.getElementById(Utility.hash(catName))
+    if (categoryDiv) {
+        if (categoryDiv.previousSibling?.nodeName === "BR") {
+            categoryDiv.previousSibling.remove()
         }
-    })
-    catListDiv.append(fragment)
+        categoryDiv.remove()
+    }
 }
 
 function displayEnterCat() {
@@ -182,7 +332,7 @@ async function removeCat(catId) {
     try {
         const result = await Categories.deleteCat(catId)
         if (result === true) {
-            await fetchAndDisplayCatsLinks()
+            await refreshUnlessLive()
         } else {
             console.error("Categories.deleteCat() did not return true")
         }
@@ -195,46 +345,41 @@ async function removeCat(catId) {
 
 // ********* link functions **********
 
-function displayLink(linkData) {
-    linkData.forEach(link => {
-        const linkObj = JSON.parse(link)
-        const {category: cat, name: linkName, url, numVisits, dateTime: visitTime, id: linkId} = linkObj
+// replaces the link where it is shown, or adds it to its category
+function placeLink(link) {
+    if (link.category === null) {
+        return
+    }
 
-        if (cat !== null) {
-            const catHash = Utility.hash(cat)
-            const catHashDiv = document.getElementById(catHash)
+    const listItem = createLinkItem(link)
+    const existing = document.getElementById(link.id)
+    if (existing) {
+        existing.replaceWith(listItem)
+    } else {
+        placeCat(link.category)
+        document.getElementById(Utility.hash(link.category)).append(listItem)
+    }
+}
 
-            const listItem = document.createElement("li")
-            listItem.id = linkId
-            listItem.className = "list"
-            listItem.title = url
+function createLinkItem(link) {
+    const {name: linkName, url, numVisits, dateTime: visitTime, id: linkId} = link
 
-            const linkElement = document.createElement("a")
-            linkElement.href = url
-            linkElement.textContent = linkName
-            linkElement.target = "_blank"
-            linkElement.addEventListener("click", () => updateVisits(linkName, url))
+    const listItem = document.createElement("li")
+    listItem.id = linkId
+    listItem.className = "list"
+    listItem.title = url
 
-            const spanElement = createSpan(`elm${linkId}`, "minusSign", "Click to delete",
-                "[-]", () => confirmDeleteLink(linkId))
+    const linkElement = document.createElement("a")
+    linkElement.href = url
+    linkElement.textContent = linkName
+    linkElement.target = "_blank"
+    linkElement.addEventListener("click", () => recordVisit(linkId, url))
 
-            listItem.append(linkElement, ` - ${numVisits} - ${visitTime} `, spanElement)
-            catHashDiv.append(listItem)
-        }
-    })
-}
+    const spanElement = createSpan(`elm${linkId}`, "minusSign", "Click to delete",
+        "[-]", () => confirmDeleteLink(linkId))
 
-async function updateVisits(linkName, url) {
-    try {
-        const result = await Links.incrementVisits(linkName, url)
-        if (result === true) {
-            await fetchAndDisplayCatsLinks()
-        } else {
-            console.error("updateVisits returned false")
-        }
-    } catch (error) {
-        console.error("Error in updateVisits:", error)
-    }
+    listItem.append(linkElement, ` - ${numVisits} - ${visitTime} `, spanElement)
+    return listItem
 }
 
 function confirmDeleteLink(id) {
@@ -273,7 +418,7 @@ async function removeLink(linkId) {
     try {
         const result = await Links.deleteLink(linkId)
         if (result === true) {
-            await fetchAndDisplayCatsLinks()
+            await refreshUnlessLive()
         } else {
             console.error("removeLink did not return true")
         }
@@ -326,6 +471,10 @@ function createSpan(id, className, title, text, eventListener) {
     return span
 }
 
+function removeElement(id) {
+    document.getElementById(id)?.remove()
+}
+
 function clearInnerHTML(element) {
     while (element.firstChild) {
         element.removeChild(element.firstChild)
@@ -0,0 +1,85 @@
+package com.dtoind.lastvisit.controller;
+
+import com.dtoind.lastvisit.service.ResponseCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachedResponseTest {
+
+    private static final String ETAG = "\"abc-5\"";
+
+    private final ResponseCache.Body body = new ResponseCache.Body(5,
+            "[1]".getBytes(StandardCharsets.UTF_8), new byte[] {31, -117});
+
+    @Test
+    void testGzipBodyHasItsOwnEtag() {
+        // Arrange
+        MockHttpServletRequest gzipRequest = new MockHttpServletRequest("GET", "/links");
+        gzipRequest.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        MockHttpServletRequest identityRequest = new MockHttpServletRequest("GET", "/links");
+
+        // Act
+        ResponseEntity<byte[]> gzip = CachedResponse.of(body, ETAG,
+                webRequest(gzipRequest, new MockHttpServletResponse()));
+        ResponseEntity<byte[]> identity = CachedResponse.of(body, ETAG,
+                webRequest(identityRequest, new MockHttpServletResponse()));
+
+        // Assert
+        assertThat(gzip.getHeaders().getETag()).isEqualTo("\"abc-5-gzip\"");
+        assertThat(gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(identity.getHeaders().getETag()).isEqualTo(ETAG);
+        assertThat(identity.getBody()).isEqualTo(body.json());
+    }
+
+    @Test
+    void testEitherEtagIsAnsweredWithNotModified() {
+        // Arrange
+        MockHttpServletRequest gzipRequest = new MockHttpServletRequest("GET", "/links");
+        gzipRequest.addHeader(HttpHeaders.IF_NONE_MATCH, "\"abc-5-gzip\"");
+        MockHttpServletResponse gzipResponse = new MockHttpServletResponse();
+        MockHttpServletRequest identityRequest = new MockHttpServletRequest("GET", "/links");
+        identityRequest.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+        MockHttpServletResponse identityResponse = new MockHttpServletResponse();
+
+        // Act
+        boolean gzipNotModified = CachedResponse.checkNotModified(ETAG, webRequest(gzipRequest, gzipResponse));
+        boolean identityNotModified = CachedResponse.checkNotModified(ETAG,
+                webRequest(identityRequest, identityResponse));
+
+        // Assert
+        assertThat(gzipNotModified).isTrue();
+        assertThat(gzipResponse.getStatus()).isEqualTo(304);
+        assertThat(gzipResponse.getHeader(HttpHeaders.ETAG)).isEqualTo("\"abc-5-gzip\"");
+        assertThat(identityNotModified).isTrue();
+        assertThat(identityResponse.getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+    }
+
+    @Test
+    void testStaleEtagLeavesResponseUntouched() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/links");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"abc-4-gzip\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        boolean notModified = CachedResponse.checkNotModified(ETAG, webRequest(request, response));
+
+        // Assert
+        assertThat(notModified).isFalse();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNull();
+    }
+
+    private static ServletWebRequest webRequest(MockHttpServletRequest request, MockHttpServletResponse response) {
+        return new ServletWebRequest(request, response);
+    }
+
+}
@@ -0,0 +1,294 @@
+package com.dtoind.lastvisit.controller;
+
+import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.model.LinkImpl;
+import com.dtoind.lastvisit.repository.CategoryRepository;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.service.CategoryRegistry;
+import com.dtoind.lastvisit.service.DataVersion;
+import com.dtoind.lastvisit.service.LinkRanking;
+import com.dtoind.lastvisit.service.LinkService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Asserts how many SQL statements each GET endpoint issues, so that N+1 loading cannot creep back in.
+ * Categories are served from the {@link CategoryRegistry} and must not touch the database at all,
+ * and neither must a conditional GET answered with 304 Not Modified.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ReadStatementCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CategoryRepository catRepo;
+
+    @Autowired
+    private LinkRepository linkRepo;
+
+    @Autowired
+    private CategoryRegistry categoryRegistry;
+
+    @Autowired
+    private DataVersion dataVersion;
+
+    @Autowired
+    private LinkService linkService;
+
+    @Autowired
+    private LinkRanking linkRanking;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+    private int linkId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        linkId = transactionTemplate.execute(status -> {
+            linkRepo.deleteAll();
+            catRepo.deleteAll();
+
+            CategoryImpl java = catRepo.save(new CategoryImpl("java"));
+            CategoryImpl news = catRepo.save(new CategoryImpl("news"));
+            LinkImpl link = linkRepo.save(new LinkImpl("javadoc", "https://docs.oracle.com", java));
+            linkRepo.save(new LinkImpl("baeldung", "https://www.baeldung.com", java));
+            linkRepo.save(new LinkImpl("bbc", "https://www.bbc.com", news));
+            return link.getId();
+        });
+        // the categories were saved behind the registry's back, and the rows behind the data version's
+        categoryRegistry.reload();
+        dataVersion.bump();
+
+        statistics.clear();
+    }
+
+    @Test
+    void testGetLinksIssuesOneStatement() throws Exception {
+        mockMvc.perform(get("/links"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].category").exists());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testGetLinksIsServedFromCacheUntilWrite() throws Exception {
+        mockMvc.perform(get("/links")).andExpect(status().isOk());
+        statistics.clear();
+
+        mockMvc.perform(get("/links"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        linkService.deleteLink(linkId);
+        statistics.clear();
+
+        mockMvc.perform(get("/links"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testGetLinksWithEpochMillisIsStreamed() throws Exception {
+        MvcResult result = mockMvc.perform(get("/links").param("epochMillis", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].dateTimeMillis").isNumber());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testGetLinksPageIssuesOneStatement() throws Exception {
+        mockMvc.perform(get("/links").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.next").exists());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testGetTopAndRecentLinksIssueNoStatement() throws Exception {
+        // the links were saved behind the ranking's back
+        linkRanking.reload();
+        linkService.recordVisit("https://www.bbc.com");
+        linkService.recordVisit("https://www.bbc.com");
+        linkService.recordVisit("https://docs.oracle.com");
+        statistics.clear();
+
+        mockMvc.perform(get("/links/top").param("k", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].url").value("https://www.bbc.com"))
+                .andExpect(jsonPath("$[0].numVisits").value(2))
+                .andExpect(jsonPath("$[1].id").value(linkId));
+        mockMvc.perform(get("/links/recent").param("k", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(linkId))
+                .andExpect(jsonPath("$[1].url").value("https://www.bbc.com"));
+        mockMvc.perform(get("/links/top").param("k", "0"))
+                .andExpect(status().isBadRequest());
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void testGetCategoriesIssuesNoStatement() throws Exception {
+        mockMvc.perform(get("/cats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void testGetCategoriesPageIssuesNoStatement() throws Exception {
+        mockMvc.perform(get("/cats").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1));
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void testGetLinksNotModifiedIssuesNoStatement() throws Exception {
+        String etag = dataVersion.etag();
+
+        mockMvc.perform(get("/links").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        mockMvc.perform(get("/cats").header(HttpHeaders.IF_NONE_MATCH,
+                        categoryRegistry.etag(categoryRegistry.version())))
+                .andExpect(status().isNotModified());
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void testGetCategoriesKeepsEtagAcrossLinkWrites() throws Exception {
+        String etag = mockMvc.perform(get("/cats"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        linkService.recordVisit("https://docs.oracle.com");
+        dataVersion.bump();
+
+        mockMvc.perform(get("/cats").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testGetCategoriesChangesEtagAfterCategoryWrite() throws Exception {
+        String etag = mockMvc.perform(get("/cats"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        CategoryImpl tools = transactionTemplate.execute(status -> catRepo.save(new CategoryImpl("tools")));
+        categoryRegistry.put(tools);
+
+        mockMvc.perform(get("/cats").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(header().string(HttpHeaders.ETAG, categoryRegistry.etag(categoryRegistry.version())));
+    }
+
+    @Test
+    void testGetDashboardIssuesOneStatement() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> catRepo.save(new CategoryImpl("empty")));
+        categoryRegistry.reload();
+        statistics.clear();
+
+        MvcResult result = mockMvc.perform(get("/dashboard"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories.length()").value(3))
+                .andExpect(jsonPath("$.categories[0].name").value("java"))
+                .andExpect(jsonPath("$.categories[0].links.length()").value(2))
+                .andExpect(jsonPath("$.categories[0].links[0].id").value(linkId))
+                .andExpect(jsonPath("$.categories[1].links.length()").value(1))
+                .andExpect(jsonPath("$.categories[2].links.length()").value(0));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testFullSyncReturnsEverything() throws Exception {
+        MvcResult result = mockMvc.perform(get("/sync").param("since", "0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories.length()").value(2))
+                .andExpect(jsonPath("$.links.length()").value(3))
+                .andExpect(jsonPath("$.deleted.links.length()").value(0));
+
+        // only the links; the categories come from the registry and the tombstones are skipped
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testDeltaSyncReturnsOnlyChanges() throws Exception {
+        long since = dataVersion.stable();
+        linkService.deleteLink(linkId);
+        statistics.clear();
+
+        MvcResult result = mockMvc.perform(get("/sync").param("since", String.valueOf(since)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(dataVersion.stable()))
+                .andExpect(jsonPath("$.categories.length()").value(0))
+                .andExpect(jsonPath("$.links.length()").value(0))
+                .andExpect(jsonPath("$.deleted.links[0]").value(linkId));
+
+        // the changed links and the tombstones
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testGetVisitHistoryIssuesOneStatement() throws Exception {
+        mockMvc.perform(get("/links/visits").param("id", String.valueOf(linkId)))
+                .andExpect(status().isOk());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.dtoind.lastvisit.controller;
+
+import com.dtoind.lastvisit.exception.VisitBufferFullException;
+import com.dtoind.lastvisit.service.LinkService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VisitSocketHandlerTest {
+
+    @Mock
+    private LinkService mockLinkService;
+
+    @Mock
+    private WebSocketSession mockSession;
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    private VisitSocketHandler handler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        handler = new VisitSocketHandler(mockLinkService, 3, 65536);
+        when(mockSession.getAttributes()).thenReturn(attributes);
+        handler.afterConnectionEstablished(mockSession);
+    }
+
+    @Test
+    void testFrameIsRecordedAndAckedCumulatively() throws Exception {
+        // Arrange
+        when(mockLinkService.recordVisit("https://docs.oracle.com")).thenReturn(true);
+        when(mockLinkService.recordVisit("https://unknown.example.com")).thenReturn(false);
+
+        // Act
+        handler.handleMessage(mockSession, new TextMessage("1 https://docs.oracle.com\n2 https://unknown.example.com"));
+        handler.handleMessage(mockSession, new TextMessage("5 https://docs.oracle.com"));
+
+        // Assert
+        verify(mockSession).sendMessage(new TextMessage("window 3"));
+        verify(mockSession).sendMessage(new TextMessage("unknown 2\nack 2"));
+        verify(mockSession).sendMessage(new TextMessage("ack 5"));
+        verify(mockLinkService, times(2)).recordVisit("https://docs.oracle.com");
+        verify(mockSession, never()).close(any());
+    }
+
+    @Test
+    void testFrameLargerThanWindowClosesSessionWithoutRecording() throws Exception {
+        // Act
+        handler.handleMessage(mockSession, new TextMessage("1 https://a.example.com\n2 https://b.example.com\n"
+                + "3 https://c.example.com\n4 https://d.example.com"));
+
+        // Assert
+        verify(mockSession).close(argThat(status -> status.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
+        verifyNoInteractions(mockLinkService);
+    }
+
+    @Test
+    void testSeqGoingBackClosesSessionWithoutRecording() throws Exception {
+        // Arrange
+        when(mockLinkService.recordVisit(anyString())).thenReturn(true);
+        handler.handleMessage(mockSession, new TextMessage("2 https://a.example.com"));
+
+        // Act
+        handler.handleMessage(mockSession, new TextMessage("3 https://b.example.com\n2 https://c.example.com"));
+
+        // Assert
+        verify(mockSession).close(argThat(status -> status.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
+        verify(mockLinkService, times(1)).recordVisit(anyString());
+    }
+
+    @Test
+    void testFailureAcksVisitsRecordedBeforeIt() throws Exception {
+        // Arrange
+        when(mockLinkService.recordVisit("https://a.example.com")).thenReturn(true);
+        when(mockLinkService.recordVisit("https://b.example.com")).thenThrow(new RuntimeException("database down"));
+
+        // Act
+        handler.handleMessage(mockSession, new TextMessage("1 https://a.example.com\n2 https://b.example.com"));
+
+        // Assert
+        verify(mockSession).sendMessage(new TextMessage("ack 1"));
+        verify(mockSession).close(CloseStatus.SERVER_ERROR);
+    }
+
+    @Test
+    void testFullVisitBufferAcksRecordedVisitsAndAsksClientToComeBackLater() throws Exception {
+        // Arrange
+        when(mockLinkService.recordVisit("https://a.example.com")).thenReturn(true);
+        when(mockLinkService.recordVisit("https://b.example.com"))
+                .thenThrow(new VisitBufferFullException("Visit buffer is full"));
+
+        // Act
+        handler.handleMessage(mockSession, new TextMessage("1 https://a.example.com\n2 https://b.example.com"));
+
+        // Assert
+        verify(mockSession).sendMessage(new TextMessage("ack 1"));
+        verify(mockSession).close(CloseStatus.SERVICE_OVERLOAD);
+    }
+
+}
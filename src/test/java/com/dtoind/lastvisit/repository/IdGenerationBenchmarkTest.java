@@ -0,0 +1,71 @@
+package com.dtoind.lastvisit.repository;
+
+import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.model.LinkImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures link inserts per second with several threads inserting at once.
+ * Run with {@code mvn test -Dtest=IdGenerationBenchmarkTest -Dlastvisit.benchmark=true}; to compare
+ * ID strategies, run it before and after changing the generator and compare the printed rates.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "lastvisit.benchmark", matches = "true")
+class IdGenerationBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int INSERTS_PER_THREAD = 2_000;
+    private static final int WARMUP_INSERTS = 500;
+
+    @Autowired
+    private CategoryRepository catRepo;
+
+    @Autowired
+    private LinkRepository linkRepo;
+
+    @Test
+    void benchmarkConcurrentInserts() throws Exception {
+        CategoryImpl category = catRepo.save(new CategoryImpl("benchmark-" + System.nanoTime()));
+        insert(category, "warmup", WARMUP_INSERTS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                String prefix = "thread" + t;
+                futures.add(executor.submit(() -> insert(category, prefix, INSERTS_PER_THREAD)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsedNanos = System.nanoTime() - start;
+
+            int inserts = THREADS * INSERTS_PER_THREAD;
+            System.out.printf("ID generation: %d inserts from %d threads in %d ms, %.0f inserts/sec%n",
+                    inserts, THREADS, elapsedNanos / 1_000_000, inserts * 1e9 / elapsedNanos);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(linkRepo.count()).isGreaterThanOrEqualTo(THREADS * INSERTS_PER_THREAD + WARMUP_INSERTS);
+    }
+
+    private void insert(CategoryImpl category, String prefix, int count) {
+        for (int i = 0; i < count; i++) {
+            linkRepo.save(new LinkImpl(prefix + i, "https://bench.example.com/" + prefix + "/" + i, category));
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.Category;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures contention on category creation: in every round, all threads create a link in the same
+ * new category at once. Compares {@link LinkCreationService#createLink(String, String, String)}, which
+ * lets one thread create the category while the others wait for it, with the check-then-act it replaced,
+ * where every thread that missed the registry tried to insert the category and all but one failed.
+ * Run with {@code mvn test -Dtest=CategoryCreationBenchmarkTest -Dlastvisit.benchmark=true} and compare
+ * the printed latencies and failures.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "lastvisit.benchmark", matches = "true")
+class CategoryCreationBenchmarkTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 200;
+
+    @Autowired
+    private LinkCreationService linkCreation;
+
+    @Autowired
+    private CategoryService catService;
+
+    @Autowired
+    private LinkService linkService;
+
+    @Test
+    void benchmarkSameNewCategory() throws Exception {
+        Result legacy = run("legacy", (name, url, category) -> {
+            Category cat;
+            if (catService.categoryExists(category)) {
+                cat = catService.findByName(category).orElseThrow();
+            } else {
+                cat = catService.createCategory(category);
+                catService.save(cat);
+            }
+            linkService.save(linkService.createLink(name, url, cat));
+        });
+        Result current = run("current", linkCreation::createLink);
+
+        System.out.printf("Category creation, %d threads x %d rounds: check-then-act p50 %d us, p99 %d us,"
+                        + " %d failed; single-flight p50 %d us, p99 %d us, %d failed%n", THREADS, ROUNDS,
+                legacy.percentile(50), legacy.percentile(99), legacy.failures(),
+                current.percentile(50), current.percentile(99), current.failures());
+
+        assertThat(current.failures()).isZero();
+    }
+
+    private Result run(String prefix, Creation creation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        AtomicInteger failures = new AtomicInteger();
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    long[] nanos = new long[ROUNDS];
+                    for (int round = 0; round < ROUNDS; round++) {
+                        String category = prefix + "-" + round;
+                        String url = "https://bench.example.com/" + prefix + "/" + round + "/" + thread;
+                        barrier.await();
+                        long begin = System.nanoTime();
+                        try {
+                            creation.create("link" + thread, url, category);
+                        } catch (RuntimeException e) {
+                            failures.incrementAndGet();
+                        }
+                        nanos[round] = System.nanoTime() - begin;
+                    }
+                    return nanos;
+                }));
+            }
+
+            long[] all = new long[THREADS * ROUNDS];
+            for (int t = 0; t < THREADS; t++) {
+                System.arraycopy(futures.get(t).get(), 0, all, t * ROUNDS, ROUNDS);
+            }
+            Arrays.sort(all);
+            return new Result(all, failures.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private interface Creation {
+        void create(String name, String url, String category);
+    }
+
+    private record Result(long[] sortedNanos, int failures) {
+
+        long percentile(int percent) {
+            return sortedNanos[(sortedNanos.length - 1) * percent / 100] / 1_000;
+        }
+
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.Category;
+import com.dtoind.lastvisit.model.CategoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CategoryDeletionServiceTest {
+
+    @Mock
+    private LinkService mockLinkService;
+
+    @Mock
+    private CategoryService mockCatService;
+
+    private CategoryDeletionService deletionService;
+
+    @BeforeEach
+    void setUp() {
+        deletionService = new CategoryDeletionService(mockLinkService, mockCatService, 100, 1_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        deletionService.shutdown();
+    }
+
+    @Test
+    void testSmallCategoryIsDeletedRightAway() {
+        // Arrange
+        Category category = new CategoryImpl("java");
+        when(mockLinkService.countLinks(category)).thenReturn(10L);
+
+        // Act
+        CategoryDeletionService.Job job = deletionService.delete(category);
+
+        // Assert
+        assertThat(job.getState()).isEqualTo(CategoryDeletionService.State.DONE);
+        verify(mockLinkService, times(1)).deleteAllLinks(eq(category), eq(100), any());
+        verify(mockCatService, times(1)).delete(category);
+    }
+
+    @Test
+    void testLargeCategoryIsDeletedInBackground() throws InterruptedException {
+        // Arrange
+        Category category = new CategoryImpl("news");
+        when(mockLinkService.countLinks(category)).thenReturn(5_000L);
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockLinkService.deleteAllLinks(eq(category), anyInt(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 5_000L;
+        });
+
+        // Act
+        CategoryDeletionService.Job job = deletionService.delete(category);
+
+        // Assert
+        assertThat(job.getState()).isEqualTo(CategoryDeletionService.State.RUNNING);
+        assertThat(deletionService.findJob(job.getId())).containsSame(job);
+
+        release.countDown();
+        verify(mockCatService, timeout(5_000)).delete(category);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.Category;
+import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.repository.CategoryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CategoryRegistryTest {
+
+    @Mock
+    private CategoryRepository mockRepo;
+
+    @InjectMocks
+    private CategoryRegistry registry;
+
+    @Test
+    void testReadsAreServedFromSnapshot() {
+        // Arrange
+        when(mockRepo.findAll()).thenReturn(new ArrayList<>(List.of(category(2, "news"), category(1, "java"))));
+        registry.reload();
+
+        // Act
+        List<Category> all = registry.findAll();
+        boolean found = registry.findByName("java").isPresent();
+
+        // Assert
+        assertThat(all).extracting(Category::getName).containsExactly("java", "news");
+        assertThat(found).isTrue();
+        verify(mockRepo, times(1)).findAll();
+    }
+
+    @Test
+    void testWritesGoThrough() {
+        // Arrange
+        when(mockRepo.findAll()).thenReturn(new ArrayList<>(List.of(category(1, "java"))));
+        registry.reload();
+        CategoryImpl news = category(2, "news");
+
+        // Act
+        registry.put(news);
+        registry.remove(registry.findByName("java").orElseThrow());
+
+        // Assert
+        assertThat(registry.findAll()).containsExactly(news);
+        assertThat(registry.findById(1)).isEmpty();
+    }
+
+    @Test
+    void testFindAfterReturnsNextPage() {
+        // Arrange
+        when(mockRepo.findAll()).thenReturn(new ArrayList<>(List.of(
+                category(3, "c"), category(7, "d"), category(1, "a"), category(2, "b"))));
+        registry.reload();
+
+        // Act
+        List<Category> page = registry.findAfter(2, 2);
+
+        // Assert
+        assertThat(page).extracting(Category::getId).containsExactly(3, 7);
+    }
+
+    @Test
+    void testVersionAdvancesOnlyWhenCategoriesChange() {
+        // Arrange
+        when(mockRepo.findAll()).thenReturn(
+                new ArrayList<>(List.of(category(1, "java"))),
+                new ArrayList<>(List.of(category(1, "java"))),
+                new ArrayList<>(List.of(category(1, "java"), category(2, "news"))));
+        registry.reload();
+        long loaded = registry.version();
+
+        // Act
+        registry.reload();
+        long unchanged = registry.version();
+        registry.reload();
+        long reloaded = registry.version();
+        registry.put(category(3, "tools"));
+        long written = registry.version();
+
+        // Assert
+        assertThat(unchanged).isEqualTo(loaded);
+        assertThat(reloaded).isGreaterThan(unchanged);
+        assertThat(written).isGreaterThan(reloaded);
+        assertThat(registry.etag(written)).isNotEqualTo(registry.etag(reloaded));
+    }
+
+    private static CategoryImpl category(int id, String name) {
+        CategoryImpl category = new CategoryImpl(name);
+        ReflectionTestUtils.setField(category, "id", id);
+        return category;
+    }
+
+}
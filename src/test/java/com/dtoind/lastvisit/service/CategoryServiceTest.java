@@ -2,6 +2,7 @@ package com.dtoind.lastvisit.service;
 
 import com.dtoind.lastvisit.model.Category;
 import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.model.ChangeEvent;
 import com.dtoind.lastvisit.repository.CategoryRepository;
 import com.dtoind.lastvisit.repository.LinkRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,7 +12,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Example;
 
 import java.util.Optional;
 
@@ -25,6 +25,15 @@ class CategoryServiceTest {
     @Mock
     private CategoryRepository mockRepo;
 
+    @Mock
+    private CategoryRegistry mockRegistry;
+
+    @Mock
+    private DataVersion mockVersion;
+
+    @Mock
+    private ChangeFeed mockFeed;
+
     @InjectMocks
     private CategoryService catService;
 
@@ -46,6 +55,8 @@ class CategoryServiceTest {
 
         //Assert
         verify(mockRepo, times(1)).save(entity);
+        verify(mockRegistry, times(1)).put(entity);
+        verify(mockFeed, times(1)).publish(ChangeEvent.categoryCreated("Test Category"));
         assert result;
     }
 
@@ -54,8 +65,8 @@ class CategoryServiceTest {
         // Arrange
         Category entityToSave = new CategoryImpl("Test Category"); // Entity to attempt saving
 
-        // sets the mocked repository to return true when exists(entityToSave) is called
-        when(mockRepo.exists(Example.of((CategoryImpl) entityToSave))).thenReturn(true);
+        // sets the mocked registry to already hold a category with the same name
+        when(mockRegistry.findByName("Test Category")).thenReturn(Optional.of(entityToSave));
 
         try {
             // Act
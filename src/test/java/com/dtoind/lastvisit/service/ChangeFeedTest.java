@@ -0,0 +1,97 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.ChangeEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeFeedTest {
+
+    @Mock
+    private DataVersion mockVersion;
+
+    private ChangeFeed feed;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        feed.shutdown();
+    }
+
+    @Test
+    void testSlowSubscriberDoesNotDelayOthers() throws Exception {
+        // Arrange
+        feed = new ChangeFeed(mockVersion, 60_000, 256, 10_000);
+        SseEmitter slow = blockingEmitter();
+        SseEmitter fast = mock(SseEmitter.class);
+        feed.subscribe(slow);
+        feed.subscribe(fast);
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            feed.publish(ChangeEvent.linkDeleted(i));
+        }
+
+        // Assert
+        verify(fast, timeout(1000).times(3)).send(any(SseEmitter.SseEventBuilder.class));
+        verify(slow, timeout(1000).times(1)).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @Test
+    void testOverflowingQueueCollapsesIntoOneReload() throws Exception {
+        // Arrange
+        feed = new ChangeFeed(mockVersion, 60_000, 2, 10_000);
+        SseEmitter slow = blockingEmitter();
+        feed.subscribe(slow);
+        feed.publish(ChangeEvent.linkDeleted(0));
+        verify(slow, timeout(1000).times(1)).send(any(SseEmitter.SseEventBuilder.class));
+
+        // Act
+        for (int i = 1; i <= 5; i++) {
+            feed.publish(ChangeEvent.linkDeleted(i));
+        }
+        release.countDown();
+
+        // Assert
+        ArgumentCaptor<SseEmitter.SseEventBuilder> sent = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(slow, timeout(1000).times(2)).send(sent.capture());
+        Thread.sleep(100);
+        verify(slow, times(2)).send(any(SseEmitter.SseEventBuilder.class));
+        assertThat(text(sent.getAllValues().get(1))).contains("event:" + ChangeEvent.RELOAD);
+    }
+
+    // an emitter whose first send blocks until the test releases it, as a client that stopped reading
+    private SseEmitter blockingEmitter() throws Exception {
+        SseEmitter emitter = mock(SseEmitter.class);
+        CountDownLatch first = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (first.getCount() > 0) {
+                first.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return null;
+        }).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+        return emitter;
+    }
+
+    private static String text(SseEmitter.SseEventBuilder event) {
+        return event.build().stream()
+                .map(part -> part.getData().toString())
+                .collect(Collectors.joining());
+    }
+
+}
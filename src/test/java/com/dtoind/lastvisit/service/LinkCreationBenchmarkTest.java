@@ -0,0 +1,121 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.Category;
+import com.dtoind.lastvisit.repository.CategoryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the latency of creating links under concurrency, with every thread creating links in the
+ * same categories, each of which is new when the first thread reaches it. Compares
+ * {@link LinkCreationService} with the way links were created before: the category looked up or
+ * saved by {@link CategoryService}, then the link saved by {@link LinkService}, each in its own
+ * transaction, which fails requests that race to create the same category.
+ * Run with {@code mvn test -Dtest=LinkCreationBenchmarkTest -Dlastvisit.benchmark=true} and compare
+ * the printed latencies.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "lastvisit.benchmark", matches = "true")
+class LinkCreationBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int LINKS_PER_THREAD = 500;
+    private static final int LINKS_PER_CATEGORY = 10;
+
+    @Autowired
+    private LinkCreationService linkCreation;
+
+    @Autowired
+    private LinkService linkService;
+
+    @Autowired
+    private CategoryService catService;
+
+    @Autowired
+    private CategoryRepository catRepo;
+
+    @Test
+    void benchmarkConcurrentCreates() throws Exception {
+        Result legacy = run("legacy", (name, url, category) -> {
+            Category cat = catService.findByName(category).orElseGet(() -> {
+                Category created = catService.createCategory(category);
+                catService.save(created);
+                return created;
+            });
+            linkService.save(linkService.createLink(name, url, cat));
+        });
+        Result current = run("current", linkCreation::createLink);
+
+        System.out.printf("Link creation, %d threads: separate transactions p50 %d us, p99 %d us, %d failed;"
+                        + " single transaction p50 %d us, p99 %d us, %d failed%n", THREADS,
+                legacy.percentile(50), legacy.percentile(99), legacy.failures(),
+                current.percentile(50), current.percentile(99), current.failures());
+
+        assertThat(current.failures()).isZero();
+        assertThat(catRepo.findByName("current-0")).isPresent();
+    }
+
+    private Result run(String prefix, Creation creation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    long[] nanos = new long[LINKS_PER_THREAD];
+                    start.await();
+                    for (int i = 0; i < LINKS_PER_THREAD; i++) {
+                        String category = prefix + "-" + (i / LINKS_PER_CATEGORY);
+                        String url = "https://bench.example.com/" + prefix + "/" + thread + "/" + i;
+                        long begin = System.nanoTime();
+                        try {
+                            creation.create("link" + i, url, category);
+                        } catch (RuntimeException e) {
+                            failures.incrementAndGet();
+                        }
+                        nanos[i] = System.nanoTime() - begin;
+                    }
+                    return nanos;
+                }));
+            }
+            start.countDown();
+
+            long[] all = new long[THREADS * LINKS_PER_THREAD];
+            for (int t = 0; t < THREADS; t++) {
+                System.arraycopy(futures.get(t).get(), 0, all, t * LINKS_PER_THREAD, LINKS_PER_THREAD);
+            }
+            Arrays.sort(all);
+            return new Result(all, failures.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private interface Creation {
+        void create(String name, String url, String category);
+    }
+
+    private record Result(long[] sortedNanos, int failures) {
+
+        long percentile(int percent) {
+            return sortedNanos[(sortedNanos.length - 1) * percent / 100] / 1_000;
+        }
+
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.exception.LinkAlreadyExistsException;
+import com.dtoind.lastvisit.model.Category;
+import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.model.ChangeEvent;
+import com.dtoind.lastvisit.model.LinkImpl;
+import com.dtoind.lastvisit.model.LinkView;
+import com.dtoind.lastvisit.repository.CategoryRepository;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LinkCreationServiceTest {
+
+    @Mock
+    private LinkRepository mockLinkRepo;
+
+    @Mock
+    private CategoryRepository mockCatRepo;
+
+    @Mock
+    private CategoryRegistry mockRegistry;
+
+    @Mock
+    private UrlIndex mockUrlIndex;
+
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+
+    @Mock
+    private DataVersion mockVersion;
+
+    @Mock
+    private ChangeFeed mockChangeFeed;
+
+    @Mock
+    private LinkRanking mockRanking;
+
+    @InjectMocks
+    private LinkCreationService linkCreation;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(mockVersion.begin()).thenReturn(9L);
+        lenient().when(mockTransactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void testCreateLinkInExistingCategoryInsertsOnlyTheLink() {
+        // Arrange
+        Category java = new CategoryImpl("java");
+        when(mockRegistry.findByName("java")).thenReturn(Optional.of(java));
+
+        // Act
+        LinkView link = linkCreation.createLink("javadoc", "https://docs.oracle.com", "java");
+
+        // Assert
+        assertThat(link.category()).isEqualTo("java");
+        assertThat(link.url()).isEqualTo("https://docs.oracle.com");
+        verify(mockCatRepo, never()).insertIfAbsent(any());
+        verify(mockLinkRepo).saveAndFlush(argThat((LinkImpl saved) -> saved.getCategory() == java
+                && saved.getChangeVersion() == 9L));
+        verify(mockRegistry, never()).put(any());
+        verify(mockUrlIndex).put(eq("https://docs.oracle.com"), anyInt());
+        verify(mockChangeFeed).publish(ChangeEvent.linkCreated(link));
+        verify(mockVersion).end(9L);
+    }
+
+    @Test
+    void testCreateLinkInNewCategoryInsertsAndRegistersIt() {
+        // Arrange
+        when(mockRegistry.findByName("news")).thenReturn(Optional.empty());
+        when(mockCatRepo.insertIfAbsent(any())).thenReturn(true);
+
+        // Act
+        LinkView link = linkCreation.createLink("bbc", "https://www.bbc.com", "news");
+
+        // Assert
+        assertThat(link.category()).isEqualTo("news");
+        verify(mockCatRepo).insertIfAbsent(argThat((CategoryImpl cat) -> cat.getName().equals("news")
+                && cat.getChangeVersion() == 9L));
+        verify(mockCatRepo, never()).findByName(anyString());
+        verify(mockRegistry).put(argThat(cat -> cat.getName().equals("news")));
+        verify(mockChangeFeed).publish(ChangeEvent.categoryCreated("news"));
+        verify(mockChangeFeed).publish(ChangeEvent.linkCreated(link));
+    }
+
+    @Test
+    void testCreateLinkInCategoryCreatedConcurrentlyUsesStoredCategory() {
+        // Arrange
+        Category stored = new CategoryImpl("news");
+        when(mockRegistry.findByName("news")).thenReturn(Optional.empty());
+        when(mockCatRepo.insertIfAbsent(any())).thenReturn(false);
+        when(mockCatRepo.findByName("news")).thenReturn(Optional.of(stored));
+
+        // Act
+        LinkView link = linkCreation.createLink("bbc", "https://www.bbc.com", "news");
+
+        // Assert
+        assertThat(link.category()).isEqualTo("news");
+        verify(mockLinkRepo).saveAndFlush(argThat((LinkImpl saved) -> saved.getCategory() == stored));
+        verify(mockRegistry, never()).put(any());
+        verify(mockChangeFeed, never()).publish(ChangeEvent.categoryCreated("news"));
+    }
+
+    @Test
+    void testConcurrentCreatesInNewCategoryInsertItOnce() throws Exception {
+        // Arrange
+        int threads = 8;
+        AtomicReference<Category> registered = new AtomicReference<>();
+        when(mockRegistry.findByName("news")).thenAnswer(invocation -> Optional.ofNullable(registered.get()));
+        doAnswer(invocation -> {
+            registered.set(invocation.getArgument(0));
+            return null;
+        }).when(mockRegistry).put(any());
+        when(mockCatRepo.insertIfAbsent(any())).thenAnswer(invocation -> {
+            // hold the insert until every caller has had time to miss the registry
+            Thread.sleep(100);
+            return true;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // Act
+        List<Future<LinkView>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                String url = "https://www.bbc.com/" + i;
+                results.add(executor.submit(() -> linkCreation.createLink("bbc", url, "news")));
+            }
+            for (Future<LinkView> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS).category()).isEqualTo("news");
+            }
+
+            // Assert
+            verify(mockCatRepo, times(1)).insertIfAbsent(any());
+            verify(mockCatRepo, never()).findByName(anyString());
+            verify(mockChangeFeed, times(1)).publish(ChangeEvent.categoryCreated("news"));
+            verify(mockLinkRepo, times(threads)).saveAndFlush(any());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testCreateLinkWithEmptyNameCreatesNoCategory() {
+        // Act & Assert
+        assertThatThrownBy(() -> linkCreation.createLink("", "https://www.bbc.com", "news"))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(mockCatRepo, mockLinkRepo);
+    }
+
+    @Test
+    void testCreateLinkWithExistingUrlThrowsLinkAlreadyExists() {
+        // Arrange
+        when(mockRegistry.findByName("java")).thenReturn(Optional.of(new CategoryImpl("java")));
+        when(mockLinkRepo.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException(
+                "Duplicate entry for key 'linkimpl.UK_LINKIMPL_URL_HASH'"));
+
+        // Act & Assert
+        assertThatThrownBy(() -> linkCreation.createLink("javadoc", "https://docs.oracle.com", "java"))
+                .isInstanceOf(LinkAlreadyExistsException.class);
+        verify(mockVersion).end(9L);
+        verify(mockUrlIndex, never()).put(anyString(), anyInt());
+        verify(mockChangeFeed, never()).publish(any());
+    }
+
+}
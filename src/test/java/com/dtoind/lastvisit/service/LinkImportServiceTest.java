@@ -0,0 +1,173 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.Category;
+import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.model.ImportedLink;
+import com.dtoind.lastvisit.model.LinkImpl;
+import com.dtoind.lastvisit.repository.CategoryRepository;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.util.LinkReader;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LinkImportServiceTest {
+
+    @Mock
+    private EntityManager mockEntityManager;
+
+    @Mock
+    private Session mockSession;
+
+    @Mock
+    private LinkRepository mockLinkRepo;
+
+    @Mock
+    private CategoryRepository mockCatRepo;
+
+    @Mock
+    private CategoryRegistry mockRegistry;
+
+    @Mock
+    private UrlIndex mockUrlIndex;
+
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+
+    @Mock
+    private DataVersion mockVersion;
+
+    @Mock
+    private ChangeFeed mockChangeFeed;
+
+    @Mock
+    private LinkRanking mockRanking;
+
+    private LinkImportService linkImport;
+
+    @BeforeEach
+    void setUp() {
+        linkImport = new LinkImportService(mockEntityManager, mockLinkRepo, mockCatRepo, mockRegistry,
+                mockUrlIndex, mockTransactionTemplate, mockVersion, mockChangeFeed, mockRanking, 2);
+        when(mockVersion.begin()).thenReturn(9L);
+        when(mockEntityManager.unwrap(Session.class)).thenReturn(mockSession);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(mockTransactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void testImportWritesChunksAndSkipsRepeatedStoredAndInvalidLinks() throws Exception {
+        // Arrange
+        when(mockRegistry.findAll()).thenReturn(List.of(new CategoryImpl("java")));
+        when(mockLinkRepo.findUrlsByUrlHashIn(anyCollection()))
+                .thenReturn(List.of("https://docs.oracle.com"))
+                .thenReturn(List.of());
+
+        // Act
+        LinkImportService.Summary summary = linkImport.importLinks(reader(
+                new ImportedLink("java", "javadoc", "https://docs.oracle.com", null),
+                new ImportedLink("java", "jls", "https://docs.oracle.com/javase/specs", null),
+                new ImportedLink("java", "jls again", "https://docs.oracle.com/javase/specs", null),
+                new ImportedLink("java", "no url", " ", null),
+                new ImportedLink(null, "openjdk", "https://openjdk.org", null)), "java");
+
+        // Assert
+        assertThat(summary.read()).isEqualTo(5);
+        assertThat(summary.imported()).isEqualTo(2);
+        assertThat(summary.duplicates()).isEqualTo(2);
+        assertThat(summary.invalid()).isEqualTo(1);
+        assertThat(summary.categoriesCreated()).isZero();
+        assertThat(summary.chunks()).hasSize(2);
+        verify(mockEntityManager, times(2)).persist(any(LinkImpl.class));
+        verify(mockCatRepo, never()).insertIfAbsent(any());
+        verify(mockVersion, times(2)).end(9L);
+        verify(mockChangeFeed).publish(any());
+    }
+
+    @Test
+    void testImportInsertsMissingCategoryOnceAndRegistersIt() throws Exception {
+        // Arrange
+        when(mockCatRepo.insertIfAbsent(any())).thenReturn(true);
+
+        // Act
+        LinkImportService.Summary summary = linkImport.importLinks(reader(
+                new ImportedLink("news", "bbc", "https://www.bbc.com", null),
+                new ImportedLink("news", "guardian", "https://www.theguardian.com", null),
+                new ImportedLink("news", "reuters", "https://www.reuters.com", null)), "Imported");
+
+        // Assert
+        assertThat(summary.imported()).isEqualTo(3);
+        assertThat(summary.categoriesCreated()).isEqualTo(1);
+        verify(mockCatRepo, times(1)).insertIfAbsent(argThat((CategoryImpl cat) -> cat.getName().equals("news")
+                && cat.getChangeVersion() == 9L));
+        verify(mockEntityManager, never()).persist(any(CategoryImpl.class));
+        verify(mockRegistry).put(argThat(cat -> cat.getName().equals("news")));
+    }
+
+    @Test
+    void testImportUsesCategoryCreatedConcurrently() throws Exception {
+        // Arrange
+        Category stored = new CategoryImpl("news");
+        when(mockCatRepo.insertIfAbsent(any())).thenReturn(false);
+        when(mockCatRepo.findByName("news")).thenReturn(Optional.of(stored));
+
+        // Act
+        LinkImportService.Summary summary = linkImport.importLinks(reader(
+                new ImportedLink("news", "bbc", "https://www.bbc.com", null)), "Imported");
+
+        // Assert
+        assertThat(summary.imported()).isEqualTo(1);
+        assertThat(summary.categoriesCreated()).isZero();
+        verify(mockEntityManager).persist(argThat((LinkImpl link) -> link.getCategory() == stored));
+        verify(mockRegistry, never()).put(any());
+    }
+
+    @Test
+    void testImportSkipsCategoryNamesTooLongToStore() throws Exception {
+        // Arrange
+        when(mockCatRepo.insertIfAbsent(any())).thenReturn(true);
+
+        // Act
+        LinkImportService.Summary summary = linkImport.importLinks(reader(
+                new ImportedLink("x".repeat(256), "bbc", "https://www.bbc.com", null),
+                new ImportedLink("news", "guardian", "https://www.theguardian.com", null)), "Imported");
+
+        // Assert
+        assertThat(summary.invalid()).isEqualTo(1);
+        verify(mockCatRepo, times(1)).insertIfAbsent(argThat((CategoryImpl cat) -> cat.getName().equals("news")));
+    }
+
+    private static LinkReader reader(ImportedLink... rows) {
+        Iterator<ImportedLink> iterator = List.of(rows).iterator();
+        return new LinkReader() {
+            @Override
+            public ImportedLink next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+}
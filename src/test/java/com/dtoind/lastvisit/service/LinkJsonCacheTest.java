@@ -0,0 +1,76 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.VersionedLinkView;
+import com.dtoind.lastvisit.util.JSONify;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LinkJsonCacheTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 1, 9, 30);
+
+    @Test
+    void testUnchangedLinkIsSerializedOnce() {
+        // Arrange
+        LinkJsonCache cache = new LinkJsonCache(100);
+        VersionedLinkView link = new VersionedLinkView(7, "java", "javadoc", "https://docs.oracle.com", TIME, 4, 3);
+
+        // Act
+        byte[] first = cache.toJson(link);
+        byte[] second = cache.toJson(link);
+
+        // Assert
+        assertThat(second).isSameAs(first);
+        assertThat(first).isEqualTo(JSONify.toJsonBytes(link.view(), JSONify.DateStyle.FORMATTED));
+        assertThat(cache.stats().hits()).isEqualTo(1);
+        assertThat(cache.stats().misses()).isEqualTo(1);
+    }
+
+    @Test
+    void testChangedLinkIsSerializedAgain() {
+        // Arrange
+        LinkJsonCache cache = new LinkJsonCache(100);
+        cache.toJson(new VersionedLinkView(7, "java", "javadoc", "https://docs.oracle.com", TIME, 4, 3));
+        VersionedLinkView visited = new VersionedLinkView(7, "java", "javadoc", "https://docs.oracle.com",
+                TIME.plusHours(1), 5, 4);
+
+        // Act
+        byte[] json = cache.toJson(visited);
+
+        // Assert
+        assertThat(json).isEqualTo(JSONify.toJsonBytes(visited.view(), JSONify.DateStyle.FORMATTED));
+        assertThat(cache.stats().misses()).isEqualTo(2);
+    }
+
+    @Test
+    void testInvalidateDropsLink() {
+        // Arrange
+        LinkJsonCache cache = new LinkJsonCache(100);
+        VersionedLinkView link = new VersionedLinkView(7, "java", "javadoc", "https://docs.oracle.com", TIME, 4, 3);
+        cache.toJson(link);
+
+        // Act
+        cache.invalidate(7);
+
+        // Assert
+        assertThat(cache.stats().cachedLinks()).isZero();
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        // Arrange
+        LinkJsonCache cache = new LinkJsonCache(2);
+
+        // Act
+        for (int id = 1; id <= 3; id++) {
+            cache.toJson(new VersionedLinkView(id, "java", "link" + id, "https://example.com/" + id, TIME, 0, 0));
+        }
+
+        // Assert
+        assertThat(cache.stats().cachedLinks()).isEqualTo(2);
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.LinkView;
+import com.dtoind.lastvisit.model.VisitDelta;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LinkRankingTest {
+
+    private static final LocalDateTime MORNING = LocalDateTime.of(2024, 3, 1, 9, 0);
+
+    @Mock
+    private LinkRepository mockRepo;
+
+    @Mock
+    private UrlIndex mockIndex;
+
+    private LinkRanking ranking;
+
+    @BeforeEach
+    void setUp() {
+        ranking = new LinkRanking(mockRepo, mockIndex, 4);
+        when(mockRepo.streamAllViews()).thenReturn(Stream.of(
+                new LinkView(1, "java", "javadoc", "https://docs.oracle.com", MORNING, 5),
+                new LinkView(2, "java", "baeldung", "https://www.baeldung.com", MORNING.plusHours(2), 2),
+                new LinkView(3, "news", "bbc", "https://www.bbc.com", MORNING.plusHours(1), 5)));
+        ranking.reload();
+    }
+
+    @Test
+    void testReloadSeedsBothRankings() {
+        // Act & Assert
+        assertThat(ranking.top(10)).extracting(LinkView::id).containsExactly(1, 3, 2);
+        assertThat(ranking.recent(10)).extracting(LinkView::id).containsExactly(2, 3, 1);
+    }
+
+    @Test
+    void testVisitsMoveLinkUpBothRankings() {
+        // Arrange
+        when(mockIndex.findId("https://www.baeldung.com")).thenReturn(Optional.of(2));
+        when(mockIndex.findId("https://unknown.example.com")).thenReturn(Optional.empty());
+
+        // Act
+        ranking.addVisitsByUrl(Map.of("https://www.baeldung.com", new VisitDelta(4, MORNING.plusHours(3)),
+                "https://unknown.example.com", new VisitDelta(1, MORNING.plusHours(3))));
+        Optional<LinkView> visited = ranking.addVisit(3, MORNING.plusHours(4));
+        Optional<LinkView> unranked = ranking.addVisit(99, MORNING.plusHours(4));
+
+        // Assert
+        assertThat(visited).map(LinkView::dateTime).contains(MORNING.plusHours(4));
+        assertThat(unranked).isEmpty();
+        assertThat(ranking.top(2)).extracting(LinkView::id).containsExactly(2, 3);
+        assertThat(ranking.top(1).get(0).numVisits()).isEqualTo(6);
+        assertThat(ranking.top(1).get(0).dateTime()).isEqualTo(MORNING.plusHours(3));
+        assertThat(ranking.recent(2)).extracting(LinkView::id).containsExactly(3, 2);
+    }
+
+    @Test
+    void testRecentListsEachLinkOnceWithinCapacity() {
+        // Act
+        ranking.addVisit(1, MORNING.plusHours(5));
+        ranking.addVisit(1, MORNING.plusHours(6));
+        ranking.addVisit(1, MORNING.plusHours(7));
+        ranking.addVisit(1, MORNING.plusHours(8));
+
+        // Assert
+        // the ring only holds the last 4 visits, which all went to the same link
+        assertThat(ranking.recent(3)).extracting(LinkView::id).containsExactly(1);
+    }
+
+    @Test
+    void testRemovedLinksLeaveBothRankings() {
+        // Arrange
+        ranking.put(new LinkView(4, "news", "reuters", "https://www.reuters.com", MORNING.plusHours(3), 0));
+
+        // Act
+        ranking.remove(1);
+        ranking.removeCategory("news");
+
+        // Assert
+        assertThat(ranking.top(10)).extracting(LinkView::id).containsExactly(2);
+        assertThat(ranking.recent(10)).extracting(LinkView::id).containsExactly(2);
+    }
+
+    @Test
+    void testReloadKeepsAnsweringAndKeepsWritesMadeMeanwhile() {
+        // Arrange
+        List<List<LinkView>> topDuringReload = new ArrayList<>();
+        when(mockRepo.streamAllViews()).thenReturn(Stream.of(
+                new LinkView(1, "java", "javadoc", "https://docs.oracle.com", MORNING, 5),
+                new LinkView(2, "java", "baeldung", "https://www.baeldung.com", MORNING.plusHours(2), 2))
+                .peek(view -> {
+                    if (view.id() == 1) {
+                        // a visit that commits after its link has been read
+                        topDuringReload.add(ranking.top(10));
+                        ranking.addVisit(1, MORNING.plusHours(5));
+                    }
+                }));
+
+        // Act
+        ranking.reload();
+
+        // Assert
+        assertThat(topDuringReload.get(0)).extracting(LinkView::id).containsExactly(1, 3, 2);
+        assertThat(ranking.top(10)).containsExactly(
+                new LinkView(1, "java", "javadoc", "https://docs.oracle.com", MORNING.plusHours(5), 6),
+                new LinkView(2, "java", "baeldung", "https://www.baeldung.com", MORNING.plusHours(2), 2));
+        assertThat(ranking.recent(1)).extracting(LinkView::id).containsExactly(1);
+    }
+
+}
@@ -3,9 +3,12 @@ package com.dtoind.lastvisit.service;
 import com.dtoind.lastvisit.exception.LinkAlreadyExistsException;
 import com.dtoind.lastvisit.model.Category;
 import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.model.ChangeEvent;
 import com.dtoind.lastvisit.model.Link;
 import com.dtoind.lastvisit.model.LinkImpl;
+import com.dtoind.lastvisit.model.LinkView;
 import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.util.JSONify;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,6 +18,13 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Example;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -25,6 +35,27 @@ class LinkServiceTest {
     @Mock
     private LinkRepository mockRepo;
 
+    @Mock
+    private VisitBuffer mockBuffer;
+
+    @Mock
+    private VisitHistoryService mockHistory;
+
+    @Mock
+    private UrlIndex mockIndex;
+
+    @Mock
+    private DataVersion mockVersion;
+
+    @Mock
+    private ChangeFeed mockFeed;
+
+    @Mock
+    private LinkJsonCache mockJsonCache;
+
+    @Mock
+    private LinkRanking mockRanking;
+
     @InjectMocks
     private LinkService mockService; // calls BasicService.setRepository(mockRepo);
 
@@ -52,7 +83,7 @@ class LinkServiceTest {
         // create the link
         Category category = new CategoryImpl("java");
         Link link = new LinkImpl("javit", "https://example.com", category);
-        when(mockRepo.existsByUrl(link.getUrl())).thenReturn(true);
+        when(mockIndex.exists(link.getUrl())).thenReturn(true);
 
         try {
             // Act
@@ -64,4 +95,128 @@ class LinkServiceTest {
             assertThat(e).isInstanceOf(LinkAlreadyExistsException.class);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRecordVisitExistingLink() {
+        // Arrange
+        when(mockIndex.findId("https://example.com")).thenReturn(Optional.of(5));
+        when(mockVersion.begin()).thenReturn(9L);
+        when(mockRepo.recordVisit(eq(5), any(LocalDateTime.class), eq(9L))).thenReturn(1);
+
+        // Act
+        boolean result = mockService.recordVisit("https://example.com");
+
+        // Assert
+        assertTrue(result);
+        verify(mockRepo, never()).findByUrl(anyString());
+        verify(mockVersion, times(1)).end(9L);
+        verify(mockRanking, times(1)).addVisit(eq(5), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testRecordVisitPublishesNewCountToSubscribers() {
+        // Arrange
+        LinkView view = new LinkView(5, "java", "example", "https://example.com", LocalDateTime.now(), 3);
+        when(mockIndex.findId("https://example.com")).thenReturn(Optional.of(5));
+        when(mockVersion.begin()).thenReturn(9L);
+        when(mockRepo.recordVisit(eq(5), any(LocalDateTime.class), eq(9L))).thenReturn(1);
+        when(mockRanking.addVisit(eq(5), any(LocalDateTime.class))).thenReturn(Optional.of(view));
+
+        // Act
+        boolean result = mockService.recordVisit("https://example.com");
+
+        // Assert
+        assertTrue(result);
+        verify(mockFeed, times(1)).publish(ChangeEvent.linkVisited(view));
+        // the new count comes from the ranking, so the visit stays one statement
+        verify(mockRepo, times(1)).recordVisit(eq(5), any(LocalDateTime.class), eq(9L));
+        verifyNoMoreInteractions(mockRepo);
+    }
+
+    @Test
+    void testRecordVisitMissingLink() {
+        // Arrange
+        when(mockIndex.findId("https://example.com")).thenReturn(Optional.empty());
+
+        // Act
+        boolean result = mockService.recordVisit("https://example.com");
+
+        // Assert
+        assertFalse(result);
+        verify(mockRepo, never()).recordVisit(anyInt(), any(LocalDateTime.class), anyLong());
+    }
+
+    @Test
+    void testRecordVisitDeletedLink() {
+        // Arrange
+        when(mockIndex.findId("https://example.com")).thenReturn(Optional.of(5));
+        when(mockVersion.begin()).thenReturn(9L);
+        when(mockRepo.recordVisit(eq(5), any(LocalDateTime.class), eq(9L))).thenReturn(0);
+
+        // Act
+        boolean result = mockService.recordVisit("https://example.com");
+
+        // Assert
+        assertFalse(result);
+        verify(mockIndex, times(1)).remove("https://example.com");
+        verifyNoInteractions(mockRanking);
+        // the version is handed back even though no row was stamped with it
+        verify(mockVersion, times(1)).end(9L);
+    }
+
+    @Test
+    void testDeleteRemovesVisitHistory() {
+        // Arrange
+        LinkImpl link = new LinkImpl("example", "https://example.com", new CategoryImpl("java"));
+        when(mockVersion.begin()).thenReturn(9L);
+        when(mockRepo.deleteWithTombstone(link.getId(), 9L)).thenReturn(1);
+
+        // Act
+        mockService.delete(link);
+
+        // Assert
+        verify(mockHistory, times(1)).deleteHistory(link.getId());
+        verify(mockIndex, times(1)).remove("https://example.com");
+        verify(mockFeed, times(1)).publish(ChangeEvent.linkDeleted(link.getId()));
+    }
+
+    @Test
+    void testDeleteAllLinksRemovesOrphanedVisitHistory() {
+        // Arrange
+        CategoryImpl category = new CategoryImpl("java");
+        when(mockVersion.begin()).thenReturn(9L);
+        when(mockRepo.deleteBatchByCategoryId(category.getId(), 2, 9L)).thenReturn(2, 0);
+
+        // Act
+        long deleted = mockService.deleteAllLinks(category, 2, count -> {});
+
+        // Assert
+        assertEquals(2, deleted);
+        verify(mockHistory, times(1)).deleteOrphanedHistory();
+        verify(mockRanking, times(1)).removeCategory("java");
+    }
+
+    @Test
+    void testWriteAllLinksAsJsonStreamsLinksOnceAsCompactArray() throws Exception {
+        // Arrange
+        AtomicBoolean closed = new AtomicBoolean();
+        when(mockRepo.streamAllViews()).thenReturn(Stream.of(
+                new LinkView(1, "java", "javadoc", "https://docs.oracle.com", null, 0),
+                new LinkView(2, "news", "bbc", "https://www.bbc.com", null, 3))
+                .onClose(() -> closed.set(true)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        mockService.writeAllLinksAsJson(out, JSONify.DateStyle.EPOCH_MILLIS);
+
+        // Assert
+        assertEquals("[{\"id\":1,\"category\":\"java\",\"name\":\"javadoc\",\"url\":\"https://docs.oracle.com\","
+                        + "\"dateTimeMillis\":null,\"numVisits\":0},"
+                        + "{\"id\":2,\"category\":\"news\",\"name\":\"bbc\",\"url\":\"https://www.bbc.com\","
+                        + "\"dateTimeMillis\":null,\"numVisits\":3}]",
+                out.toString(StandardCharsets.UTF_8));
+        verify(mockRepo, times(1)).streamAllViews();
+        verify(mockRepo, never()).findAll();
+        assertTrue(closed.get());
+    }
+}
@@ -0,0 +1,114 @@
+package com.dtoind.lastvisit.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResponseCacheTest {
+
+    @Mock
+    private DataVersion mockVersion;
+
+    @Test
+    void testBodyIsBuiltOncePerVersion() {
+        // Arrange
+        ResponseCache cache = new ResponseCache(mockVersion, 1024);
+        when(mockVersion.stable()).thenReturn(5L, 5L, 6L);
+        AtomicInteger builds = new AtomicInteger();
+
+        // Act
+        ResponseCache.Body first = cache.get("links", () -> json("[" + builds.incrementAndGet() + "]"));
+        ResponseCache.Body second = cache.get("links", () -> json("[" + builds.incrementAndGet() + "]"));
+        ResponseCache.Body afterWrite = cache.get("links", () -> json("[" + builds.incrementAndGet() + "]"));
+
+        // Assert
+        assertThat(second).isSameAs(first);
+        assertThat(afterWrite.json()).isEqualTo(json("[2]"));
+        assertThat(afterWrite.version()).isEqualTo(6L);
+        assertThat(cache.stats().hits()).isEqualTo(1);
+        assertThat(cache.stats().rebuilds()).isEqualTo(2);
+    }
+
+    @Test
+    void testLargeBodyIsAlsoGzipped() {
+        // Arrange
+        ResponseCache cache = new ResponseCache(mockVersion, 16);
+        when(mockVersion.stable()).thenReturn(1L);
+
+        // Act
+        ResponseCache.Body small = cache.get("cats", () -> json("[]"));
+        ResponseCache.Body large = cache.get("links", () -> json("[" + "0,".repeat(100) + "0]"));
+
+        // Assert
+        assertThat(small.gzip()).isNull();
+        assertThat(large.gzip()).isNotNull();
+        assertThat(large.gzip().length).isLessThan(large.json().length);
+    }
+
+    @Test
+    void testConcurrentMissesShareOneBuild() throws Exception {
+        // Arrange
+        ResponseCache cache = new ResponseCache(mockVersion, 1024);
+        when(mockVersion.stable()).thenReturn(1L);
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger builds = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            // Act
+            List<Future<ResponseCache.Body>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get("links", () -> {
+                builds.incrementAndGet();
+                building.countDown();
+                await(release);
+                return json("[1]");
+            })));
+            assertThat(building.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> cache.get("links", () -> {
+                    builds.incrementAndGet();
+                    return json("[2]");
+                })));
+            }
+            // whether they join the running build or come after it, the others must not build again
+            release.countDown();
+
+            // Assert
+            for (Future<ResponseCache.Body> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS).json()).isEqualTo(json("[1]"));
+            }
+            assertThat(builds.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] json(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.model.LinkView;
+import com.dtoind.lastvisit.model.Tombstone;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.repository.TombstoneRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyncServiceTest {
+
+    @Mock
+    private LinkRepository mockLinkRepo;
+
+    @Mock
+    private TombstoneRepository mockTombstoneRepo;
+
+    @Mock
+    private CategoryRegistry mockRegistry;
+
+    @Mock
+    private DataVersion mockVersion;
+
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+
+    private SyncService syncService;
+
+    @BeforeEach
+    void setUp() {
+        syncService = new SyncService(mockLinkRepo, mockTombstoneRepo, mockRegistry, mockVersion,
+                mockTransactionTemplate, 90);
+    }
+
+    @Test
+    void testChangesSinceVersionIncludeLinksCategoriesAndBothKindsOfTombstones() throws Exception {
+        // Arrange
+        when(mockVersion.stable()).thenReturn(42L);
+        when(mockTombstoneRepo.findOldestVersion()).thenReturn(Optional.of(5L));
+        when(mockRegistry.findChangedSince(10L)).thenReturn(List.of(new CategoryImpl("java")));
+        when(mockLinkRepo.streamViewsChangedSince(10L)).thenReturn(Stream.of(
+                new LinkView(7, "java", "javadoc", "https://docs.oracle.com", null, 3)));
+        when(mockTombstoneRepo.findChangedSince(10L)).thenReturn(List.of(
+                new Tombstone(Tombstone.Kind.LINK, 3, 11L),
+                new Tombstone(Tombstone.Kind.CATEGORY, 2, 12L),
+                new Tombstone(Tombstone.Kind.LINK, 4, 13L)));
+
+        // Act
+        JsonNode json = sync(10L);
+
+        // Assert
+        assertThat(json.get("version").asLong()).isEqualTo(42L);
+        assertThat(json.get("full").asBoolean()).isFalse();
+        assertThat(json.get("categories")).hasSize(1);
+        assertThat(json.get("categories").get(0).get("name").asText()).isEqualTo("java");
+        assertThat(json.get("links")).hasSize(1);
+        assertThat(json.get("links").get(0).get("id").asInt()).isEqualTo(7);
+        assertThat(json.get("links").get(0).get("url").asText()).isEqualTo("https://docs.oracle.com");
+        assertThat(json.get("deleted").get("links").toString()).isEqualTo("[3,4]");
+        assertThat(json.get("deleted").get("categories").toString()).isEqualTo("[2]");
+    }
+
+    @Test
+    void testSyncFromZeroIsFullAndReadsNoTombstones() throws Exception {
+        // Arrange
+        when(mockVersion.stable()).thenReturn(42L);
+        when(mockRegistry.findChangedSince(0L)).thenReturn(List.of());
+        when(mockLinkRepo.streamViewsChangedSince(0L)).thenReturn(Stream.empty());
+
+        // Act
+        JsonNode json = sync(0L);
+
+        // Assert
+        assertThat(json.get("full").asBoolean()).isTrue();
+        verifyNoInteractions(mockTombstoneRepo);
+    }
+
+    @Test
+    void testVersionOlderThanOldestTombstoneGetsFullSync() throws Exception {
+        // Arrange
+        when(mockVersion.stable()).thenReturn(42L);
+        when(mockTombstoneRepo.findOldestVersion()).thenReturn(Optional.of(20L));
+        when(mockRegistry.findChangedSince(0L)).thenReturn(List.of(new CategoryImpl("java")));
+        when(mockLinkRepo.streamViewsChangedSince(0L)).thenReturn(Stream.of(
+                new LinkView(7, "java", "javadoc", "https://docs.oracle.com", null, 3)));
+
+        // Act
+        JsonNode json = sync(10L);
+
+        // Assert
+        assertThat(json.get("full").asBoolean()).isTrue();
+        assertThat(json.get("links")).hasSize(1);
+        assertThat(json.get("deleted").get("links")).isEmpty();
+        verify(mockTombstoneRepo, never()).findChangedSince(anyLong());
+    }
+
+    @Test
+    void testPruneKeepsTombstonesOfNewestOldDeletion() {
+        // Arrange
+        when(mockTransactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(mockTombstoneRepo.findLatestVersionBefore(any(LocalDateTime.class))).thenReturn(Optional.of(17L));
+
+        // Act
+        syncService.pruneTombstones();
+
+        // Assert
+        verify(mockTombstoneRepo).deleteVersionsBefore(17L);
+    }
+
+    @Test
+    void testPruneWithNoOldTombstonesDeletesNothing() {
+        // Arrange
+        when(mockTransactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        // Act
+        syncService.pruneTombstones();
+
+        // Assert
+        verify(mockTombstoneRepo, never()).deleteVersionsBefore(anyLong());
+    }
+
+    private JsonNode sync(long since) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        syncService.writeChangesSince(since, out);
+        return new ObjectMapper().readTree(out.toByteArray());
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.repository.LinkRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UrlIndexTest {
+
+    @Mock
+    private LinkRepository mockRepo;
+
+    @Test
+    void testBloomFilterAnswersUnknownUrlsWithoutQuery() {
+        // Arrange
+        UrlIndex index = new UrlIndex(mockRepo, 100, 1_000);
+        when(mockRepo.streamAllUrls()).thenReturn(Stream.of("https://example.com"));
+        index.seed();
+
+        // Act
+        boolean exists = index.exists("https://example.org");
+
+        // Assert
+        assertThat(exists).isFalse();
+        verify(mockRepo, never()).findIdByUrl(anyString());
+        assertThat(index.stats().bloomNegatives()).isEqualTo(1);
+    }
+
+    @Test
+    void testKnownUrlIsCachedAfterFirstLookup() {
+        // Arrange
+        UrlIndex index = new UrlIndex(mockRepo, 100, 1_000);
+        when(mockRepo.streamAllUrls()).thenReturn(Stream.of("https://example.com"));
+        when(mockRepo.findIdByUrl("https://example.com")).thenReturn(Optional.of(3));
+        index.seed();
+
+        // Act
+        Optional<Integer> first = index.findId("https://example.com");
+        Optional<Integer> second = index.findId("https://example.com");
+
+        // Assert
+        assertThat(first).contains(3);
+        assertThat(second).contains(3);
+        verify(mockRepo, times(1)).findIdByUrl("https://example.com");
+        assertThat(index.stats().cacheHits()).isEqualTo(1);
+    }
+
+    @Test
+    void testUnseededIndexFallsBackToDatabase() {
+        // Arrange
+        UrlIndex index = new UrlIndex(mockRepo, 100, 1_000);
+        when(mockRepo.findIdByUrl("https://example.org")).thenReturn(Optional.empty());
+
+        // Act
+        boolean exists = index.exists("https://example.org");
+
+        // Assert
+        assertThat(exists).isFalse();
+        verify(mockRepo, times(1)).findIdByUrl("https://example.org");
+    }
+
+    @Test
+    void testPutAndRemove() {
+        // Arrange
+        UrlIndex index = new UrlIndex(mockRepo, 100, 1_000);
+        when(mockRepo.streamAllUrls()).thenReturn(Stream.empty());
+        index.seed();
+
+        // Act
+        index.put("https://example.com", 9);
+
+        // Assert
+        assertThat(index.findId("https://example.com")).contains(9);
+        index.remove("https://example.com");
+        when(mockRepo.findIdByUrl("https://example.com")).thenReturn(Optional.empty());
+        assertThat(index.exists("https://example.com")).isFalse();
+    }
+
+}
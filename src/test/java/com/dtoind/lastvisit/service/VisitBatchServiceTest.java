@@ -0,0 +1,173 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.ChangeEvent;
+import com.dtoind.lastvisit.model.VisitBatch;
+import com.dtoind.lastvisit.model.VisitDelta;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.repository.VisitBatchReceiptRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VisitBatchServiceTest {
+
+    @Mock
+    private LinkRepository mockLinkRepo;
+
+    @Mock
+    private VisitBatchReceiptRepository mockReceiptRepo;
+
+    @Mock
+    private VisitHistoryService mockHistory;
+
+    @Mock
+    private UrlIndex mockUrlIndex;
+
+    @Mock
+    private TransactionTemplate mockTransactionTemplate;
+
+    @Mock
+    private DataVersion mockVersion;
+
+    @Mock
+    private ChangeFeed mockFeed;
+
+    @Mock
+    private LinkRanking mockRanking;
+
+    private VisitBatchService visitBatches;
+
+    @BeforeEach
+    void setUp() {
+        visitBatches = new VisitBatchService(mockLinkRepo, mockReceiptRepo, mockHistory, mockUrlIndex,
+                mockTransactionTemplate, mockVersion, mockFeed, mockRanking, 1000, 24);
+    }
+
+    @Test
+    void testVisitsAreGroupedPerLink() {
+        // Arrange
+        stubTransaction();
+        when(mockReceiptRepo.insertIfAbsent(eq("b1"), any(LocalDateTime.class), eq(4))).thenReturn(1);
+        when(mockUrlIndex.findId("https://www.bbc.com")).thenReturn(Optional.of(7));
+        when(mockUrlIndex.findId("https://unknown.example.com")).thenReturn(Optional.empty());
+        when(mockLinkRepo.findIdsByIdIn(Set.of(7))).thenReturn(List.of(7));
+        when(mockVersion.begin()).thenReturn(9L);
+        when(mockLinkRepo.addVisitsById(anyMap(), eq(9L))).thenReturn(1);
+        long earlier = millis(LocalDateTime.of(2024, 3, 1, 9, 0));
+        long later = millis(LocalDateTime.of(2024, 3, 1, 9, 30));
+        VisitBatch batch = new VisitBatch("b1", List.of(
+                new VisitBatch.Visit(7, null, earlier),
+                new VisitBatch.Visit(null, "https://www.bbc.com", later),
+                new VisitBatch.Visit(7, null, earlier),
+                new VisitBatch.Visit(null, "https://unknown.example.com", later)));
+
+        // Act
+        VisitBatchService.Result result = visitBatches.apply(batch);
+
+        // Assert
+        assertThat(result).isEqualTo(new VisitBatchService.Result("b1", false, 3, 1, 1));
+        verify(mockLinkRepo).addVisitsById(
+                Map.of(7, new VisitDelta(3, LocalDateTime.of(2024, 3, 1, 9, 30))), 9L);
+        verify(mockVersion).end(9L);
+        verify(mockRanking).addVisits(Map.of(7, new VisitDelta(3, LocalDateTime.of(2024, 3, 1, 9, 30))));
+        verify(mockFeed).publish(ChangeEvent.reload());
+    }
+
+    @Test
+    void testBatchSentAgainIsSkipped() {
+        // Arrange
+        stubTransaction();
+        when(mockReceiptRepo.insertIfAbsent(eq("b1"), any(LocalDateTime.class), eq(1))).thenReturn(0);
+        VisitBatch batch = new VisitBatch("b1", List.of(new VisitBatch.Visit(7, null, null)));
+
+        // Act
+        VisitBatchService.Result result = visitBatches.apply(batch);
+
+        // Assert
+        assertThat(result.duplicate()).isTrue();
+        verify(mockLinkRepo, never()).addVisitsById(anyMap(), anyLong());
+        verify(mockVersion, never()).begin();
+        verifyNoInteractions(mockFeed, mockRanking);
+    }
+
+    @Test
+    void testVisitsGoToEventLogWhenEnabled() {
+        // Arrange
+        stubTransaction();
+        when(mockReceiptRepo.insertIfAbsent(eq("b1"), any(LocalDateTime.class), eq(2))).thenReturn(1);
+        when(mockHistory.isEnabled()).thenReturn(true);
+        when(mockLinkRepo.findIdsByIdIn(Set.of(7, 8))).thenReturn(List.of(7, 8));
+        VisitBatch batch = new VisitBatch("b1", List.of(
+                new VisitBatch.Visit(7, null, null), new VisitBatch.Visit(8, null, null)));
+
+        // Act
+        VisitBatchService.Result result = visitBatches.apply(batch);
+
+        // Assert
+        assertThat(result.visits()).isEqualTo(2);
+        verify(mockHistory, times(2)).append(anyInt(), any(LocalDateTime.class));
+        verify(mockLinkRepo, never()).addVisitsById(anyMap(), anyLong());
+    }
+
+    @Test
+    void testVisitsToUnknownLinkIdsAreCountedAsUnknown() {
+        // Arrange
+        stubTransaction();
+        when(mockReceiptRepo.insertIfAbsent(eq("b1"), any(LocalDateTime.class), eq(2))).thenReturn(1);
+        when(mockHistory.isEnabled()).thenReturn(true);
+        when(mockLinkRepo.findIdsByIdIn(Set.of(7, 404))).thenReturn(List.of(7));
+        VisitBatch batch = new VisitBatch("b1", List.of(
+                new VisitBatch.Visit(7, null, null), new VisitBatch.Visit(404, null, null)));
+
+        // Act
+        VisitBatchService.Result result = visitBatches.apply(batch);
+
+        // Assert
+        assertThat(result.visits()).isEqualTo(1);
+        assertThat(result.unknown()).isEqualTo(1);
+        verify(mockHistory).append(eq(7), any(LocalDateTime.class));
+        verify(mockHistory, never()).append(eq(404), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testInvalidBatchIsRejected() {
+        // Act & Assert
+        assertThatThrownBy(() -> visitBatches.apply(new VisitBatch(" ", List.of())))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> visitBatches.apply(new VisitBatch("b1",
+                List.of(new VisitBatch.Visit(null, null, null)))))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(mockReceiptRepo, mockLinkRepo);
+    }
+
+    private void stubTransaction() {
+        when(mockTransactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.exception.VisitBufferFullException;
+import com.dtoind.lastvisit.model.VisitDelta;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VisitBufferTest {
+
+    @Mock
+    private LinkRepository mockRepo;
+
+    @Mock
+    private DataVersion mockVersion;
+
+    @Mock
+    private ChangeFeed mockFeed;
+
+    @Mock
+    private LinkRanking mockRanking;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlushMergesVisitsPerUrl() {
+        // Arrange
+        VisitBuffer buffer = new VisitBuffer(mockRepo, mockVersion, mockFeed, mockRanking, VisitMode.BUFFERED, 100, 1000, 1000);
+        when(mockVersion.begin()).thenReturn(9L);
+        LocalDateTime first = LocalDateTime.now();
+        LocalDateTime last = first.plusSeconds(5);
+        buffer.add("https://example.com", first);
+        buffer.add("https://example.com", last);
+        buffer.add("https://example.org", first);
+
+        // Act
+        buffer.flush();
+
+        // Assert
+        ArgumentCaptor<Map<String, VisitDelta>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(mockRepo, times(1)).addVisits(captor.capture(), eq(9L));
+        assertThat(captor.getValue()).hasSize(2);
+        assertThat(captor.getValue().get("https://example.com")).isEqualTo(new VisitDelta(2, last));
+        assertThat(buffer.pendingCount()).isZero();
+        verify(mockVersion, times(1)).end(9L);
+    }
+
+    @Test
+    void testFlushFailureKeepsVisits() {
+        // Arrange
+        VisitBuffer buffer = new VisitBuffer(mockRepo, mockVersion, mockFeed, mockRanking, VisitMode.BUFFERED, 100, 1000, 1000);
+        buffer.add("https://example.com", LocalDateTime.now());
+        when(mockRepo.addVisits(anyMap(), anyLong())).thenThrow(new RuntimeException("database down"));
+
+        // Act
+        buffer.flush();
+
+        // Assert
+        assertThat(buffer.pendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testRankingFailureAfterCommitDoesNotWriteVisitsAgain() {
+        // Arrange
+        VisitBuffer buffer = new VisitBuffer(mockRepo, mockVersion, mockFeed, mockRanking, VisitMode.BUFFERED, 100, 1000, 1000);
+        buffer.add("https://example.com", LocalDateTime.now());
+        when(mockRepo.addVisits(anyMap(), anyLong())).thenReturn(1);
+        doThrow(new RuntimeException("ranking broken")).when(mockRanking).addVisitsByUrl(anyMap());
+
+        // Act
+        buffer.flush();
+        buffer.flush();
+
+        // Assert
+        assertThat(buffer.pendingCount()).isZero();
+        verify(mockRepo, times(1)).addVisits(anyMap(), anyLong());
+        assertThat(buffer.stats().failedFlushes()).isZero();
+    }
+
+    @Test
+    void testEarlyFlushWhenTooManyUrlsPending() {
+        // Arrange
+        VisitBuffer buffer = new VisitBuffer(mockRepo, mockVersion, mockFeed, mockRanking, VisitMode.BUFFERED, 2, 1000, 1000);
+
+        // Act
+        buffer.add("https://example.com", LocalDateTime.now());
+        buffer.add("https://example.org", LocalDateTime.now());
+
+        // Assert
+        // the flush runs in the background, and the URLs are drained before they are written
+        verify(mockRepo, timeout(1000).times(1)).addVisits(anyMap(), anyLong());
+        assertThat(buffer.pendingCount()).isZero();
+    }
+
+    @Test
+    void testFlushFailureBacksOff() {
+        // Arrange
+        VisitBuffer buffer = new VisitBuffer(mockRepo, mockVersion, mockFeed, mockRanking, VisitMode.BUFFERED, 100,
+                1000, 60_000);
+        buffer.add("https://example.com", LocalDateTime.now());
+        when(mockRepo.addVisits(anyMap(), anyLong())).thenThrow(new RuntimeException("database down"));
+        buffer.flush();
+
+        // Act
+        buffer.flush();
+
+        // Assert
+        verify(mockRepo, times(1)).addVisits(anyMap(), anyLong());
+        assertThat(buffer.stats().failedFlushes()).isEqualTo(1);
+    }
+
+    @Test
+    void testFullBufferRejectsNewUrlsAndDropsWhatNoLongerFits() {
+        // Arrange
+        VisitBuffer buffer = new VisitBuffer(mockRepo, mockVersion, mockFeed, mockRanking, VisitMode.BUFFERED, 100,
+                2, 60_000);
+        buffer.add("https://example.com", LocalDateTime.now());
+        buffer.add("https://example.org", LocalDateTime.now());
+        when(mockRepo.addVisits(anyMap(), anyLong())).thenAnswer(invocation -> {
+            // visits keep arriving while the failing flush runs
+            buffer.add("https://example.net", LocalDateTime.now());
+            throw new RuntimeException("database down");
+        });
+
+        // Act
+        buffer.flush();
+
+        // Assert
+        assertThat(buffer.pendingCount()).isEqualTo(2);
+        assertThatThrownBy(() -> buffer.add("https://example.edu", LocalDateTime.now()))
+                .isInstanceOf(VisitBufferFullException.class);
+        // a URL that is pending already still counts its visits
+        buffer.add("https://example.net", LocalDateTime.now());
+        assertThat(buffer.stats()).isEqualTo(new VisitBuffer.Stats(2, 1, 1, 1));
+    }
+
+    @Test
+    void testFlushWithNothingPending() {
+        // Arrange
+        VisitBuffer buffer = new VisitBuffer(mockRepo, mockVersion, mockFeed, mockRanking, VisitMode.BUFFERED, 100, 1000, 1000);
+
+        // Act
+        buffer.flush();
+
+        // Assert
+        verify(mockRepo, never()).addVisits(anyMap(), anyLong());
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.VisitRollupState;
+import com.dtoind.lastvisit.repository.DailyVisitBucketRepository;
+import com.dtoind.lastvisit.repository.HourlyVisitBucketRepository;
+import com.dtoind.lastvisit.repository.VisitEventRepository;
+import com.dtoind.lastvisit.repository.VisitRollupStateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VisitHistoryRetentionTest {
+
+    @Mock
+    private VisitEventRepository eventRepo;
+    @Mock
+    private VisitRollupStateRepository stateRepo;
+    @Mock
+    private HourlyVisitBucketRepository hourlyRepo;
+    @Mock
+    private DailyVisitBucketRepository dailyRepo;
+    @Mock
+    private VisitHistoryService visitHistory;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private VisitHistoryRetention retention;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        retention = new VisitHistoryRetention(eventRepo, stateRepo, hourlyRepo, dailyRepo, visitHistory,
+                transactionTemplate, 7, 30, 730);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    void testPruneOnlyDeletesFoldedEventsAndExpiredBuckets() {
+        // Arrange
+        VisitRollupState state = new VisitRollupState("visits");
+        state.setLastEventId(42L);
+        when(stateRepo.findById("visits")).thenReturn(Optional.of(state));
+
+        // Act
+        retention.prune();
+
+        // Assert
+        ArgumentCaptor<LocalDateTime> eventsBefore = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(eventRepo).deleteFoldedBefore(eq(42L), eventsBefore.capture());
+        assertThat(eventsBefore.getValue()).isCloseTo(LocalDateTime.now().minusDays(7), within(1, ChronoUnit.MINUTES));
+        verify(hourlyRepo).deleteStartingBefore(any(LocalDateTime.class));
+        verify(dailyRepo).deleteStartingBefore(any(LocalDateTime.class));
+        verify(visitHistory).deleteOrphanedHistory();
+    }
+
+    @Test
+    void testPruneFailureIsRetriedLater() {
+        // Arrange
+        when(stateRepo.findById("visits")).thenReturn(Optional.empty());
+        when(eventRepo.deleteFoldedBefore(eq(0L), any(LocalDateTime.class)))
+                .thenThrow(new RuntimeException("database down"));
+
+        // Act
+        retention.prune();
+
+        // Assert
+        verifyNoInteractions(hourlyRepo, dailyRepo, visitHistory);
+    }
+
+}
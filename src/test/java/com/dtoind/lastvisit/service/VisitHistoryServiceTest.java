@@ -0,0 +1,190 @@
+package com.dtoind.lastvisit.service;
+
+import com.dtoind.lastvisit.model.VisitBucketKey;
+import com.dtoind.lastvisit.model.VisitDelta;
+import com.dtoind.lastvisit.model.VisitEvent;
+import com.dtoind.lastvisit.model.VisitRollupGap;
+import com.dtoind.lastvisit.model.VisitRollupState;
+import com.dtoind.lastvisit.repository.DailyVisitBucketRepository;
+import com.dtoind.lastvisit.repository.HourlyVisitBucketRepository;
+import com.dtoind.lastvisit.repository.LinkRepository;
+import com.dtoind.lastvisit.repository.VisitEventRepository;
+import com.dtoind.lastvisit.repository.VisitRollupGapRepository;
+import com.dtoind.lastvisit.repository.VisitRollupStateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VisitHistoryServiceTest {
+
+    @Mock
+    private VisitEventRepository eventRepo;
+    @Mock
+    private VisitRollupStateRepository stateRepo;
+    @Mock
+    private VisitRollupGapRepository gapRepo;
+    @Mock
+    private HourlyVisitBucketRepository hourlyRepo;
+    @Mock
+    private DailyVisitBucketRepository dailyRepo;
+    @Mock
+    private LinkRepository linkRepo;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private DataVersion mockVersion;
+    @Mock
+    private ChangeFeed changeFeed;
+    @Mock
+    private LinkRanking ranking;
+
+    private VisitHistoryService historyService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        historyService = new VisitHistoryService(eventRepo, stateRepo, gapRepo, hourlyRepo, dailyRepo, linkRepo,
+                transactionTemplate, mockVersion, changeFeed, ranking, VisitMode.EVENT_LOG, 100, 600);
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    void testAppendSavesEvent() {
+        // Act
+        historyService.append(7, LocalDateTime.now());
+
+        // Assert
+        verify(eventRepo, times(1)).save(any(VisitEvent.class));
+    }
+
+    @Test
+    void testAppendRecordsServerTimeNextToClientVisitTime() {
+        // Arrange
+        LocalDateTime visitTime = LocalDateTime.now().minusHours(5);
+
+        // Act
+        historyService.append(7, visitTime);
+
+        // Assert
+        ArgumentCaptor<VisitEvent> saved = ArgumentCaptor.forClass(VisitEvent.class);
+        verify(eventRepo).save(saved.capture());
+        assertThat(saved.getValue().getDateTime()).isEqualTo(visitTime);
+        assertThat(saved.getValue().getRecordedAt()).isCloseTo(LocalDateTime.now(), within(1, ChronoUnit.MINUTES));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRollUpFoldsEventsPerLinkAndBucket() {
+        // Arrange
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 10, 15);
+        VisitRollupState state = new VisitRollupState("visits");
+        when(stateRepo.findForUpdate("visits")).thenReturn(Optional.of(state));
+        when(eventRepo.findBatchAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(
+                event(1L, 7, time), event(2L, 7, time.plusMinutes(50)), event(3L, 8, time)));
+        when(mockVersion.begin()).thenReturn(9L);
+
+        // Act
+        historyService.rollUp();
+
+        // Assert
+        ArgumentCaptor<Map<Integer, VisitDelta>> perLink = ArgumentCaptor.forClass(Map.class);
+        verify(linkRepo).addVisitsById(perLink.capture(), eq(9L));
+        assertThat(perLink.getValue().get(7)).isEqualTo(new VisitDelta(2, time.plusMinutes(50)));
+        assertThat(perLink.getValue().get(8)).isEqualTo(new VisitDelta(1, time));
+
+        ArgumentCaptor<Map<VisitBucketKey, Long>> hourly = ArgumentCaptor.forClass(Map.class);
+        verify(eventRepo).addToHourlyBuckets(hourly.capture());
+        assertThat(hourly.getValue()).containsEntry(new VisitBucketKey(7, time.withMinute(0)), 1L)
+                .containsEntry(new VisitBucketKey(7, time.withMinute(0).plusHours(1)), 1L);
+
+        ArgumentCaptor<Map<VisitBucketKey, Long>> daily = ArgumentCaptor.forClass(Map.class);
+        verify(eventRepo).addToDailyBuckets(daily.capture());
+        assertThat(daily.getValue()).containsEntry(new VisitBucketKey(7, time.toLocalDate().atStartOfDay()), 2L);
+
+        assertThat(state.getLastEventId()).isEqualTo(3L);
+        verify(mockVersion).end(9L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRollUpRecordsIdsItPassesAsGaps() {
+        // Arrange
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 10, 15);
+        VisitRollupState state = new VisitRollupState("visits");
+        when(stateRepo.findForUpdate("visits")).thenReturn(Optional.of(state));
+        // event 2 has not committed yet
+        when(eventRepo.findBatchAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(
+                event(1L, 7, time), event(3L, 7, time)));
+        when(mockVersion.begin()).thenReturn(9L);
+
+        // Act
+        historyService.rollUp();
+
+        // Assert
+        ArgumentCaptor<List<VisitRollupGap>> gaps = ArgumentCaptor.forClass(List.class);
+        verify(gapRepo).saveAll(gaps.capture());
+        assertThat(gaps.getValue()).extracting(VisitRollupGap::getEventId).containsExactly(2L);
+        assertThat(state.getLastEventId()).isEqualTo(3L);
+    }
+
+    @Test
+    void testRollUpFoldsEventsOfGapsOnceTheyCommit() {
+        // Arrange
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 10, 15);
+        VisitRollupState state = new VisitRollupState("visits");
+        state.setLastEventId(3L);
+        when(stateRepo.findForUpdate("visits")).thenReturn(Optional.of(state));
+        when(gapRepo.findAll()).thenReturn(List.of(new VisitRollupGap(2L, LocalDateTime.now())));
+        when(eventRepo.findAllById(List.of(2L))).thenReturn(List.of(event(2L, 7, time)));
+        when(eventRepo.findBatchAfter(eq(3L), any(Pageable.class))).thenReturn(List.of());
+        when(mockVersion.begin()).thenReturn(9L);
+
+        // Act
+        historyService.rollUp();
+
+        // Assert
+        verify(linkRepo).addVisitsById(Map.of(7, new VisitDelta(1, time)), 9L);
+        verify(gapRepo).deleteAllByIdInBatch(List.of(2L));
+        verify(gapRepo).deleteSeenBefore(any(LocalDateTime.class));
+        assertThat(state.getLastEventId()).isEqualTo(3L);
+    }
+
+    @Test
+    void testRollUpWithNothingToFoldTakesNoVersion() {
+        // Arrange
+        when(stateRepo.findForUpdate("visits")).thenReturn(Optional.of(new VisitRollupState("visits")));
+        when(eventRepo.findBatchAfter(eq(0L), any(Pageable.class))).thenReturn(List.of());
+
+        // Act
+        historyService.rollUp();
+
+        // Assert
+        verifyNoInteractions(mockVersion, changeFeed);
+    }
+
+    private static VisitEvent event(long id, int linkId, LocalDateTime time) {
+        VisitEvent event = new VisitEvent(linkId, time);
+        ReflectionTestUtils.setField(event, "id", id);
+        return event;
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.dtoind.lastvisit.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BloomFilterTest {
+
+    @Test
+    void testAddedValuesAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.put("https://example.com/" + i);
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(filter.mightContain("https://example.com/" + i)).isTrue();
+        }
+    }
+
+    @Test
+    void testFalsePositiveRateStaysNearTarget() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("https://example.com/" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("https://example.org/" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThatThrownBy(() -> new BloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BloomFilter(100, 1.0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.dtoind.lastvisit.util;
+
+import com.dtoind.lastvisit.model.CategoryImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CursorTest {
+
+    @Test
+    void testEncodeDecodeRoundTrip() {
+        assertThat(Cursor.decode(Cursor.encode(42))).isEqualTo(42);
+    }
+
+    @Test
+    void testDecodeNullStartsFromTheBeginning() {
+        assertThat(Cursor.decode(null)).isZero();
+        assertThat(Cursor.decode("")).isZero();
+    }
+
+    @Test
+    void testDecodeInvalidCursor() {
+        assertThatThrownBy(() -> Cursor.decode("not a cursor"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Cursor.decode(Cursor.encode(1).substring(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testPageWithMoreRows() {
+        List<CategoryImpl> rows = List.of(category(1), category(2), category(3));
+
+        CursorPage<CategoryImpl> page = CursorPage.of(rows, 2, CategoryImpl::getId);
+
+        assertThat(page.items()).hasSize(2);
+        assertThat(Cursor.decode(page.next())).isEqualTo(2);
+    }
+
+    @Test
+    void testLastPage() {
+        CursorPage<CategoryImpl> page = CursorPage.of(List.of(category(1)), 2, CategoryImpl::getId);
+
+        assertThat(page.items()).hasSize(1);
+        assertThat(page.next()).isNull();
+    }
+
+    @Test
+    void testCheckLimit() {
+        assertThat(CursorPage.checkLimit(null)).isEqualTo(CursorPage.DEFAULT_LIMIT);
+        assertThatThrownBy(() -> CursorPage.checkLimit(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CursorPage.checkLimit(CursorPage.MAX_LIMIT + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static CategoryImpl category(int id) {
+        CategoryImpl category = new CategoryImpl("Category " + id);
+        ReflectionTestUtils.setField(category, "id", id);
+        return category;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.dtoind.lastvisit.util;
+
+import com.dtoind.lastvisit.model.ImportedLink;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportWriterTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+
+    @Test
+    void testNdjsonWritesOneObjectPerLine() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (ExportWriter writer = ExportWriter.ndjson(out, "id", "name", "dateTime")) {
+            writer.writeRow(1, "java", TIME);
+            writer.writeRow(2, null, null);
+        }
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "{\"id\":1,\"name\":\"java\",\"dateTime\":\"2024-01-02T03:04:05\"}\n"
+                        + "{\"id\":2,\"name\":null,\"dateTime\":null}\n");
+    }
+
+    @Test
+    void testCsvQuotesFieldsThatNeedIt() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (ExportWriter writer = ExportWriter.csv(out, "id", "name", "url")) {
+            writer.writeRow(1, "say \"hi\", world", "https://a.com");
+            writer.writeRow(2, null, "https://b.com");
+        }
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "id,name,url\r\n"
+                        + "1,\"say \"\"hi\"\", world\",https://a.com\r\n"
+                        + "2,,https://b.com\r\n");
+    }
+
+    @Test
+    void testExportCanBeImportedAgain() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExportWriter writer = ExportWriter.csv(out, "id", "category", "name", "url", "dateTime")) {
+            writer.writeRow(1, "java", "Javadoc", "https://docs.oracle.com", TIME);
+        }
+
+        try (CsvLinkReader reader = new CsvLinkReader(new StringReader(out.toString(StandardCharsets.UTF_8)))) {
+            assertThat(reader.next()).isEqualTo(
+                    new ImportedLink("java", "Javadoc", "https://docs.oracle.com", TIME));
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.dtoind.lastvisit.util;
+
+import com.dtoind.lastvisit.model.LinkView;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.time.format.DateTimeFormatter.ofPattern;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the cost of serializing a page of links with {@link JSONify} against the way it was done
+ * before: a new pretty-printing writer per call, a {@code String} encoded to bytes afterwards and a
+ * date pattern built and post-processed per link.
+ * Run with {@code mvn test -Dtest=JSONifyBenchmarkTest -Dlastvisit.benchmark=true} and compare the
+ * printed times.
+ */
+@EnabledIfSystemProperty(named = "lastvisit.benchmark", matches = "true")
+class JSONifyBenchmarkTest {
+
+    private static final int LINKS = 1_000;
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int ROUNDS = 5_000;
+
+    @Test
+    void benchmarkSerializeLinks() throws Exception {
+        List<LinkView> links = new ArrayList<>();
+        LocalDateTime time = LocalDateTime.of(2024, 3, 1, 9, 30);
+        for (int i = 0; i < LINKS; i++) {
+            links.add(new LinkView(i, "category" + (i % 20), "link" + i, "https://bench.example.com/" + i,
+                    time.plusMinutes(i), i));
+        }
+        ObjectMapper legacyMapper = legacyMapper();
+
+        long legacyBytes = 0;
+        long currentBytes = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            legacyBytes += legacy(legacyMapper, links).length;
+            currentBytes += JSONify.toJsonBytes(links, JSONify.DateStyle.FORMATTED).length;
+        }
+
+        long legacyNanos = time(() -> legacy(legacyMapper, links));
+        long currentNanos = time(() -> JSONify.toJsonBytes(links, JSONify.DateStyle.FORMATTED));
+        long epochMillisNanos = time(() -> JSONify.toJsonBytes(links, JSONify.DateStyle.EPOCH_MILLIS));
+
+        System.out.printf("JSONify, %d links per call: pretty writer per call %d us/op (%d bytes),"
+                        + " cached compact writer %d us/op (%d bytes), with epoch millis %d us/op%n",
+                LINKS, legacyNanos / ROUNDS / 1_000, legacy(legacyMapper, links).length,
+                currentNanos / ROUNDS / 1_000, JSONify.toJsonBytes(links, JSONify.DateStyle.FORMATTED).length,
+                epochMillisNanos / ROUNDS / 1_000);
+
+        assertThat(currentBytes).isLessThan(legacyBytes);
+    }
+
+    private static long time(Serialization serialization) throws IOException {
+        long start = System.nanoTime();
+        long bytes = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            bytes += serialization.run().length;
+        }
+        assertThat(bytes).isPositive();
+        return System.nanoTime() - start;
+    }
+
+    private interface Serialization {
+        byte[] run() throws IOException;
+    }
+
+    // how JSONify.toJson serialized links before its writers were cached
+    private static byte[] legacy(ObjectMapper mapper, List<LinkView> links) throws IOException {
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(links).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ObjectMapper legacyMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(LinkView.class, new JsonSerializer<LinkView>() {
+            @Override
+            public void serialize(LinkView link, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
+                    throws IOException {
+                String formattedDateTime = ofPattern("h:mma 'on' MM.dd.uu").format(link.dateTime())
+                        .replace("AM", " am").replace("PM", " pm");
+                jsonGenerator.writeStartObject();
+                jsonGenerator.writeNumberField("id", link.id());
+                jsonGenerator.writeObjectField("category", link.category());
+                jsonGenerator.writeStringField("name", link.name());
+                jsonGenerator.writeStringField("url", link.url());
+                jsonGenerator.writeObjectField("dateTime", formattedDateTime);
+                jsonGenerator.writeNumberField("numVisits", link.numVisits());
+                jsonGenerator.writeEndObject();
+            }
+        });
+        mapper.registerModule(module);
+        return mapper;
+    }
+
+}
@@ -4,11 +4,21 @@ package com.dtoind.lastvisit.util;
 import static org.junit.jupiter.api.Assertions.*;
 
 import com.dtoind.lastvisit.model.CategoryImpl;
+import com.dtoind.lastvisit.model.ChangeEvent;
 import com.dtoind.lastvisit.model.Link;
 import com.dtoind.lastvisit.model.LinkImpl;
+import com.dtoind.lastvisit.model.LinkView;
 import com.dtoind.lastvisit.util.JSONify;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -32,6 +42,130 @@ public class JSONifyTest {
         assertNotNull(jsonNode.get("dateTime"));
     }
 
+    @Test
+    public void testToJsonOfChangeEventIsOneLine() throws JsonProcessingException {
+        // Arrange
+        LinkView link = new LinkView(7, "java", "javadoc", "https://docs.oracle.com",
+                LocalDateTime.of(2024, 3, 1, 9, 30), 4);
+
+        // Act
+        String jsonString = JSONify.toJson(ChangeEvent.linkVisited(link));
+        JsonNode jsonNode = new ObjectMapper().readTree(jsonString);
+
+        // Assert
+        assertFalse(jsonString.contains("\n"));
+        assertFalse(jsonNode.has("type"));
+        assertFalse(jsonNode.has("category"));
+        assertEquals(7, jsonNode.get("link").get("id").asInt());
+        assertEquals("java", jsonNode.get("link").get("category").asText());
+        assertEquals(4, jsonNode.get("link").get("numVisits").asInt());
+        assertEquals(link.formattedDateTime(), jsonNode.get("link").get("dateTime").asText());
+    }
+
+    @Test
+    public void testToJsonBytesFormatsDateTime() throws Exception {
+        // Arrange
+        LinkView link = new LinkView(7, "java", "javadoc", "https://docs.oracle.com",
+                LocalDateTime.of(2024, 3, 1, 21, 5), 4);
+
+        // Act
+        JsonNode jsonNode = new ObjectMapper().readTree(JSONify.toJsonBytes(link, JSONify.DateStyle.FORMATTED));
+
+        // Assert
+        assertEquals("9:05 pm on 03.01.24", jsonNode.get("dateTime").asText());
+        assertFalse(jsonNode.has("dateTimeMillis"));
+    }
+
+    @Test
+    public void testToJsonBytesWithEpochMillis() throws Exception {
+        // Arrange
+        LocalDateTime visited = LocalDateTime.of(2024, 3, 1, 9, 30);
+        LinkView link = new LinkView(7, "java", "javadoc", "https://docs.oracle.com", visited, 4);
+
+        // Act
+        JsonNode jsonNode = new ObjectMapper().readTree(JSONify.toJsonBytes(link, JSONify.DateStyle.EPOCH_MILLIS));
+
+        // Assert
+        assertEquals(visited.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                jsonNode.get("dateTimeMillis").asLong());
+        assertFalse(jsonNode.has("dateTime"));
+        assertEquals("javadoc", jsonNode.get("name").asText());
+    }
+
+    @Test
+    public void testToJsonBytesWithEpochMillisKeepsKeyForMissingDateTime() throws Exception {
+        // Arrange
+        LinkView link = new LinkView(7, "java", "javadoc", "https://docs.oracle.com", null, 0);
+
+        // Act
+        JsonNode jsonNode = new ObjectMapper().readTree(JSONify.toJsonBytes(link, JSONify.DateStyle.EPOCH_MILLIS));
+
+        // Assert
+        assertTrue(jsonNode.get("dateTimeMillis").isNull());
+        assertFalse(jsonNode.has("dateTime"));
+    }
+
+    @Test
+    public void testWriteJsonArrayIsOneCompactArrayOfObjects() throws Exception {
+        // Arrange
+        List<LinkView> links = List.of(
+                new LinkView(7, "java", "javadoc", "https://docs.oracle.com", LocalDateTime.of(2024, 3, 1, 9, 30), 4),
+                new LinkView(8, "news", "bbc", "https://www.bbc.com", null, 0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        JSONify.writeJsonArray(links.iterator(), out, JSONify.DateStyle.FORMATTED);
+        String json = out.toString(StandardCharsets.UTF_8);
+        JsonNode jsonNode = new ObjectMapper().readTree(json);
+
+        // Assert
+        assertTrue(json.startsWith("[{\"id\":7,"));
+        assertFalse(json.contains("\n"));
+        assertFalse(json.contains("\": "));
+        assertTrue(jsonNode.isArray());
+        assertEquals(2, jsonNode.size());
+        assertTrue(jsonNode.get(1).isObject());
+        assertEquals("bbc", jsonNode.get(1).get("name").asText());
+    }
+
+    @Test
+    public void testWriteJsonArrayStreamsItemsInOnePass() throws Exception {
+        // Arrange
+        int count = 50;
+        String longUrl = "https://example.com/" + "a".repeat(1000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] writtenWhenLastRequested = {-1};
+        Iterator<LinkView> links = new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public LinkView next() {
+                if (next == count) {
+                    throw new NoSuchElementException();
+                }
+                if (next == count - 1) {
+                    writtenWhenLastRequested[0] = out.size();
+                }
+                return new LinkView(next++, "java", "link", longUrl, null, 0);
+            }
+        };
+
+        // Act
+        JSONify.writeJsonArray(links, out, JSONify.DateStyle.FORMATTED);
+
+        // Assert
+        assertFalse(links.hasNext());
+        // earlier links had already reached the stream before the last one was read
+        assertTrue(writtenWhenLastRequested[0] > 0);
+        assertTrue(writtenWhenLastRequested[0] < out.size());
+        assertEquals(count, new ObjectMapper().readTree(out.toByteArray()).size());
+    }
+
 //    @Test
 //    public void testToLinkJson() {
 //        // Arrange
@@ -0,0 +1,91 @@
+package com.dtoind.lastvisit.util;
+
+import com.dtoind.lastvisit.model.ImportedLink;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class LinkReaderTest {
+
+    @Test
+    void testNdjson() throws IOException {
+        String input = """
+                {"url": "https://a.com", "link": "A", "category": "java"}
+
+                {"url": "https://b.com", "name": "B"}
+                """;
+
+        List<ImportedLink> links = readAll(new NdjsonLinkReader(new StringReader(input)));
+
+        assertThat(links).containsExactly(
+                new ImportedLink("java", "A", "https://a.com", null),
+                new ImportedLink(null, "B", "https://b.com", null));
+    }
+
+    @Test
+    void testCsvWithQuotedFields() throws IOException {
+        String input = "Category,URL,Name\r\njava,https://a.com,\"A, \"\"quoted\"\"\"\r\n\r\n,https://b.com,B\n";
+
+        List<ImportedLink> links = readAll(new CsvLinkReader(new StringReader(input)));
+
+        assertThat(links).containsExactly(
+                new ImportedLink("java", "A, \"quoted\"", "https://a.com", null),
+                new ImportedLink(null, "B", "https://b.com", null));
+    }
+
+    @Test
+    void testCsvWithoutUrlColumn() {
+        assertThatThrownBy(() -> new CsvLinkReader(new StringReader("name,category\nA,java\n")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testBookmarkHtmlUsesInnermostFolder() throws IOException {
+        String input = """
+                <!DOCTYPE NETSCAPE-Bookmark-file-1>
+                <TITLE>Bookmarks</TITLE>
+                <H1>Bookmarks</H1>
+                <DL><p>
+                    <DT><H3 ADD_DATE="1700000000">Dev &amp; Tools</H3>
+                    <DL><p>
+                        <DT><A HREF="https://x.com/?a=1&amp;b=2" ADD_DATE="1700000000">X</A>
+                        <DT><H3>Inner</H3>
+                        <DL><p>
+                            <DT><A HREF="https://y.com">Y</A>
+                        </DL><p>
+                        <DT><A HREF="https://z.com">Z</A>
+                    </DL><p>
+                    <DT><A HREF="https://top.com">Top</A>
+                </DL><p>
+                """;
+
+        List<ImportedLink> links = readAll(new BookmarkHtmlLinkReader(new StringReader(input)));
+
+        assertThat(links).extracting(ImportedLink::category, ImportedLink::name, ImportedLink::url)
+                .containsExactly(
+                        tuple("Dev & Tools", "X", "https://x.com/?a=1&b=2"),
+                        tuple("Inner", "Y", "https://y.com"),
+                        tuple("Dev & Tools", "Z", "https://z.com"),
+                        tuple(null, "Top", "https://top.com"));
+        assertThat(links.get(0).addedAt()).isNotNull();
+    }
+
+    private static List<ImportedLink> readAll(LinkReader reader) throws IOException {
+        List<ImportedLink> links = new ArrayList<>();
+        try (reader) {
+            ImportedLink link;
+            while ((link = reader.next()) != null) {
+                links.add(link);
+            }
+        }
+        return links;
+    }
+
+}